@@ -28,18 +28,31 @@ public class CredentialsService {
 
     private static final ValueSource ASF_USER = new ValueSource("asf.username", "ASF_USERNAME", "ASF user information");
     private static final ValueSource ASF_PWD = new ValueSource("asf.password", "ASF_PASSWORD", "ASF password");
+    private static final ValueSource GITHUB_TOKEN = new ValueSource("github.token", "GITHUB_TOKEN", "GitHub API token");
 
     private Credentials asfCredentials;
+    private String gitHubToken;
 
     @Activate
     protected void activate() {
         asfCredentials = new Credentials(ASF_USER.getValue(), ASF_PWD.getValue());
+        gitHubToken = GITHUB_TOKEN.getOptionalValue().orElse(null);
     }
 
     public Credentials getAsfCredentials() {
         return asfCredentials;
     }
 
+    /**
+     * Returns the optional GitHub API token. Without one, GitHub API calls are anonymous and subject to a much
+     * lower rate limit.
+     *
+     * @return the token, if one was configured
+     */
+    public Optional<String> getGitHubToken() {
+        return Optional.ofNullable(gitHubToken);
+    }
+
     static class ValueSource {
 
         private final String sysProp;
@@ -55,11 +68,16 @@ public class CredentialsService {
 
         public String getValue() {
 
-            return Optional.ofNullable(System.getProperty(sysProp))
-                    .or(() -> Optional.ofNullable(System.getenv(envVar)))
+            return getOptionalValue()
                     .orElseThrow(() -> new IllegalStateException(String.format(
                             "Cannot detect %s after looking for %s system property and %s environment variable.",
                             friendlyName, sysProp, envVar)));
         }
+
+        public Optional<String> getOptionalValue() {
+
+            return Optional.ofNullable(System.getProperty(sysProp))
+                    .or(() -> Optional.ofNullable(System.getenv(envVar)));
+        }
     }
 }
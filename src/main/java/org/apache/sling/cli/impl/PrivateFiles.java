@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Creates and checks the folders under {@code ~/.sling-cli} that the CLI keeps its downloads and caches in. */
+public class PrivateFiles {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrivateFiles.class);
+
+    private PrivateFiles() {}
+
+    /** Creates a folder and its missing parents, the folder itself readable and writable by its owner only. */
+    public static Path createPrivateDirectories(Path folder) throws IOException {
+        if (Files.isDirectory(folder)) {
+            return folder;
+        }
+        Files.createDirectories(folder.toAbsolutePath().getParent());
+        try {
+            Files.createDirectory(
+                    folder, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system; the folder gets the permissions of its parent
+            Files.createDirectories(folder);
+        } catch (FileAlreadyExistsException e) {
+            // created concurrently
+        }
+        return folder;
+    }
+
+    /**
+     * Tells whether a file or folder is owned by the user running the CLI and not writable by anybody else. On file
+     * systems without owners or POSIX permissions it is trusted like its parent folder.
+     */
+    public static boolean isPrivate(Path path) {
+        try {
+            UserPrincipal user = path.getFileSystem()
+                    .getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!user.equals(Files.getOwner(path))) {
+                return false;
+            }
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        } catch (UnsupportedOperationException e) {
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Unable to check the owner and permissions of {}.", path, e);
+            return false;
+        }
+    }
+}
@@ -18,35 +18,19 @@
  */
 package org.apache.sling.cli.impl.ci;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import org.apache.http.HttpHeaders;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.sling.cli.impl.http.HttpClientFactory;
 import org.apache.sling.cli.impl.nexus.Artifact;
+import org.apache.sling.cli.impl.pom.PomModel;
+import org.apache.sling.cli.impl.pom.PomModelService;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 @Component(service = CIStatusValidator.class)
 public class CIStatusValidator {
@@ -57,12 +41,26 @@ public class CIStatusValidator {
     public static class ValidationResult {
         private final String message;
         private final boolean valid;
+        private final boolean deferred;
 
         ValidationResult(boolean valid, String message) {
+            this(valid, false, message);
+        }
+
+        private ValidationResult(boolean valid, boolean deferred, String message) {
             this.valid = valid;
+            this.deferred = deferred;
             this.message = message;
         }
 
+        /**
+         * Creates a result for a check that could not be performed because the GitHub API rate limit is exhausted.
+         * Such a result is neither valid nor a failure; the check should simply be repeated later.
+         */
+        static ValidationResult deferred(String message) {
+            return new ValidationResult(false, true, message);
+        }
+
         public String getMessage() {
             return message;
         }
@@ -70,48 +68,41 @@ public class CIStatusValidator {
         public boolean isValid() {
             return valid;
         }
+
+        public boolean isDeferred() {
+            return deferred;
+        }
     }
 
     private static final Logger log = LoggerFactory.getLogger(CIStatusValidator.class);
-    private DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
 
     @Reference
-    private HttpClientFactory httpClientFactory;
+    private GitHubClient gitHubClient;
 
-    private XPathFactory xPathFactory = XPathFactory.newInstance();
+    @Reference
+    private PomModelService pomModelService;
 
     protected JsonObject fetchJson(String endpoint) throws IOException {
-        try (CloseableHttpClient client = httpClientFactory.newClient()) {
-            HttpGet get = new HttpGet(endpoint);
-            get.addHeader(HttpHeaders.ACCEPT, "application/json");
-            try (CloseableHttpResponse response = client.execute(get)) {
-                try (InputStream content = response.getEntity().getContent()) {
-                    InputStreamReader reader = new InputStreamReader(content);
-                    JsonParser parser = new JsonParser();
-                    return parser.parse(reader).getAsJsonObject();
-                }
-            }
-        }
+        return gitHubClient.getJson(endpoint);
     }
 
-    String getCIStatusEndpoint(Path artifactFilePath) {
+    /**
+     * Works out the GitHub commit status endpoint of the tag a POM was released from.
+     *
+     * @param artifactFilePath the POM
+     * @return the endpoint, or {@code null} if the POM does not point to a repository and tag with a CI status
+     */
+    public String getCIStatusEndpoint(Path artifactFilePath) {
         log.trace("getCIStatusEndpoint");
         String ciEndpoint = null;
         try {
-            builderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
-
-            Document xmlDocument = builder.parse(artifactFilePath.toFile());
-            XPath xPath = xPathFactory.newXPath();
-            String repositoryName =
-                    (String) xPath.compile("/project/scm/url/text()").evaluate(xmlDocument, XPathConstants.STRING);
-            String tagName =
-                    (String) xPath.compile("/project/scm/tag/text()").evaluate(xmlDocument, XPathConstants.STRING);
+            PomModel pom = pomModelService.read(artifactFilePath);
+            String repositoryName = pom.scmUrl();
+            String tagName = pom.scmTag();
             if (!tagName.isEmpty()) {
-                tagName = tagName.trim();
                 log.debug("Extracted TAG: {}", tagName);
             }
-            if (repositoryName != null && repositoryName.trim().length() > 0) {
+            if (!repositoryName.isEmpty()) {
                 if (repositoryName.startsWith("https://gitbox.apache.org/repos/asf?p=")) {
                     repositoryName = repositoryName.substring(repositoryName.indexOf("?p=") + 3);
                     repositoryName = repositoryName.substring(0, repositoryName.indexOf(".git"));
@@ -127,15 +118,12 @@ public class CIStatusValidator {
                 }
                 log.debug("Extracted REPO: {}", repositoryName);
             }
-            if (repositoryName != null
-                    && !repositoryName.isEmpty()
-                    && !tagName.isEmpty()
-                    && !tagName.equalsIgnoreCase("HEAD")) {
+            if (!repositoryName.isEmpty() && !tagName.isEmpty() && !tagName.equalsIgnoreCase("HEAD")) {
                 ciEndpoint = String.format(
                         "https://api.github.com/repos/apache/%s/commits/%s/status", repositoryName, tagName);
                 log.debug("Loaded CI Endpoint: {}", ciEndpoint);
             }
-        } catch (XPathExpressionException | SAXException | IOException | ParserConfigurationException e) {
+        } catch (IOException e) {
             log.debug("Failed to extract SCM URL", e);
         }
         return ciEndpoint;
@@ -188,6 +176,9 @@ public class CIStatusValidator {
             } else {
                 return new ValidationResult(false, message);
             }
+        } catch (RateLimitedException e) {
+            return ValidationResult.deferred(
+                    "CI status check deferred: " + e.getMessage() + "\nCI Status Url: " + ciEndpoint);
         } catch (Exception e) {
             return new ValidationResult(
                     false,
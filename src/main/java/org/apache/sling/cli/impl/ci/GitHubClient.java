@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.ci;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.sling.cli.impl.ComponentContextHelper;
+import org.apache.sling.cli.impl.CredentialsService;
+import org.apache.sling.cli.impl.PrivateFiles;
+import org.apache.sling.cli.impl.http.HttpClientFactory;
+import org.bouncycastle.util.encoders.Hex;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads JSON resources from the GitHub REST API while keeping the number of calls that count against the rate limit
+ * as low as possible.
+ *
+ * <p>Responses are cached together with their {@code ETag}, in memory and in a cache folder that survives across
+ * runs, and are revalidated with {@code If-None-Match}; a {@code 304 Not Modified} answer does not count against the
+ * rate limit. Only entries that other users cannot have written are read back from the cache folder. Calls are
+ * authenticated when a GitHub token is configured (see {@link CredentialsService}). The {@code X-RateLimit-*} headers
+ * of every response are tracked: when only a few calls are left the client spreads the remaining ones until the
+ * limit resets, and when none are left it either waits for the reset, if that is near enough, or fails with a
+ * {@link RateLimitedException} so that callers can report the check as deferred.
+ */
+@Component(service = GitHubClient.class)
+public class GitHubClient {
+
+    static final String HEADER_RATE_LIMIT = "X-RateLimit-Limit";
+    static final String HEADER_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    static final String HEADER_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitHubClient.class);
+    // a per-user folder rather than the shared temporary directory: a planted entry with a matching ETag would
+    // otherwise be replayed as GitHub's answer on a 304
+    private static final String DEFAULT_CACHE_DIR =
+            Paths.get(System.getProperty("user.home"), ".sling-cli", "github").toString();
+    private static final int DEFAULT_MAX_WAIT_SECONDS = 60;
+    private static final int DEFAULT_LOW_WATERMARK = 5;
+
+    @Reference
+    private HttpClientFactory httpClientFactory;
+
+    @Reference
+    private CredentialsService credentialsService;
+
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+    private volatile RateLimit rateLimit;
+
+    private Path cacheDir;
+    private long maxWaitMillis;
+    private int lowWatermark;
+
+    @Activate
+    protected void activate(ComponentContext ctx) {
+        ComponentContextHelper helper = ComponentContextHelper.wrap(ctx);
+        cacheDir = Paths.get(helper.getProperty("github.cache.dir", DEFAULT_CACHE_DIR));
+        maxWaitMillis = helper.getProperty("github.ratelimit.max.wait.seconds", DEFAULT_MAX_WAIT_SECONDS) * 1000L;
+        lowWatermark = helper.getProperty("github.ratelimit.low.watermark", DEFAULT_LOW_WATERMARK);
+    }
+
+    /**
+     * Retrieves a JSON object from the GitHub API, revalidating a previously cached copy when there is one.
+     *
+     * @param url the API URL
+     * @return the JSON object
+     * @throws RateLimitedException if the rate limit is exhausted and does not reset soon enough to wait for it
+     * @throws IOException if the call fails or GitHub does not answer with a 200 or 304 status
+     */
+    public JsonObject getJson(String url) throws IOException {
+        throttle(url);
+        CachedResponse cached = getCached(url);
+        try (CloseableHttpClient client = httpClientFactory.newClient()) {
+            HttpGet get = new HttpGet(url);
+            get.addHeader(HttpHeaders.ACCEPT, "application/vnd.github+json");
+            credentialsService
+                    .getGitHubToken()
+                    .ifPresent(token -> get.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+            if (cached != null) {
+                get.addHeader(HttpHeaders.IF_NONE_MATCH, cached.etag());
+            }
+            try (CloseableHttpResponse response = client.execute(get)) {
+                updateRateLimit(response);
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                    LOGGER.debug("{} not modified, using the cached response.", url);
+                    return parse(cached.body());
+                }
+                if (statusCode == HttpStatus.SC_OK) {
+                    String body;
+                    try (InputStream content = response.getEntity().getContent()) {
+                        body = IOUtils.toString(content, StandardCharsets.UTF_8);
+                    }
+                    Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+                    if (etag != null) {
+                        putCached(url, new CachedResponse(etag.getValue(), body));
+                    }
+                    return parse(body);
+                }
+                if (isRateLimited(statusCode)) {
+                    throw new RateLimitedException(
+                            "GitHub API rate limit exceeded while calling " + url + "; " + describeReset());
+                }
+                throw new IOException("Status line : " + response.getStatusLine());
+            }
+        }
+    }
+
+    /**
+     * Returns the rate limit GitHub reported with the last response.
+     *
+     * @return the rate limit, or {@code null} if no response carried rate limit headers yet
+     */
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    private void throttle(String url) throws IOException {
+        RateLimit current = rateLimit;
+        if (current == null) {
+            return;
+        }
+        long untilReset = current.resetEpochSeconds() * 1000L - currentTimeMillis();
+        if (untilReset <= 0) {
+            return;
+        }
+        long delay;
+        if (current.remaining() <= 0) {
+            if (untilReset > maxWaitMillis) {
+                throw new RateLimitedException(
+                        "GitHub API rate limit exhausted, not calling " + url + "; " + describeReset());
+            }
+            delay = untilReset;
+        } else if (current.remaining() < lowWatermark) {
+            // spread the few calls that are left evenly until the limit resets
+            delay = Math.min(untilReset / current.remaining(), maxWaitMillis);
+        } else {
+            return;
+        }
+        LOGGER.info(
+                "Only {} of {} GitHub API calls left; waiting {} ms before calling {}.",
+                current.remaining(),
+                current.limit(),
+                delay,
+                url);
+        try {
+            pause(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the GitHub API rate limit to reset", e);
+        }
+    }
+
+    private boolean isRateLimited(int statusCode) {
+        if (statusCode == 429) {
+            return true;
+        }
+        RateLimit current = rateLimit;
+        return statusCode == HttpStatus.SC_FORBIDDEN && current != null && current.remaining() <= 0;
+    }
+
+    private String describeReset() {
+        RateLimit current = rateLimit;
+        if (current == null) {
+            return "the reset time is unknown";
+        }
+        long seconds = Math.max(0, current.resetEpochSeconds() - currentTimeMillis() / 1000);
+        return String.format(
+                "the limit of %d calls resets in %d seconds%s",
+                current.limit(),
+                seconds,
+                credentialsService.getGitHubToken().isPresent() ? "" : " (configure a GitHub token to raise it)");
+    }
+
+    private void updateRateLimit(HttpResponse response) {
+        Header limit = response.getFirstHeader(HEADER_RATE_LIMIT);
+        Header remaining = response.getFirstHeader(HEADER_RATE_LIMIT_REMAINING);
+        Header reset = response.getFirstHeader(HEADER_RATE_LIMIT_RESET);
+        if (limit == null || remaining == null || reset == null) {
+            return;
+        }
+        try {
+            rateLimit = new RateLimit(
+                    Integer.parseInt(limit.getValue()),
+                    Integer.parseInt(remaining.getValue()),
+                    Long.parseLong(reset.getValue()));
+            LOGGER.debug("GitHub API rate limit: {}", rateLimit);
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Ignoring malformed GitHub rate limit headers.", e);
+        }
+    }
+
+    private CachedResponse getCached(String url) {
+        return cache.computeIfAbsent(url, key -> {
+            Path file = cacheFile(key);
+            if (file == null || !Files.isRegularFile(file)) {
+                return null;
+            }
+            if (!PrivateFiles.isPrivate(file) || !PrivateFiles.isPrivate(file.getParent())) {
+                LOGGER.warn("Ignoring GitHub cache entry {}, since other users can write to it.", file);
+                return null;
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                JsonObject entry = new JsonParser().parse(reader).getAsJsonObject();
+                return new CachedResponse(
+                        entry.get("etag").getAsString(), entry.get("body").getAsString());
+            } catch (Exception e) {
+                LOGGER.debug("Ignoring unreadable GitHub cache entry {}.", file, e);
+                return null;
+            }
+        });
+    }
+
+    private void putCached(String url, CachedResponse response) {
+        cache.put(url, response);
+        Path file = cacheFile(url);
+        if (file == null) {
+            return;
+        }
+        try {
+            PrivateFiles.createPrivateDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            JsonObject entry = new JsonObject();
+            entry.addProperty("etag", response.etag());
+            entry.addProperty("body", response.body());
+            Files.writeString(tmp, entry.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to store GitHub cache entry for {}.", url, e);
+        }
+    }
+
+    private Path cacheFile(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return cacheDir.resolve(Hex.toHexString(digest.digest(url.getBytes(StandardCharsets.UTF_8))) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static JsonObject parse(String body) {
+        return new JsonParser().parse(body).getAsJsonObject();
+    }
+
+    // visible for testing
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // visible for testing
+    void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * The GitHub API rate limit as reported by the {@code X-RateLimit-*} response headers.
+     *
+     * @param limit the number of calls allowed per window
+     * @param remaining the number of calls left in the current window
+     * @param resetEpochSeconds when the current window ends, in seconds since the epoch
+     */
+    public record RateLimit(int limit, int remaining, long resetEpochSeconds) {}
+
+    private record CachedResponse(String etag, String body) {}
+}
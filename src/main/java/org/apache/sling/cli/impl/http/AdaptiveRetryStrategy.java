@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.http;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries requests that a busy server turned away ({@code 429}, {@code 502}, {@code 503} and {@code 504}) with
+ * exponential backoff and jitter, or after the delay the server asked for with {@code Retry-After}.
+ * <p>
+ * Idempotent requests are retried on all of these statuses. Other requests, such as the Nexus bulk actions or Jira
+ * transitions sent as {@code POST}, are retried only on {@code 429} and {@code 503}, which tell that the server did not
+ * act on the request; after a {@code 502} or {@code 504} a gateway may already have forwarded it.
+ * <p>
+ * Each host has a retry budget for the whole run, and a circuit breaker: after a number of turned away requests in a
+ * row the host is not called for a while, and requests to it fail fast with a {@link CircuitOpenException}. The first
+ * request after that period decides whether the host is back.
+ */
+class AdaptiveRetryStrategy implements ServiceUnavailableRetryStrategy, HttpRequestInterceptor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveRetryStrategy.class);
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(
+            SC_TOO_MANY_REQUESTS,
+            HttpStatus.SC_BAD_GATEWAY,
+            HttpStatus.SC_SERVICE_UNAVAILABLE,
+            HttpStatus.SC_GATEWAY_TIMEOUT);
+    private static final Set<Integer> NOT_PROCESSED_STATUSES =
+            Set.of(SC_TOO_MANY_REQUESTS, HttpStatus.SC_SERVICE_UNAVAILABLE);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE");
+    private static final String HEADER_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+
+    /**
+     * The retry settings.
+     *
+     * @param maxRetries the maximum number of retries of a single request
+     * @param baseDelayMillis the delay before the first retry, doubled for each further one
+     * @param maxDelayMillis the longest delay to wait before a retry; a longer {@code Retry-After} is not waited for
+     * @param budget the maximum number of retries per host for the whole run
+     * @param circuitThreshold the number of turned away requests in a row that opens the circuit of a host
+     * @param circuitOpenMillis how long an open circuit makes the requests to its host fail fast
+     */
+    record Settings(
+            int maxRetries,
+            long baseDelayMillis,
+            long maxDelayMillis,
+            int budget,
+            int circuitThreshold,
+            long circuitOpenMillis) {}
+
+    private final Settings settings;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    AdaptiveRetryStrategy(Settings settings) {
+        this.settings = settings;
+    }
+
+    /** Fails fast when the circuit of the target host is open. */
+    @Override
+    public void process(HttpRequest request, HttpContext context) throws IOException {
+        HttpHost target = HttpClientContext.adapt(context).getTargetHost();
+        if (target == null) {
+            return;
+        }
+        HostState state = state(target);
+        long openForMillis;
+        synchronized (state) {
+            openForMillis = state.openUntil - currentTimeMillis();
+        }
+        if (openForMillis > 0) {
+            throw new CircuitOpenException(String.format(
+                    "%s turned away %d requests in a row; not calling it for another %d seconds",
+                    target.toHostString(), settings.circuitThreshold(), (openForMillis + 999) / 1000));
+        }
+    }
+
+    @Override
+    public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+        HttpClientContext clientContext = HttpClientContext.adapt(context);
+        HttpHost target = clientContext.getTargetHost();
+        int status = response.getStatusLine().getStatusCode();
+        if (target == null) {
+            return false;
+        }
+        HostState state = state(target);
+        if (!RETRYABLE_STATUSES.contains(status)) {
+            // any other answer shows that the host is serving again
+            synchronized (state) {
+                state.consecutiveFailures = 0;
+            }
+            return false;
+        }
+        synchronized (state) {
+            state.consecutiveFailures++;
+            if (state.consecutiveFailures >= settings.circuitThreshold()) {
+                state.openUntil = currentTimeMillis() + settings.circuitOpenMillis();
+                LOGGER.warn(
+                        "{} turned away {} requests in a row; not calling it for {} seconds.",
+                        target.toHostString(),
+                        state.consecutiveFailures,
+                        settings.circuitOpenMillis() / 1000);
+                return false;
+            }
+        }
+        HttpRequest request = clientContext.getRequest();
+        String method = request.getRequestLine().getMethod();
+        if (executionCount > settings.maxRetries()
+                || !isRepeatable(request)
+                || (!IDEMPOTENT_METHODS.contains(method) && !NOT_PROCESSED_STATUSES.contains(status))) {
+            return false;
+        }
+        long delay = retryAfterMillis(response);
+        if (delay < 0) {
+            if (isRateLimitExhausted(response)) {
+                // the rate limit window may reset much later; the caller knows better how to deal with it
+                return false;
+            }
+            delay = backoffMillis(executionCount);
+        } else if (delay > settings.maxDelayMillis()) {
+            LOGGER.warn(
+                    "{} asked to retry {} {} after {} seconds, which is longer than the {} seconds allowed.",
+                    target.toHostString(),
+                    method,
+                    request.getRequestLine().getUri(),
+                    delay / 1000,
+                    settings.maxDelayMillis() / 1000);
+            return false;
+        }
+        synchronized (state) {
+            if (state.retries >= settings.budget()) {
+                LOGGER.warn("The retry budget for {} is used up; not retrying any more.", target.toHostString());
+                return false;
+            }
+            state.retries++;
+        }
+        LOGGER.info(
+                "{} answered {} to {} {}; retrying in {} ms ({} of {}).",
+                target.toHostString(),
+                status,
+                method,
+                request.getRequestLine().getUri(),
+                delay,
+                executionCount,
+                settings.maxRetries());
+        try {
+            pause(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /** The retry delay is waited for in {@link #retryRequest}, so that it is never paid for a request not retried. */
+    @Override
+    public long getRetryInterval() {
+        return 0;
+    }
+
+    private HostState state(HttpHost target) {
+        return hosts.computeIfAbsent(target.toHostString(), host -> new HostState());
+    }
+
+    /** Exponential backoff with equal jitter: half of the delay is fixed, the other half random. */
+    private long backoffMillis(int executionCount) {
+        long ceiling =
+                Math.min(settings.maxDelayMillis(), settings.baseDelayMillis() << Math.min(executionCount - 1, 30));
+        return ceiling / 2 + (long) (random() * (ceiling - ceiling / 2));
+    }
+
+    private long retryAfterMillis(HttpResponse response) {
+        Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return -1;
+        }
+        String value = retryAfter.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - currentTimeMillis());
+        }
+    }
+
+    private static boolean isRateLimitExhausted(HttpResponse response) {
+        Header remaining = response.getFirstHeader(HEADER_RATE_LIMIT_REMAINING);
+        return remaining != null && "0".equals(remaining.getValue().trim());
+    }
+
+    private static boolean isRepeatable(HttpRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    // visible for testing
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // visible for testing
+    void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    // visible for testing
+    double random() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    /** The retry state of a host, guarded by its own monitor. */
+    private static final class HostState {
+        private int retries;
+        private int consecutiveFailures;
+        private long openUntil;
+    }
+
+    /** Thrown instead of calling a host whose circuit is open. */
+    static final class CircuitOpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -18,20 +18,32 @@
  */
 package org.apache.sling.cli.impl.http;
 
+import javax.net.ssl.SSLException;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.List;
+
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.HttpRequestWrapper;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.protocol.HttpContext;
 import org.apache.sling.cli.impl.ComponentContextHelper;
 import org.apache.sling.cli.impl.Credentials;
 import org.apache.sling.cli.impl.CredentialsService;
@@ -49,6 +61,24 @@ public class HttpClientFactory {
     private static final String DEFAULT_NEXUS_HOST = "repository.apache.org";
     private static final int DEFAULT_NEXUS_PORT = 443;
 
+    private static final int DEFAULT_RETRY_MAX = 4;
+    private static final int DEFAULT_RETRY_DELAY_MILLIS = 1_000;
+    private static final int DEFAULT_RETRY_MAX_DELAY_SECONDS = 60;
+    private static final int DEFAULT_RETRY_BUDGET = 20;
+    private static final int DEFAULT_CIRCUIT_THRESHOLD = 5;
+    private static final int DEFAULT_CIRCUIT_OPEN_SECONDS = 60;
+
+    /** The default I/O error retries, except for requests failing fast because the circuit of a host is open. */
+    private static final DefaultHttpRequestRetryHandler RETRY_HANDLER = new DefaultHttpRequestRetryHandler(
+            3,
+            false,
+            List.of(
+                    InterruptedIOException.class,
+                    UnknownHostException.class,
+                    ConnectException.class,
+                    SSLException.class,
+                    AdaptiveRetryStrategy.CircuitOpenException.class)) {};
+
     @Reference
     private CredentialsService credentialsService;
 
@@ -56,6 +86,7 @@ public class HttpClientFactory {
     private int jiraPort;
     private String nexusHost;
     private int nexusPort;
+    private AdaptiveRetryStrategy retryStrategy;
 
     @Activate
     protected void activate(ComponentContext ctx) {
@@ -64,25 +95,55 @@ public class HttpClientFactory {
         jiraPort = helper.getProperty("jira.port", DEFAULT_JIRA_PORT);
         nexusHost = helper.getProperty("nexus.host", DEFAULT_NEXUS_HOST);
         nexusPort = helper.getProperty("nexus.port", DEFAULT_NEXUS_PORT);
+        // shared by all clients, so that the retry budgets and circuit breakers cover the whole run
+        retryStrategy = new AdaptiveRetryStrategy(new AdaptiveRetryStrategy.Settings(
+                helper.getProperty("http.retry.max", DEFAULT_RETRY_MAX),
+                helper.getProperty("http.retry.delay.millis", DEFAULT_RETRY_DELAY_MILLIS),
+                helper.getProperty("http.retry.max.delay.seconds", DEFAULT_RETRY_MAX_DELAY_SECONDS) * 1000L,
+                helper.getProperty("http.retry.budget", DEFAULT_RETRY_BUDGET),
+                helper.getProperty("http.circuit.threshold", DEFAULT_CIRCUIT_THRESHOLD),
+                helper.getProperty("http.circuit.open.seconds", DEFAULT_CIRCUIT_OPEN_SECONDS) * 1000L));
     }
 
     public CloseableHttpClient newClient() {
-        final String[] urlHolder = new String[1];
+        return newClientBuilder().build();
+    }
+
+    /**
+     * Creates a client meant to be shared by up to {@code maxConnections} threads that call the same host
+     * concurrently; the clients created by {@link #newClient()} keep at most two connections per host.
+     *
+     * @param maxConnections the maximum number of connections, per host and in total
+     * @return the client
+     */
+    public CloseableHttpClient newClient(int maxConnections) {
+        return newClientBuilder()
+                .setMaxConnPerRoute(maxConnections)
+                .setMaxConnTotal(maxConnections)
+                .build();
+    }
+
+    private HttpClientBuilder newClientBuilder() {
+        // interceptors run on the thread executing the request, which may share the client with others
+        final ThreadLocal<String> url = new ThreadLocal<>();
         return HttpClients.custom()
                 .setDefaultCredentialsProvider(newCredentialsProvider())
+                .setServiceUnavailableRetryStrategy(retryStrategy)
+                .setRetryHandler(RETRY_HANDLER)
+                .addInterceptorFirst((HttpRequestInterceptor) retryStrategy)
+                .addInterceptorFirst((HttpRequestInterceptor) HttpClientFactory::authenticatePreemptively)
                 .addInterceptorFirst(
-                        (HttpRequestInterceptor) (request, context) -> urlHolder[0] = ((HttpRequestWrapper) request)
+                        (HttpRequestInterceptor) (request, context) -> url.set(((HttpRequestWrapper) request)
                                 .getOriginal()
                                 .getRequestLine()
-                                .getUri())
+                                .getUri()))
                 .addInterceptorFirst((HttpResponseInterceptor) (response, context) -> {
                     if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
                         throw new IllegalStateException(
                                 "Server returned a 401 status; please check your authentication details for "
-                                        + urlHolder[0]);
+                                        + url.get());
                     }
-                })
-                .build();
+                });
     }
 
     private BasicCredentialsProvider newCredentialsProvider() {
@@ -101,15 +162,27 @@ public class HttpClientFactory {
         return credentialsProvider;
     }
 
-    public HttpClientContext newPreemptiveAuthenticationContext() {
-
-        AuthCache authCache = new BasicAuthCache();
-        authCache.put(new HttpHost(jiraHost, jiraPort, "https"), new BasicScheme());
-
-        HttpClientContext ctx = HttpClientContext.create();
-        ctx.setAuthCache(authCache);
-        ctx.setCredentialsProvider(newCredentialsProvider());
-
-        return ctx;
+    /**
+     * Sends the basic authentication credentials with the first request to any host the credentials provider has
+     * credentials for (Nexus, Jira and the Reporter), instead of waiting for a 401 challenge and repeating the
+     * request. Hosts without credentials never get an {@code Authorization} header.
+     */
+    private static void authenticatePreemptively(HttpRequest request, HttpContext context) {
+        HttpClientContext clientContext = HttpClientContext.adapt(context);
+        HttpHost target = clientContext.getTargetHost();
+        CredentialsProvider credentialsProvider = clientContext.getCredentialsProvider();
+        if (target == null
+                || credentialsProvider == null
+                || credentialsProvider.getCredentials(new AuthScope(target)) == null) {
+            return;
+        }
+        AuthCache authCache = clientContext.getAuthCache();
+        if (authCache == null) {
+            authCache = new BasicAuthCache();
+            clientContext.setAuthCache(authCache);
+        }
+        if (authCache.get(target) == null) {
+            authCache.put(target, new BasicScheme());
+        }
     }
 }
@@ -171,8 +171,7 @@ public class VersionClient {
         post.setEntity(new StringEntity(w.toString()));
 
         try (CloseableHttpClient client = httpClientFactory.newClient()) {
-            try (CloseableHttpResponse response =
-                    client.execute(post, httpClientFactory.newPreemptiveAuthenticationContext())) {
+            try (CloseableHttpResponse response = client.execute(post)) {
                 try (InputStream content = response.getEntity().getContent();
                         InputStreamReader reader = new InputStreamReader(content)) {
 
@@ -414,8 +413,7 @@ public class VersionClient {
                 }
                 put.setEntity(new StringEntity(w.toString()));
                 try (CloseableHttpClient client = httpClientFactory.newClient()) {
-                    try (CloseableHttpResponse response =
-                            client.execute(put, httpClientFactory.newPreemptiveAuthenticationContext())) {
+                    try (CloseableHttpResponse response = client.execute(put)) {
                         int statusCode = response.getStatusLine().getStatusCode();
                         if (statusCode != 200) {
                             throw new IOException(String.format(
@@ -576,8 +574,7 @@ public class VersionClient {
             put.setEntity(new StringEntity(w.toString(), StandardCharsets.UTF_8));
 
             try (CloseableHttpClient client = httpClientFactory.newClient()) {
-                try (CloseableHttpResponse response =
-                        client.execute(put, httpClientFactory.newPreemptiveAuthenticationContext())) {
+                try (CloseableHttpResponse response = client.execute(put)) {
                     if (response.getStatusLine().getStatusCode() != 204) {
                         try (InputStream content = response.getEntity().getContent();
                                 InputStreamReader reader = new InputStreamReader(content)) {
@@ -595,8 +592,7 @@ public class VersionClient {
         HttpGet get = newGet(ISSUE_PATH + issue.getId() + "/transitions");
         try {
             try (CloseableHttpClient client = httpClientFactory.newClient()) {
-                try (CloseableHttpResponse getResponse =
-                        client.execute(get, httpClientFactory.newPreemptiveAuthenticationContext())) {
+                try (CloseableHttpResponse getResponse = client.execute(get)) {
                     try (InputStream getContent = getResponse.getEntity().getContent();
                             InputStreamReader getReader = new InputStreamReader(getContent)) {
                         if (getResponse.getStatusLine().getStatusCode() != 200) {
@@ -636,8 +632,7 @@ public class VersionClient {
                     .endObject();
             post.setEntity(new StringEntity(w.toString()));
             try (CloseableHttpClient client = httpClientFactory.newClient()) {
-                try (CloseableHttpResponse postResponse =
-                        client.execute(post, httpClientFactory.newPreemptiveAuthenticationContext())) {
+                try (CloseableHttpResponse postResponse = client.execute(post)) {
                     if (postResponse.getStatusLine().getStatusCode() == 204) {
                         return promiseFactory.resolved(issue);
                     } else {
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.nexus;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed pool of download threads that runs the queued downloads by priority, lowest first, and in the order they
+ * were queued within a priority.
+ */
+final class DownloadLane {
+
+    /** A download that may fail with an {@link IOException}. */
+    @FunctionalInterface
+    interface Download {
+        void run() throws IOException;
+    }
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    DownloadLane(int threads) {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+        // a core thread started on demand runs the download it was started for ahead of the queue, so all of them are
+        // started upfront and every download goes through the queue
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Queues a download.
+     *
+     * @param priority the priority of the download; lower values run first
+     * @param download the download
+     * @return a future completed when the download is done, or completed exceptionally when it fails
+     */
+    CompletableFuture<Void> schedule(int priority, Download download) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        executor.execute(new QueuedDownload(priority, sequence.getAndIncrement(), () -> {
+            try {
+                download.run();
+                future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }));
+        return future;
+    }
+
+    /** Stops the running downloads and discards the queued ones. */
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    private record QueuedDownload(int priority, long sequence, Runnable task)
+            implements Runnable, Comparable<QueuedDownload> {
+
+        private static final Comparator<QueuedDownload> ORDER =
+                Comparator.comparingInt(QueuedDownload::priority).thenComparingLong(QueuedDownload::sequence);
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(QueuedDownload other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
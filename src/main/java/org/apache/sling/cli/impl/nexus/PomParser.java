@@ -18,26 +18,17 @@
  */
 package org.apache.sling.cli.impl.nexus;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+import org.apache.sling.cli.impl.pom.PomModel;
+import org.apache.sling.cli.impl.pom.PomModelService;
 import org.apache.sling.cli.impl.release.Release;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 /**
  * Parses staged Maven POMs into {@link PomCoordinates} and reduces a set of staged POMs to the
@@ -48,8 +39,15 @@ class PomParser {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PomParser.class);
 
-    private final XPathFactory xPathFactory = XPathFactory.newInstance();
-    private final DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+    private final PomModelService pomModelService;
+
+    PomParser() {
+        this(new PomModelService());
+    }
+
+    PomParser(PomModelService pomModelService) {
+        this.pomModelService = pomModelService;
+    }
 
     /**
      * The Maven coordinates and name of a single staged POM, with versions resolved against the
@@ -67,36 +65,15 @@ class PomParser {
     /** Parses a single POM stream, returning {@code null} (after logging) when it cannot be read. */
     PomCoordinates parse(InputStream stream, String pomLabel) {
         try {
-            XPath xPath = xPathFactory.newXPath();
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
-            Document doc = builder.parse(stream);
-            String name = xpathString(xPath, doc, "/project/name/text()");
-            String artifactId = xpathString(xPath, doc, "/project/artifactId/text()");
-            String groupId = xpathString(xPath, doc, "/project/groupId/text()");
-            String version = xpathString(xPath, doc, "/project/version/text()");
-            String packaging = xpathString(xPath, doc, "/project/packaging/text()");
-            String parentGroupId = xpathString(xPath, doc, "/project/parent/groupId/text()");
-            String parentArtifactId = xpathString(xPath, doc, "/project/parent/artifactId/text()");
-            String parentVersion = xpathString(xPath, doc, "/project/parent/version/text()");
-            // In a multi-module reactor a child module's POM frequently omits <groupId>/<version> and
-            // inherits them from its <parent>; fall back so such modules are not skipped.
-            if (groupId == null || groupId.isBlank()) {
-                groupId = parentGroupId;
-            }
-            if (version == null || version.isBlank()) {
-                version = parentVersion;
-            }
-            if (packaging == null || packaging.isBlank()) {
-                packaging = "jar";
-            }
+            PomModel pom = pomModelService.read(stream);
             return new PomCoordinates(
-                    name,
-                    groupId,
-                    artifactId,
-                    version,
-                    packaging,
-                    coordinateKey(parentGroupId, parentArtifactId, parentVersion));
-        } catch (ParserConfigurationException | SAXException | XPathExpressionException | IOException e) {
+                    pom.name(),
+                    pom.groupId(),
+                    pom.artifactId(),
+                    pom.version(),
+                    pom.packaging(),
+                    coordinateKey(pom.parentGroupId(), pom.parentArtifactId(), pom.parentVersion()));
+        } catch (IOException e) {
             LOGGER.error(String.format("Unable to process pom %s.", pomLabel), e);
             return null;
         }
@@ -112,18 +89,7 @@ class PomParser {
      * independent modules staged and voted together) every staged module becomes its own release.
      */
     static Set<Release> toReleases(List<PomCoordinates> poms) {
-        Set<String> stagedKeys =
-                poms.stream().map(PomCoordinates::ownKey).filter(k -> k != null).collect(Collectors.toSet());
-        List<PomCoordinates> aggregators = poms.stream()
-                .filter(p -> "pom".equals(p.packaging()))
-                // is the parent of at least one other staged module
-                .filter(p -> p.ownKey() != null
-                        && poms.stream()
-                                .anyMatch(other -> other != p && p.ownKey().equals(other.parentKey())))
-                // and is the root of the staged hierarchy (its own parent is not itself staged, e.g. it
-                // is the shared org.apache.sling parent POM, which is not part of the release)
-                .filter(p -> p.parentKey() == null || !stagedKeys.contains(p.parentKey()))
-                .toList();
+        List<PomCoordinates> aggregators = ReactorGraph.of(poms).aggregators();
         if (aggregators.size() == 1) {
             return buildReleases(aggregators.get(0));
         }
@@ -150,8 +116,4 @@ class PomParser {
         }
         return groupId + ":" + artifactId + ":" + version;
     }
-
-    private static String xpathString(XPath xPath, Document doc, String expression) throws XPathExpressionException {
-        return (String) xPath.compile(expression).evaluate(doc, XPathConstants.STRING);
-    }
 }
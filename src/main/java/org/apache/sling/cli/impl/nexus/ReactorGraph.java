@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.nexus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.cli.impl.nexus.PomParser.PomCoordinates;
+
+/**
+ * The parent/child structure of the POMs staged in one repository, built in a single pass: an index of the staged
+ * POMs by their {@code groupId:artifactId:version} key, the staged children of every staged parent and the roots of
+ * the staged hierarchy. Every lookup is a map access, so consumers do not need to compare each POM with every other.
+ */
+final class ReactorGraph {
+
+    private final Map<String, PomCoordinates> byKey = new HashMap<>();
+    private final Map<String, List<PomCoordinates>> childrenByParentKey = new HashMap<>();
+    private final Map<PomCoordinates, String> keys = new HashMap<>();
+    private final List<PomCoordinates> roots = new ArrayList<>();
+
+    private ReactorGraph(List<PomCoordinates> poms) {
+        for (PomCoordinates pom : poms) {
+            String key = pom.ownKey();
+            keys.put(pom, key);
+            if (key != null) {
+                byKey.putIfAbsent(key, pom);
+            }
+            if (pom.parentKey() != null) {
+                childrenByParentKey
+                        .computeIfAbsent(pom.parentKey(), k -> new ArrayList<>())
+                        .add(pom);
+            }
+        }
+        for (PomCoordinates pom : poms) {
+            // a root's own parent is not staged, e.g. it is the shared org.apache.sling parent POM, which is not
+            // part of the release
+            if (pom.parentKey() == null || !byKey.containsKey(pom.parentKey())) {
+                roots.add(pom);
+            }
+        }
+    }
+
+    static ReactorGraph of(List<PomCoordinates> poms) {
+        return new ReactorGraph(poms);
+    }
+
+    /** Returns the staged POM with the given {@code groupId:artifactId:version} key, or {@code null}. */
+    PomCoordinates get(String key) {
+        return byKey.get(key);
+    }
+
+    /** Returns the staged POMs declaring {@code pom} as their {@code <parent>}. */
+    List<PomCoordinates> children(PomCoordinates pom) {
+        String key = keys.containsKey(pom) ? keys.get(pom) : pom.ownKey();
+        if (key == null) {
+            return List.of();
+        }
+        List<PomCoordinates> children = childrenByParentKey.getOrDefault(key, List.of());
+        if (children.contains(pom)) {
+            // a POM naming itself as its parent is not its own child
+            children = children.stream().filter(child -> child != pom).toList();
+        }
+        return Collections.unmodifiableList(children);
+    }
+
+    /** Returns the staged POMs whose parent is not staged, in staging order. */
+    List<PomCoordinates> roots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * Returns the staged reactor aggregators: {@code pom}-packaging roots of the staged hierarchy that are the parent
+     * of at least one other staged module.
+     */
+    List<PomCoordinates> aggregators() {
+        return roots.stream()
+                .filter(pom -> "pom".equals(pom.packaging()))
+                .filter(pom -> !children(pom).isEmpty())
+                .toList();
+    }
+}
@@ -21,27 +21,52 @@ package org.apache.sling.cli.impl.nexus;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -49,9 +74,12 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.sling.cli.impl.ComponentContextHelper;
+import org.apache.sling.cli.impl.PrivateFiles;
 import org.apache.sling.cli.impl.http.HttpClientFactory;
 import org.apache.sling.cli.impl.nexus.StagingRepository.Status;
+import org.apache.sling.cli.impl.pom.PomModelService;
 import org.apache.sling.cli.impl.release.Release;
+import org.bouncycastle.util.encoders.Hex;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
@@ -67,85 +95,383 @@ public class RepositoryService {
     private static final String REPOSITORY_PREFIX = "orgapachesling-";
     private static final String DEFAULT_NEXUS_URL_PREFIX = "https://repository.apache.org";
     private static final String CONTENT_TYPE_JSON = "application/json";
+    // per-user folders rather than the shared temporary directory, so that other users cannot plant files in them; they
+    // can also be kept on a mounted volume when the CLI runs in a throwaway container
+    private static final String DEFAULT_CACHE_DIR =
+            Paths.get(System.getProperty("user.home"), ".sling-cli", "nexus").toString();
+    private static final String DEFAULT_DOWNLOAD_DIR = Paths.get(
+                    System.getProperty("user.home"), ".sling-cli", "downloads")
+            .toString();
+    // other invocations, and Nexus users other than this CLI, change the repositories behind a shared listing's
+    // back, so sharing it across invocations is opt-in
+    private static final int DEFAULT_STAGING_CACHE_TTL_SECONDS = 0;
+    private static final int MAX_TRANSFER_ATTEMPTS = 3;
+    private static final int CONTENT_CRAWL_PARALLELISM = 8;
+    private static final int POM_FETCH_PARALLELISM = 8;
+    private static final int METADATA_DOWNLOAD_PARALLELISM = 8;
+    private static final int BINARY_DOWNLOAD_PARALLELISM = 2;
+    private static final int PRIORITY_POM = 0;
+    private static final int PRIORITY_SIDECAR = 1;
+    private static final int PRIORITY_BINARY = 2;
+    private static final long POLL_INITIAL_DELAY_MILLIS = 1_000;
+    private static final long POLL_MAX_DELAY_MILLIS = 30_000;
+    /** The activity Nexus logs for a staging bulk action whose outcome can be awaited. */
+    private static final Map<String, String> BULK_ACTIVITIES = Map.of("close", "close", "promote", "release");
 
-    private Map<String, LocalRepository> repositories = new HashMap<>();
-    private ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-    private final PomParser pomParser = new PomParser();
+    private final Map<String, CompletableFuture<LocalRepository>> downloads = new ConcurrentHashMap<>();
+    // guards the folders of the partial downloads, which are created and pruned by the download threads
+    private final Object partialFolderLock = new Object();
+    // the number of close or release activities in the log of a staging repository before this run asked for another
+    // one, keyed by repository id and activity
+    private final Map<String, Integer> activityBaselines = new ConcurrentHashMap<>();
+    private PomParser pomParser;
 
     @Reference
     private HttpClientFactory httpClientFactory;
 
+    @Reference
+    private PomModelService pomModelService;
+
     private String nexusUrlPrefix;
+    private Path stagingCacheFile;
+    private Path downloadFolder;
+    private long stagingCacheTtlMillis;
+    private final Object stagingSnapshotLock = new Object();
+    private volatile StagingSnapshot stagingSnapshot;
 
     @Activate
     private void activate(ComponentContext componentContext) {
         ComponentContextHelper helper = ComponentContextHelper.wrap(componentContext);
         nexusUrlPrefix = helper.getProperty("nexus.url.prefix", DEFAULT_NEXUS_URL_PREFIX);
+        // one cache file per Nexus instance, so that e.g. a staging and a production Nexus do not mix
+        stagingCacheFile = Paths.get(helper.getProperty("nexus.cache.dir", DEFAULT_CACHE_DIR))
+                .resolve(sha256(nexusUrlPrefix) + "-profile_repositories.json");
+        stagingCacheTtlMillis =
+                helper.getProperty("nexus.staging.cache.ttl.seconds", DEFAULT_STAGING_CACHE_TTL_SECONDS) * 1000L;
+        downloadFolder = Paths.get(helper.getProperty("nexus.download.dir", DEFAULT_DOWNLOAD_DIR));
+        pomParser = new PomParser(pomModelService);
     }
 
     public List<StagingRepository> list() throws IOException {
-        return this.withStagingRepositories(reader -> {
-            Gson gson = new Gson();
-            return gson.fromJson(reader, StagingRepositories.class).getData().stream()
-                    .filter(r -> r.getRepositoryId().startsWith(REPOSITORY_PREFIX))
-                    .collect(Collectors.toList());
-        });
+        return stagingSnapshot().repositories();
+    }
+
+    /**
+     * Lists the Sling staging repositories that have been closed, i.e. the ones that are (or were) up for a vote.
+     *
+     * @return the closed staging repositories
+     * @throws IOException if the staging repositories cannot be retrieved
+     */
+    public List<StagingRepository> listClosed() throws IOException {
+        return stagingSnapshot().repositories().stream()
+                .filter(r -> r.getType() == Status.closed)
+                .collect(Collectors.toList());
     }
 
     public StagingRepository find(int stagingRepositoryId) throws IOException {
-        return this.withStagingRepositories(reader -> {
-            Gson gson = new Gson();
-            return gson.fromJson(reader, StagingRepositories.class).getData().stream()
-                    .filter(r -> r.getType() == Status.closed)
-                    .filter(r -> r.getRepositoryId().startsWith(REPOSITORY_PREFIX))
-                    .filter(r -> r.getRepositoryId().endsWith("-" + stagingRepositoryId))
-                    .findFirst()
-                    .orElseThrow(
-                            () -> new IllegalArgumentException("No repository found with id " + stagingRepositoryId));
-        });
+        StagingRepository repository = stagingSnapshot().byId().get(stagingRepositoryId);
+        if (repository == null || repository.getType() != Status.closed) {
+            throw new IllegalArgumentException("No repository found with id " + stagingRepositoryId);
+        }
+        return repository;
     }
 
     public StagingRepository findAny(int stagingRepositoryId) throws IOException {
-        return this.withStagingRepositories(reader -> {
-            Gson gson = new Gson();
-            return gson.fromJson(reader, StagingRepositories.class).getData().stream()
-                    .filter(r -> r.getRepositoryId().startsWith(REPOSITORY_PREFIX))
-                    .filter(r -> r.getRepositoryId().endsWith("-" + stagingRepositoryId))
-                    .findFirst()
-                    .orElseThrow(
-                            () -> new IllegalArgumentException("No repository found with id " + stagingRepositoryId));
-        });
+        StagingRepository repository = stagingSnapshot().byId().get(stagingRepositoryId);
+        if (repository == null) {
+            throw new IllegalArgumentException("No repository found with id " + stagingRepositoryId);
+        }
+        return repository;
     }
 
     public void close(StagingRepository repository) throws IOException {
-        executeBulkAction("close", repository.getRepositoryId(), Collections.emptyMap());
+        executeBulkAction("close", List.of(repository), Collections.emptyMap(), false);
     }
 
     public void close(StagingRepository repository, String description) throws IOException {
-        executeBulkAction("close", repository.getRepositoryId(), Collections.singletonMap("description", description));
+        closeAll(List.of(repository), description);
+    }
+
+    /**
+     * Closes several staging repositories with a single bulk request. Nexus sets {@code description} on all of them.
+     *
+     * @param repositories the staging repositories to close
+     * @param description the description of the closed repositories
+     * @throws IOException if Nexus does not accept the request
+     */
+    public void closeAll(Collection<StagingRepository> repositories, String description) throws IOException {
+        closeAll(repositories, description, false);
+    }
+
+    /**
+     * Closes several staging repositories with a single bulk request, like {@link #closeAll(Collection, String)},
+     * and prepares {@link #awaitClosed(Collection, Duration)} when {@code awaited} is set.
+     *
+     * @param repositories the staging repositories to close
+     * @param description the description of the closed repositories
+     * @param awaited whether the outcome is awaited afterwards; only then the activity log of every repository is
+     *     read before the request, so that the outcome is told apart from those of earlier attempts
+     * @throws IOException if Nexus does not accept the request
+     */
+    public void closeAll(Collection<StagingRepository> repositories, String description, boolean awaited)
+            throws IOException {
+        executeBulkAction("close", repositories, Collections.singletonMap("description", description), awaited);
     }
 
     public void promote(StagingRepository repository) throws IOException {
+        promoteAll(List.of(repository));
+    }
+
+    /**
+     * Promotes several staging repositories with a single bulk request.
+     *
+     * @param repositories the staging repositories to promote
+     * @throws IOException if Nexus does not accept the request
+     */
+    public void promoteAll(Collection<StagingRepository> repositories) throws IOException {
+        promoteAll(repositories, false);
+    }
+
+    /**
+     * Promotes several staging repositories with a single bulk request, like {@link #promoteAll(Collection)}, and
+     * prepares {@link #awaitPromoted(Collection, Duration)} when {@code awaited} is set.
+     *
+     * @param repositories the staging repositories to promote
+     * @param awaited whether the outcome is awaited afterwards; only then the activity log of every repository is
+     *     read before the request, so that the outcome is told apart from those of earlier attempts
+     * @throws IOException if Nexus does not accept the request
+     */
+    public void promoteAll(Collection<StagingRepository> repositories, boolean awaited) throws IOException {
         // Nexus "Release": move the staged artifacts to the release repository (which syncs to Maven
         // Central) and drop the staging repository afterwards. This matches the payload the Nexus UI
         // sends. Note there is no targetRepositoryId — that field is for build-promotion profiles and
         // is rejected with HTTP 400 by the bulk/promote endpoint.
-        executeBulkAction(
-                "promote", repository.getRepositoryId(), Collections.singletonMap("autoDropAfterRelease", true));
+        executeBulkAction("promote", repositories, Collections.singletonMap("autoDropAfterRelease", true), awaited);
     }
 
     public void drop(StagingRepository repository) throws IOException {
-        executeBulkAction("delete", repository.getRepositoryId(), Collections.emptyMap());
+        dropAll(List.of(repository));
+    }
+
+    /**
+     * Drops several staging repositories with a single bulk request.
+     *
+     * @param repositories the staging repositories to drop
+     * @throws IOException if Nexus does not accept the request
+     */
+    public void dropAll(Collection<StagingRepository> repositories) throws IOException {
+        executeBulkAction("delete", repositories, Collections.emptyMap(), false);
+    }
+
+    /**
+     * Waits until Nexus has finished closing staging repositories. The bulk close only queues the operation; Nexus
+     * then evaluates the staging rules (signatures, checksums, POM metadata) asynchronously.
+     *
+     * @param repositories the staging repositories a close was requested for, with
+     *     {@link #closeAll(Collection, String, boolean)} and {@code awaited} set
+     * @param timeout how long to wait at most, for all of them together
+     * @throws IOException if a staging rule failed, a close did not complete within {@code timeout} or Nexus
+     *     cannot be queried
+     */
+    public void awaitClosed(Collection<StagingRepository> repositories, Duration timeout) throws IOException {
+        long deadline = currentTimeMillis() + timeout.toMillis();
+        for (StagingRepository repository : repositories) {
+            awaitTransition(repository.getRepositoryId(), "close", "closed", false, timeout, deadline);
+        }
+    }
+
+    /**
+     * Waits until Nexus has finished releasing promoted staging repositories, i.e. until each is either marked as
+     * released or dropped, as requested by {@link #promoteAll(Collection)}.
+     *
+     * @param repositories the staging repositories a promotion was requested for, with
+     *     {@link #promoteAll(Collection, boolean)} and {@code awaited} set
+     * @param timeout how long to wait at most, for all of them together
+     * @throws IOException if a staging rule failed, a promotion did not complete within {@code timeout} or Nexus
+     *     cannot be queried
+     */
+    public void awaitPromoted(Collection<StagingRepository> repositories, Duration timeout) throws IOException {
+        long deadline = currentTimeMillis() + timeout.toMillis();
+        for (StagingRepository repository : repositories) {
+            awaitTransition(repository.getRepositoryId(), "release", "released", true, timeout, deadline);
+        }
     }
 
-    private void executeBulkAction(String action, String repositoryId, Map<String, Object> extraData)
+    /**
+     * Polls the status and the activity log of a staging repository, backing off exponentially between polls,
+     * until it reached {@code targetType}. Rule failures are logged as soon as they show up in the activity log;
+     * once Nexus is no longer transitioning the repository they fail the wait. Only the activities Nexus added after
+     * the bulk request of this run count, since the log still holds those of earlier attempts.
+     */
+    private void awaitTransition(
+            String repositoryId,
+            String activity,
+            String targetType,
+            boolean droppedIsDone,
+            Duration timeout,
+            long deadline)
             throws IOException {
+        long delay = POLL_INITIAL_DELAY_MILLIS;
+        Set<String> failures = new LinkedHashSet<>();
+        int baseline = activityBaselines.getOrDefault(activityKey(repositoryId, activity), 0);
         try (CloseableHttpClient client = httpClientFactory.newClient()) {
+            while (true) {
+                TransitionState state = getTransitionState(client, repositoryId);
+                for (String failure : getRuleFailures(client, repositoryId, activity, baseline)) {
+                    if (failures.add(failure)) {
+                        LOGGER.error("Staging rule failed for {}: {}", repositoryId, failure);
+                    }
+                }
+                if (state == null) {
+                    if (droppedIsDone) {
+                        activityBaselines.remove(activityKey(repositoryId, activity));
+                        invalidateStagingRepositories();
+                        return;
+                    }
+                    throw new IOException("Staging repository " + repositoryId + " no longer exists.");
+                }
+                if (!state.transitioning()) {
+                    if (!failures.isEmpty()) {
+                        throw new IOException(String.format(
+                                "Nexus could not %s staging repository %s: %s",
+                                activity, repositoryId, String.join("; ", failures)));
+                    }
+                    if (targetType.equals(state.type())) {
+                        activityBaselines.remove(activityKey(repositoryId, activity));
+                        invalidateStagingRepositories();
+                        return;
+                    }
+                }
+                long remaining = deadline - currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException(String.format(
+                            "Timed out after %d seconds waiting for staging repository %s to be %s; it is %s.",
+                            timeout.toSeconds(),
+                            repositoryId,
+                            targetType,
+                            state.transitioning() ? "still transitioning" : state.type()));
+                }
+                LOGGER.debug(
+                        "Staging repository {} is {}{}; checking again in {} ms.",
+                        repositoryId,
+                        state.type(),
+                        state.transitioning() ? " (transitioning)" : "",
+                        Math.min(delay, remaining));
+                try {
+                    pause(Math.min(delay, remaining));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for staging repository " + repositoryId, e);
+                }
+                delay = Math.min(delay * 2, POLL_MAX_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private TransitionState getTransitionState(CloseableHttpClient client, String repositoryId) throws IOException {
+        HttpGet get = newGet("/service/local/staging/repository/" + repositoryId);
+        try (CloseableHttpResponse response = client.execute(get)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                return null;
+            }
+            if (statusCode != HttpStatus.SC_OK) {
+                throw new IOException("Status line : " + response.getStatusLine());
+            }
+            try (InputStream content = response.getEntity().getContent();
+                    InputStreamReader reader = new InputStreamReader(content)) {
+                JsonObject json = new JsonParser().parse(reader).getAsJsonObject();
+                return new TransitionState(
+                        json.get("type").getAsString(),
+                        json.has("transitioning") && json.get("transitioning").getAsBoolean());
+            }
+        }
+    }
+
+    /**
+     * Collects the failure messages of the {@code ruleFailed} events of the most recent {@code activity} (e.g.
+     * {@code close}) in the activity log of a staging repository, unless it is one of the first {@code baseline}
+     * such activities.
+     */
+    private List<String> getRuleFailures(CloseableHttpClient client, String repositoryId, String activity, int baseline)
+            throws IOException {
+        List<JsonObject> activities = getActivities(client, repositoryId, activity);
+        List<String> failures = new ArrayList<>();
+        if (activities.size() <= baseline) {
+            return failures;
+        }
+        JsonObject latest = activities.get(activities.size() - 1);
+        if (!latest.has("events")) {
+            return failures;
+        }
+        for (JsonElement eventElement : latest.get("events").getAsJsonArray()) {
+            JsonObject event = eventElement.getAsJsonObject();
+            if (!"ruleFailed".equals(event.get("name").getAsString()) || !event.has("properties")) {
+                continue;
+            }
+            for (JsonElement propertyElement : event.get("properties").getAsJsonArray()) {
+                JsonObject property = propertyElement.getAsJsonObject();
+                if ("failureMessage".equals(property.get("name").getAsString())) {
+                    failures.add(property.get("value").getAsString());
+                }
+            }
+        }
+        return failures;
+    }
+
+    /** Reads the {@code activity} entries (e.g. {@code close}) of the activity log of a repository, in order. */
+    private List<JsonObject> getActivities(CloseableHttpClient client, String repositoryId, String activity)
+            throws IOException {
+        HttpGet get = newGet("/service/local/staging/repository/" + repositoryId + "/activity");
+        try (CloseableHttpResponse response = client.execute(get)) {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                // the activity log is gone together with a dropped repository
+                return Collections.emptyList();
+            }
+            try (InputStream content = response.getEntity().getContent();
+                    InputStreamReader reader = new InputStreamReader(content)) {
+                List<JsonObject> activities = new ArrayList<>();
+                for (JsonElement element : new JsonParser().parse(reader).getAsJsonArray()) {
+                    JsonObject candidate = element.getAsJsonObject();
+                    if (activity.equals(candidate.get("name").getAsString())) {
+                        activities.add(candidate);
+                    }
+                }
+                return activities;
+            }
+        }
+    }
+
+    private static String activityKey(String repositoryId, String activity) {
+        return repositoryId + "/" + activity;
+    }
+
+    private void executeBulkAction(
+            String action, Collection<StagingRepository> repositories, Map<String, Object> extraData, boolean awaited)
+            throws IOException {
+        List<String> repositoryIds = repositories.stream()
+                .map(StagingRepository::getRepositoryId)
+                .distinct()
+                .collect(Collectors.toList());
+        if (repositoryIds.isEmpty()) {
+            return;
+        }
+        try (CloseableHttpClient client = httpClientFactory.newClient()) {
+            String activity = BULK_ACTIVITIES.get(action);
+            if (activity != null && awaited) {
+                // Nexus records the activity of the request asynchronously, so awaiting its outcome needs to know
+                // which of the logged activities were there before
+                for (String repositoryId : repositoryIds) {
+                    activityBaselines.put(
+                            activityKey(repositoryId, activity),
+                            getActivities(client, repositoryId, activity).size());
+                }
+            }
             HttpPost post = new HttpPost(nexusUrlPrefix + "/service/local/staging/bulk/" + action);
             post.addHeader(HttpHeaders.ACCEPT, CONTENT_TYPE_JSON);
 
             Map<String, Object> data = new HashMap<>();
-            data.put("stagedRepositoryIds", Collections.singletonList(repositoryId));
+            data.put("stagedRepositoryIds", repositoryIds);
             data.put("description", "");
             data.putAll(extraData);
 
@@ -154,127 +480,382 @@ public class RepositoryService {
 
             post.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
 
+            // whatever the outcome, the listing may no longer reflect the state of the repositories
+            invalidateStagingRepositories();
             try (CloseableHttpResponse response = client.execute(post)) {
                 int statusCode = response.getStatusLine().getStatusCode();
                 if (statusCode != 201) {
-                    throw new IOException(
-                            "Unexpected status " + statusCode + " for staging bulk/" + action + " on " + repositoryId);
+                    throw new IOException("Unexpected status " + statusCode + " for staging bulk/" + action + " on "
+                            + String.join(", ", repositoryIds));
                 }
             }
         }
     }
 
-    private <T> T withStagingRepositories(Function<InputStreamReader, T> function) throws IOException {
+    /**
+     * Returns the Sling staging repositories as listed by Nexus. The listing is fetched once per run and then kept in
+     * memory. When {@code nexus.staging.cache.ttl.seconds} is set, it is also stored in the cache folder, where other
+     * invocations reuse it while it is younger than that time-to-live. Bulk actions and completed transitions discard
+     * both copies.
+     */
+    private StagingSnapshot stagingSnapshot() throws IOException {
+        StagingSnapshot snapshot = stagingSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (stagingSnapshotLock) {
+            if (stagingSnapshot == null) {
+                String json = readCachedStagingRepositories();
+                if (json == null) {
+                    json = fetchStagingRepositories();
+                    writeCachedStagingRepositories(json);
+                }
+                stagingSnapshot = StagingSnapshot.parse(json);
+            }
+            return stagingSnapshot;
+        }
+    }
+
+    private void invalidateStagingRepositories() {
+        synchronized (stagingSnapshotLock) {
+            stagingSnapshot = null;
+            try {
+                Files.deleteIfExists(stagingCacheFile);
+            } catch (IOException e) {
+                LOGGER.debug("Unable to delete the cached staging repositories {}.", stagingCacheFile, e);
+            }
+        }
+    }
+
+    private String readCachedStagingRepositories() {
+        if (stagingCacheTtlMillis <= 0 || !Files.isRegularFile(stagingCacheFile)) {
+            return null;
+        }
+        if (!PrivateFiles.isPrivate(stagingCacheFile) || !PrivateFiles.isPrivate(stagingCacheFile.getParent())) {
+            LOGGER.warn(
+                    "Ignoring the cached staging repositories {}, since other users can write to it.",
+                    stagingCacheFile);
+            return null;
+        }
+        try {
+            long age = currentTimeMillis()
+                    - Files.getLastModifiedTime(stagingCacheFile).toMillis();
+            if (age >= stagingCacheTtlMillis) {
+                return null;
+            }
+            LOGGER.debug("Using the staging repositories cached {} ms ago in {}.", age, stagingCacheFile);
+            return Files.readString(stagingCacheFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.debug("Ignoring unreadable cached staging repositories {}.", stagingCacheFile, e);
+            return null;
+        }
+    }
+
+    private void writeCachedStagingRepositories(String json) {
+        if (stagingCacheTtlMillis <= 0) {
+            return;
+        }
+        try {
+            Path folder = PrivateFiles.createPrivateDirectories(stagingCacheFile.getParent());
+            Path tmp =
+                    Files.createTempFile(folder, stagingCacheFile.getFileName().toString(), ".tmp");
+            Files.writeString(tmp, json, StandardCharsets.UTF_8);
+            Files.move(tmp, stagingCacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to cache the staging repositories in {}.", stagingCacheFile, e);
+        }
+    }
+
+    private String fetchStagingRepositories() throws IOException {
         try (CloseableHttpClient client = httpClientFactory.newClient()) {
             HttpGet get = newGet("/service/local/staging/profile_repositories");
             try (CloseableHttpResponse response = client.execute(get)) {
-                try (InputStream content = response.getEntity().getContent();
-                        InputStreamReader reader = new InputStreamReader(content)) {
-                    if (response.getStatusLine().getStatusCode() != 200) {
-                        throw new IOException("Status line : " + response.getStatusLine());
-                    }
-                    return function.apply(reader);
+                if (response.getStatusLine().getStatusCode() != 200) {
+                    throw new IOException("Status line : " + response.getStatusLine());
+                }
+                try (InputStream content = response.getEntity().getContent()) {
+                    return IOUtils.toString(content, StandardCharsets.UTF_8);
                 }
             }
         }
     }
 
+    /**
+     * Downloads the artifacts of a staging repository, once per run. Different repositories download in parallel
+     * when called from several threads; a call for a repository that is already being downloaded joins that download
+     * instead of starting another one. A failed download is forgotten, so that a later call tries again.
+     * <p>
+     * The repository is downloaded to a folder named after it in the {@code nexus.download.dir}, which outlives the
+     * run: files completed by an earlier run are validated and reused, and partially downloaded ones are continued.
+     * The signatures and checksums are fetched again on every run, since they are the reference the other files are
+     * validated against. Commands call {@link #discardDownload(StagingRepository)} once they are done with the files,
+     * so only the downloads of failed or interrupted runs are kept.
+     *
+     * @param repository the staging repository
+     * @return the local copy of the repository
+     * @throws IOException if the download fails
+     */
     @NotNull
     public LocalRepository download(@NotNull StagingRepository repository) throws IOException {
-        readWriteLock.readLock().lock();
-        LocalRepository localRepository = repositories.get(repository.getRepositoryId());
-        if (localRepository == null) {
-            readWriteLock.readLock().unlock();
-            readWriteLock.writeLock().lock();
+        return download(repository, (artifact, file) -> {});
+    }
+
+    /**
+     * Downloads the artifacts of a staging repository like {@link #download(StagingRepository)} does, and tells
+     * {@code listener} about every artifact as soon as its download is done, while the other artifacts are still
+     * being downloaded. Since POMs are downloaded first, their consumers can start long before the binaries are in.
+     * A call that joins a download already in progress tells {@code listener} about all the artifacts once that
+     * download completes.
+     *
+     * @param repository the staging repository
+     * @param listener the listener of the downloaded artifacts; it is called from the download threads, so it should
+     *     hand longer work over to another thread
+     * @return the local copy of the repository
+     * @throws IOException if the download fails
+     */
+    @NotNull
+    public LocalRepository download(@NotNull StagingRepository repository, @NotNull DownloadListener listener)
+            throws IOException {
+        CompletableFuture<LocalRepository> download = new CompletableFuture<>();
+        CompletableFuture<LocalRepository> inFlight = downloads.putIfAbsent(repository.getRepositoryId(), download);
+        boolean joined = inFlight != null;
+        if (!joined) {
             try {
-                if (!repositories.containsKey(repository.getRepositoryId())) {
-                    Path rootFolder = Files.createTempDirectory(repository.getRepositoryId() + "_");
-                    Set<Artifact> artifacts = getArtifacts(repository);
-                    try (CloseableHttpClient client = httpClientFactory.newClient()) {
-                        for (Artifact artifact : artifacts) {
-                            String fileRelativePath = artifact.getRepositoryRelativePath();
-                            String relativeFolderPath =
-                                    fileRelativePath.substring(0, fileRelativePath.lastIndexOf('/'));
-                            Path artifactFolderPath = Files.createDirectories(rootFolder.resolve(relativeFolderPath));
-                            downloadFileFromRepository(repository, client, artifactFolderPath, fileRelativePath);
-                            downloadFileFromRepository(
-                                    repository,
-                                    client,
-                                    artifactFolderPath,
-                                    artifact.getRepositoryRelativeSignaturePath());
-                            downloadFileFromRepository(
-                                    repository,
-                                    client,
-                                    artifactFolderPath,
-                                    artifact.getRepositoryRelativeSha1SumPath());
-                            downloadFileFromRepository(
-                                    repository, client, artifactFolderPath, artifact.getRepositoryRelativeMd5SumPath());
-                            // the .sha512 sidecar is produced by the Apache release build for the
-                            // source-release archive only, so it is absent for most artifacts; download
-                            // it when present (a 404 is expected for the others and simply skipped)
-                            downloadFileFromRepository(
-                                    repository,
-                                    client,
-                                    artifactFolderPath,
-                                    artifact.getRepositoryRelativeSha512SumPath());
-                        }
-                    }
-                    localRepository = new LocalRepository(repository, artifacts, rootFolder);
-                    repositories.put(localRepository.getRepositoryId(), localRepository);
-                }
-                readWriteLock.readLock().lock();
-            } finally {
-                readWriteLock.writeLock().unlock();
+                Path rootFolder =
+                        PrivateFiles.createPrivateDirectories(downloadFolder).resolve(repository.getRepositoryId());
+                Files.createDirectories(rootFolder);
+                Set<Artifact> artifacts = downloadArtifacts(repository, rootFolder, listener);
+                download.complete(new LocalRepository(repository, artifacts, rootFolder));
+            } catch (IOException | RuntimeException e) {
+                downloads.remove(repository.getRepositoryId(), download);
+                download.completeExceptionally(e);
             }
+            inFlight = download;
+        } else {
+            LOGGER.debug("Joining the download of {} that is already in progress.", repository.getRepositoryId());
         }
         try {
-            if (localRepository == null) {
-                throw new IOException("Failed to download repository artifacts.");
+            LocalRepository localRepository = inFlight.get();
+            if (joined) {
+                for (Artifact artifact : localRepository.getArtifacts()) {
+                    listener.downloaded(
+                            artifact, localRepository.getRootFolder().resolve(artifact.getRepositoryRelativePath()));
+                }
             }
             return localRepository;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + repository.getRepositoryId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to download repository artifacts.", e.getCause());
+        }
+    }
+
+    /**
+     * Deletes the local copy of a staging repository, including the files of a partial download, so that the
+     * {@code nexus.download.dir} does not keep growing with every release. A later {@link #download(StagingRepository)}
+     * of the repository starts over.
+     *
+     * @param repository the staging repository
+     */
+    public void discardDownload(@NotNull StagingRepository repository) {
+        downloads.remove(repository.getRepositoryId());
+        Path rootFolder = downloadFolder.resolve(repository.getRepositoryId());
+        FileUtils.deleteQuietly(rootFolder.toFile());
+        FileUtils.deleteQuietly(partialFolderOf(rootFolder).toFile());
+    }
+
+    /**
+     * Downloads the artifacts of a staging repository while the Lucene search response is still being read: each
+     * artifact is queued for download as soon as the search parser emits it.
+     * <p>
+     * Small files are latency-bound and large ones bandwidth-bound, so they are downloaded on separate lanes. POMs,
+     * signatures and checksums go on a wide metadata lane, with POMs and their sidecars ahead of everything else, since
+     * every consumer of the repository needs the POMs first. Jars, archives and other binaries go on a narrow lane,
+     * each one queued once its sidecars are in, so that it can be validated against them.
+     */
+    private Set<Artifact> downloadArtifacts(StagingRepository repository, Path rootFolder, DownloadListener listener)
+            throws IOException {
+        Set<Artifact> artifacts = new HashSet<>();
+        List<Future<?>> downloads = new ArrayList<>();
+        DownloadLane metadataLane = new DownloadLane(METADATA_DOWNLOAD_PARALLELISM);
+        DownloadLane binaryLane = new DownloadLane(BINARY_DOWNLOAD_PARALLELISM);
+        try (CloseableHttpClient client =
+                httpClientFactory.newClient(METADATA_DOWNLOAD_PARALLELISM + BINARY_DOWNLOAD_PARALLELISM)) {
+            streamArtifacts(repository, artifact -> {
+                if (artifacts.add(artifact)) {
+                    downloads.add(scheduleArtifact(
+                            repository, client, rootFolder, artifact, metadataLane, binaryLane, listener));
+                }
+            });
+            awaitAll(downloads, repository);
         } finally {
-            readWriteLock.readLock().unlock();
+            metadataLane.shutdownNow();
+            binaryLane.shutdownNow();
         }
+        return artifacts;
+    }
+
+    private CompletableFuture<Void> scheduleArtifact(
+            StagingRepository repository,
+            CloseableHttpClient client,
+            Path rootFolder,
+            Artifact artifact,
+            DownloadLane metadataLane,
+            DownloadLane binaryLane,
+            DownloadListener listener) {
+        boolean pom = "pom".equals(artifact.getType());
+        int sidecarPriority = pom ? PRIORITY_POM : PRIORITY_SIDECAR;
+        // the .sha512 sidecar is produced by the Apache release build for the source-release archive only, so
+        // it is absent for most artifacts; download it when present (a 404 is expected for the others and
+        // simply skipped)
+        CompletableFuture<?>[] sidecars = Stream.of(
+                        artifact.getRepositoryRelativeSignaturePath(),
+                        artifact.getRepositoryRelativeSha1SumPath(),
+                        artifact.getRepositoryRelativeMd5SumPath(),
+                        artifact.getRepositoryRelativeSha512SumPath())
+                .map(path -> metadataLane.schedule(sidecarPriority, () -> {
+                    discardEarlierDownload(rootFolder, path);
+                    downloadFileFromRepository(repository, client, rootFolder, path, null);
+                }))
+                .toArray(CompletableFuture<?>[]::new);
+        DownloadLane lane = pom ? metadataLane : binaryLane;
+        return CompletableFuture.allOf(sidecars)
+                .thenCompose(done -> lane.schedule(pom ? PRIORITY_POM : PRIORITY_BINARY, () -> {
+                    Checksum checksum = readChecksum(rootFolder, artifact);
+                    downloadFileFromRepository(
+                            repository, client, rootFolder, artifact.getRepositoryRelativePath(), checksum);
+                    listener.downloaded(artifact, rootFolder.resolve(artifact.getRepositoryRelativePath()));
+                }));
     }
 
     public Set<Artifact> getArtifacts(StagingRepository repository) throws IOException {
         Set<Artifact> artifacts = new HashSet<>();
+        streamArtifacts(repository, artifacts::add);
+        return artifacts;
+    }
+
+    /**
+     * Runs the Lucene search for the artifacts of a staging repository and hands each artifact to {@code consumer} as
+     * soon as it has been read from the response, without building the whole response in memory first.
+     */
+    private void streamArtifacts(StagingRepository repository, Consumer<Artifact> consumer) throws IOException {
         try (CloseableHttpClient client = httpClientFactory.newClient()) {
             HttpGet get = newGet(
                     "/service/local/lucene/search?g=org.apache.sling&repositoryId=" + repository.getRepositoryId());
             try (CloseableHttpResponse response = client.execute(get)) {
+                if (response.getStatusLine().getStatusCode() != 200) {
+                    throw new IOException("Status line : " + response.getStatusLine());
+                }
                 try (InputStream content = response.getEntity().getContent();
-                        InputStreamReader reader = new InputStreamReader(content)) {
-                    JsonParser parser = new JsonParser();
-                    JsonObject json = parser.parse(reader).getAsJsonObject();
-                    JsonArray data = json.get("data").getAsJsonArray();
-
-                    for (JsonElement dataElement : data) {
-                        JsonObject dataElementJson = dataElement.getAsJsonObject();
-                        String groupId = dataElementJson.get("groupId").getAsString();
-                        String artifactId = dataElementJson.get("artifactId").getAsString();
-                        String version = dataElementJson.get("version").getAsString();
-                        JsonArray artifactLinksArray = dataElementJson
-                                .get("artifactHits")
-                                .getAsJsonArray()
-                                .get(0)
-                                .getAsJsonObject()
-                                .get("artifactLinks")
-                                .getAsJsonArray();
-                        for (JsonElement artifactLinkElement : artifactLinksArray) {
-                            JsonObject artifactLinkJson = artifactLinkElement.getAsJsonObject();
-                            String type = artifactLinkJson.get("extension").getAsString();
-                            String classifier = null;
-                            if (artifactLinkJson.has("classifier")) {
-                                classifier = artifactLinkJson.get("classifier").getAsString();
-                            }
-                            artifacts.add(new Artifact(repository, groupId, artifactId, version, classifier, type));
+                        JsonReader reader = new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (!"data".equals(reader.nextName())) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readSearchHit(reader, repository, consumer);
                         }
+                        reader.endArray();
                     }
+                    reader.endObject();
                 }
             }
         }
-        return artifacts;
+    }
+
+    /**
+     * Reads one entry of the Lucene search {@code data} array. The artifact links of the first artifact hit are
+     * emitted as they are read; only links that precede the coordinates in the response are held back until the
+     * entry is complete.
+     */
+    private static void readSearchHit(JsonReader reader, StagingRepository repository, Consumer<Artifact> consumer)
+            throws IOException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        List<ArtifactLink> pending = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "groupId":
+                    groupId = reader.nextString();
+                    break;
+                case "artifactId":
+                    artifactId = reader.nextString();
+                    break;
+                case "version":
+                    version = reader.nextString();
+                    break;
+                case "artifactHits":
+                    reader.beginArray();
+                    boolean first = true;
+                    while (reader.hasNext()) {
+                        if (!first) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        first = false;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (!"artifactLinks".equals(reader.nextName())) {
+                                reader.skipValue();
+                                continue;
+                            }
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                ArtifactLink link = readArtifactLink(reader);
+                                if (groupId != null && artifactId != null && version != null) {
+                                    consumer.accept(new Artifact(
+                                            repository, groupId, artifactId, version, link.classifier(), link.type()));
+                                } else {
+                                    pending.add(link);
+                                }
+                            }
+                            reader.endArray();
+                        }
+                        reader.endObject();
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!pending.isEmpty() && (groupId == null || artifactId == null || version == null)) {
+            throw new IOException(
+                    "Lucene search hit without coordinates in staging repository " + repository.getRepositoryId());
+        }
+        for (ArtifactLink link : pending) {
+            consumer.accept(new Artifact(repository, groupId, artifactId, version, link.classifier(), link.type()));
+        }
+    }
+
+    private static ArtifactLink readArtifactLink(JsonReader reader) throws IOException {
+        String type = null;
+        String classifier = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if ("extension".equals(name)) {
+                type = reader.nextString();
+            } else if ("classifier".equals(name)) {
+                classifier = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ArtifactLink(type, classifier);
     }
 
     public void processArtifactStream(Artifact artifact, Consumer<InputStream> consumer) throws IOException {
@@ -291,23 +872,90 @@ public class RepositoryService {
         }
     }
 
+    /**
+     * Streams a file of a staging repository to {@code processor}, without keeping a local copy of it.
+     *
+     * @param repository the staging repository
+     * @param relativeFilePath the path of the file, relative to the repository root
+     * @param processor the processor of the file's content; the stream is closed once it returns
+     * @return {@code true} if the file was processed, {@code false} if the repository does not have it
+     * @throws IOException if the file cannot be retrieved or the processor fails
+     */
+    public boolean processRepositoryFile(
+            @NotNull StagingRepository repository,
+            @NotNull String relativeFilePath,
+            @NotNull ContentProcessor processor)
+            throws IOException {
+        try (CloseableHttpClient client = httpClientFactory.newClient()) {
+            HttpGet get = new HttpGet(repository.getRepositoryURI() + "/" + relativeFilePath);
+            try (CloseableHttpResponse response = client.execute(get)) {
+                if (response.getStatusLine().getStatusCode() != 200) {
+                    return false;
+                }
+                try (InputStream content = response.getEntity().getContent()) {
+                    processor.process(content);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Determines the releases contained in a closed staging repository from its POMs. Every POM found by the Lucene
+     * search is fetched as soon as the search reports it, on a bounded pool sharing one HTTP client, and its response
+     * is parsed while it streams in.
+     */
     public Set<Release> getReleases(StagingRepository stagingRepository) throws IOException {
-        List<PomParser.PomCoordinates> poms = new ArrayList<>();
-        getArtifacts(stagingRepository).stream()
-                .filter(artifact -> "pom".equals(artifact.getType()))
-                .forEach(pom -> {
-                    try {
-                        processArtifactStream(pom, stream -> {
-                            PomParser.PomCoordinates coordinates = pomParser.parse(stream, pom.toString());
-                            if (coordinates != null) {
-                                poms.add(coordinates);
-                            }
-                        });
-                    } catch (IOException e) {
-                        LOGGER.error(String.format("Unable to process artifact %s.", pom), e);
-                    }
-                });
-        return PomParser.toReleases(poms);
+        Queue<PomParser.PomCoordinates> poms = new ConcurrentLinkedQueue<>();
+        List<Future<?>> fetches = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(POM_FETCH_PARALLELISM);
+        try (CloseableHttpClient client = httpClientFactory.newClient(POM_FETCH_PARALLELISM)) {
+            Set<Artifact> submitted = new HashSet<>();
+            streamArtifacts(stagingRepository, artifact -> {
+                if ("pom".equals(artifact.getType()) && submitted.add(artifact)) {
+                    fetches.add(pool.submit(() -> fetchPom(client, artifact, poms)));
+                }
+            });
+            awaitAll(fetches, stagingRepository);
+        } finally {
+            pool.shutdownNow();
+        }
+        return PomParser.toReleases(new ArrayList<>(poms));
+    }
+
+    private void fetchPom(CloseableHttpClient client, Artifact pom, Queue<PomParser.PomCoordinates> poms) {
+        HttpGet get = new HttpGet(pom.getUri());
+        try (CloseableHttpResponse response = client.execute(get)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != 200) {
+                throw new IOException(
+                        String.format("Got %d instead of 200 when retrieving %s.", statusCode, get.getURI()));
+            }
+            try (InputStream stream = response.getEntity().getContent()) {
+                PomParser.PomCoordinates coordinates = pomParser.parse(stream, pom.toString());
+                if (coordinates != null) {
+                    poms.add(coordinates);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error(String.format("Unable to process artifact %s.", pom), e);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures, StagingRepository repository) throws IOException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while processing " + repository.getRepositoryId(), e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to process " + repository.getRepositoryId(), e.getCause());
+            }
+        }
     }
 
     /**
@@ -315,37 +963,66 @@ public class RepositoryService {
      * rather than relying on the Nexus Lucene search index. This works for <em>open</em> staging
      * repositories too, whereas {@link #getReleases(StagingRepository)} only sees repositories that
      * have already been closed and indexed.
+     *
+     * <p>Directories are listed concurrently on a bounded pool and every POM is fetched and parsed as soon as
+     * its listing reveals it, so the time taken grows with the depth of the tree rather than with its size.
+     * The first listing or fetch that fails stops the crawl and its error is thrown.
      */
     public Set<Release> getReleasesFromContent(StagingRepository repository) throws IOException {
-        List<PomParser.PomCoordinates> poms = new ArrayList<>();
-        try (CloseableHttpClient client = httpClientFactory.newClient()) {
-            List<String> pomPaths = new ArrayList<>();
-            collectPomPaths(client, repository.getRepositoryId(), "/org/apache/sling/", pomPaths);
-            for (String pomPath : pomPaths) {
-                HttpGet get =
-                        newGet("/service/local/repositories/" + repository.getRepositoryId() + "/content" + pomPath);
-                try (CloseableHttpResponse response = client.execute(get)) {
-                    if (response.getStatusLine().getStatusCode() != 200) {
-                        continue;
-                    }
-                    try (InputStream stream = response.getEntity().getContent()) {
-                        PomParser.PomCoordinates coordinates = pomParser.parse(stream, pomPath);
-                        if (coordinates != null) {
-                            poms.add(coordinates);
-                        }
+        String repositoryId = repository.getRepositoryId();
+        Queue<PomParser.PomCoordinates> poms = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(CONTENT_CRAWL_PARALLELISM);
+        // every task lists one directory or fetches one POM; the directories a listing reveals are queued as new tasks
+        CompletionService<List<ContentEntry>> crawl = new ExecutorCompletionService<>(pool);
+        try (CloseableHttpClient client = httpClientFactory.newClient(CONTENT_CRAWL_PARALLELISM)) {
+            crawl.submit(() -> listContent(client, repositoryId, "/org/apache/sling/"));
+            for (int pending = 1; pending > 0; pending--) {
+                for (ContentEntry entry : awaitNext(crawl, repository)) {
+                    if (!entry.leaf()) {
+                        crawl.submit(() -> listContent(client, repositoryId, entry.relativePath()));
+                        pending++;
+                    } else if (entry.text().endsWith(".pom")) {
+                        crawl.submit(() -> fetchContentPom(client, repositoryId, entry.relativePath(), poms));
+                        pending++;
                     }
                 }
             }
+        } finally {
+            pool.shutdownNow();
         }
-        return PomParser.toReleases(poms);
+        return PomParser.toReleases(new ArrayList<>(poms));
     }
 
-    private void collectPomPaths(CloseableHttpClient client, String repositoryId, String path, List<String> pomPaths)
+    private List<ContentEntry> fetchContentPom(
+            CloseableHttpClient client, String repositoryId, String pomPath, Queue<PomParser.PomCoordinates> poms)
+            throws IOException {
+        PomParser.PomCoordinates coordinates = parseRepositoryPom(client, repositoryId, pomPath);
+        if (coordinates != null) {
+            poms.add(coordinates);
+        }
+        return Collections.emptyList();
+    }
+
+    private static <T> T awaitNext(CompletionService<T> tasks, StagingRepository repository) throws IOException {
+        try {
+            return tasks.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing " + repository.getRepositoryId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to process " + repository.getRepositoryId(), e.getCause());
+        }
+    }
+
+    private List<ContentEntry> listContent(CloseableHttpClient client, String repositoryId, String path)
             throws IOException {
         HttpGet get = newGet("/service/local/repositories/" + repositoryId + "/content" + path);
         try (CloseableHttpResponse response = client.execute(get)) {
             if (response.getStatusLine().getStatusCode() != 200) {
-                return;
+                return Collections.emptyList();
             }
             try (InputStream content = response.getEntity().getContent();
                     InputStreamReader reader = new InputStreamReader(content)) {
@@ -354,49 +1031,308 @@ public class RepositoryService {
                         .getAsJsonObject()
                         .get("data")
                         .getAsJsonArray();
+                List<ContentEntry> entries = new ArrayList<>();
                 for (JsonElement element : data) {
                     JsonObject entry = element.getAsJsonObject();
-                    String relativePath = entry.get("relativePath").getAsString();
-                    if (entry.get("leaf").getAsBoolean()) {
-                        if (entry.get("text").getAsString().endsWith(".pom")) {
-                            pomPaths.add(relativePath);
-                        }
-                    } else {
-                        collectPomPaths(client, repositoryId, relativePath, pomPaths);
-                    }
+                    entries.add(new ContentEntry(
+                            entry.get("relativePath").getAsString(),
+                            entry.get("text").getAsString(),
+                            entry.get("leaf").getAsBoolean()));
                 }
+                return entries;
             }
         }
     }
 
+    private PomParser.PomCoordinates parseRepositoryPom(CloseableHttpClient client, String repositoryId, String pomPath)
+            throws IOException {
+        HttpGet get = newGet("/service/local/repositories/" + repositoryId + "/content" + pomPath);
+        try (CloseableHttpResponse response = client.execute(get)) {
+            if (response.getStatusLine().getStatusCode() != 200) {
+                return null;
+            }
+            try (InputStream stream = response.getEntity().getContent()) {
+                return pomParser.parse(stream, pomPath);
+            }
+        }
+    }
+
+    /**
+     * Downloads a file of a staging repository to {@code rootFolder}, unless an earlier run already did. The file is
+     * written to the partial folder first; when the transfer is interrupted, the bytes received so far are kept and
+     * the download continues from there with a {@code Range} request, later in this run or in the next one. Once
+     * complete, the file is validated against {@code checksum}, if any, and moved to {@code rootFolder}.
+     *
+     * @return {@code false} if the repository does not have the file
+     */
     private boolean downloadFileFromRepository(
             @NotNull StagingRepository repository,
             @NotNull CloseableHttpClient client,
-            @NotNull Path artifactFolderPath,
-            @NotNull String relativeFilePath)
+            @NotNull Path rootFolder,
+            @NotNull String relativeFilePath,
+            Checksum checksum)
             throws IOException {
-        HttpGet get = new HttpGet(repository.getRepositoryURI() + "/" + relativeFilePath);
+        return downloadFileFromRepository(repository, client, rootFolder, relativeFilePath, checksum, true);
+    }
+
+    private boolean downloadFileFromRepository(
+            StagingRepository repository,
+            CloseableHttpClient client,
+            Path rootFolder,
+            String relativeFilePath,
+            Checksum checksum,
+            boolean retryOnMismatch)
+            throws IOException {
+        Path filePath = rootFolder.resolve(relativeFilePath);
+        if (Files.exists(filePath)) {
+            if (checksum == null || checksum.matches(filePath)) {
+                LOGGER.debug("Reusing {} from an earlier download.", filePath);
+                return true;
+            }
+            Files.delete(filePath);
+        }
+        Path partialPath = partialFolderOf(rootFolder).resolve(relativeFilePath);
+        synchronized (partialFolderLock) {
+            // an empty file keeps its folder from being pruned by another download that completes meanwhile
+            Files.createDirectories(partialPath.getParent());
+            if (Files.notExists(partialPath)) {
+                Files.createFile(partialPath);
+            }
+        }
+        String uri = repository.getRepositoryURI() + "/" + relativeFilePath;
+        boolean resumed = false;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Transfer transfer = transfer(client, uri, partialPath);
+                if (transfer == Transfer.MISSING) {
+                    Files.deleteIfExists(partialPath);
+                    prunePartialFolders(rootFolder, partialPath);
+                    return false;
+                }
+                resumed |= transfer == Transfer.RESUMED;
+                break;
+            } catch (IOException e) {
+                if (attempt == MAX_TRANSFER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.info("Download of {} was interrupted ({}); resuming it.", uri, e.getMessage());
+            }
+        }
+        if (checksum != null && !checksum.matches(partialPath)) {
+            if (resumed && retryOnMismatch) {
+                // the bytes kept from an earlier attempt do not belong to the file the repository serves now
+                LOGGER.info(
+                        "{} does not match its {} checksum after resuming; downloading it again.",
+                        uri,
+                        checksum.algorithm());
+                Files.delete(partialPath);
+                return downloadFileFromRepository(repository, client, rootFolder, relativeFilePath, checksum, false);
+            }
+            // keep the file as served, so that verify-releases reports the mismatch against the staged checksum
+            LOGGER.warn("{} does not match its {} checksum.", uri, checksum.algorithm());
+        }
+        Files.createDirectories(filePath.getParent());
+        Files.move(partialPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+        prunePartialFolders(rootFolder, partialPath);
+        return true;
+    }
+
+    /**
+     * Deletes the folders of the partial folder that were left empty once {@code partialPath} was completed or found
+     * missing, up to the partial folder itself, so that nothing is left behind when every file is complete.
+     */
+    private void prunePartialFolders(Path rootFolder, Path partialPath) throws IOException {
+        Path partialFolder = partialFolderOf(rootFolder);
+        synchronized (partialFolderLock) {
+            for (Path folder = partialPath.getParent();
+                    folder != null && folder.startsWith(partialFolder);
+                    folder = folder.getParent()) {
+                try {
+                    Files.deleteIfExists(folder);
+                } catch (DirectoryNotEmptyException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transfers a file to {@code partialPath}, continuing after the bytes it already holds if the server honours the
+     * {@code Range} request and starting over otherwise.
+     */
+    private Transfer transfer(CloseableHttpClient client, String uri, Path partialPath) throws IOException {
+        long offset = Files.exists(partialPath) ? Files.size(partialPath) : 0;
+        HttpGet get = new HttpGet(uri);
+        if (offset > 0) {
+            get.addHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+        }
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Downloading {}.", get.getURI());
+            LOGGER.debug("Downloading {} from byte {}.", get.getURI(), offset);
         }
         try (CloseableHttpResponse response = client.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (offset > 0 && status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                // nothing is left to transfer; the checksum tells whether the bytes kept are the right ones
+                return Transfer.RESUMED;
+            }
+            boolean append = offset > 0 && status == HttpStatus.SC_PARTIAL_CONTENT;
+            if (append && !isRangeFrom(response, offset)) {
+                Files.delete(partialPath);
+                throw new IOException("Unexpected Content-Range in the response for " + uri);
+            }
             // skip files the repository does not have so an error body is never written to disk as if it
             // were the artifact; sidecars such as .sha512 legitimately exist only for some artifacts
-            if (response.getStatusLine().getStatusCode() != 200) {
-                return false;
+            if (!append && status != HttpStatus.SC_OK) {
+                return Transfer.MISSING;
             }
-            String fileName = relativeFilePath.substring(relativeFilePath.lastIndexOf('/') + 1);
-            Path filePath = Files.createFile(artifactFolderPath.resolve(fileName));
-            try (InputStream content = response.getEntity().getContent()) {
-                IOUtils.copyLarge(content, Files.newOutputStream(filePath));
+            try (InputStream content = response.getEntity().getContent();
+                    OutputStream out = append
+                            ? Files.newOutputStream(partialPath, StandardOpenOption.APPEND)
+                            : Files.newOutputStream(partialPath)) {
+                IOUtils.copyLarge(content, out);
             }
-            return true;
+            return append ? Transfer.RESUMED : Transfer.COMPLETE;
         }
     }
 
+    private static boolean isRangeFrom(CloseableHttpResponse response, long offset) {
+        Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        return contentRange != null && contentRange.getValue().startsWith("bytes " + offset + "-");
+    }
+
+    /** Deletes what an earlier run downloaded of a file, whether complete or partial. */
+    private static void discardEarlierDownload(Path rootFolder, String relativeFilePath) throws IOException {
+        Files.deleteIfExists(rootFolder.resolve(relativeFilePath));
+        Files.deleteIfExists(partialFolderOf(rootFolder).resolve(relativeFilePath));
+    }
+
+    /** Partially downloaded files live next to the repository folder, so they never mix with the complete ones. */
+    private static Path partialFolderOf(Path rootFolder) {
+        return rootFolder.resolveSibling(rootFolder.getFileName() + ".partial");
+    }
+
+    /** Reads the strongest checksum downloaded for an artifact, or {@code null} if the repository has none. */
+    private static Checksum readChecksum(Path rootFolder, Artifact artifact) throws IOException {
+        Checksum checksum = Checksum.read(rootFolder.resolve(artifact.getRepositoryRelativeSha512SumPath()), "SHA-512");
+        if (checksum == null) {
+            checksum = Checksum.read(rootFolder.resolve(artifact.getRepositoryRelativeSha1SumPath()), "SHA-1");
+        }
+        if (checksum == null) {
+            checksum = Checksum.read(rootFolder.resolve(artifact.getRepositoryRelativeMd5SumPath()), "MD5");
+        }
+        return checksum;
+    }
+
     private HttpGet newGet(String suffix) {
         HttpGet get = new HttpGet(nexusUrlPrefix + suffix);
         get.addHeader(HttpHeaders.ACCEPT, CONTENT_TYPE_JSON);
         return get;
     }
+
+    // visible for testing
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // visible for testing
+    void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /** Listens to the artifacts of a staging repository being downloaded. */
+    @FunctionalInterface
+    public interface DownloadListener {
+        /**
+         * Called once the download of an artifact is done.
+         *
+         * @param artifact the artifact
+         * @param file the local copy of the artifact; it does not exist if the repository does not have the artifact
+         */
+        void downloaded(Artifact artifact, Path file);
+    }
+
+    /** Processes the content of a file streamed from a staging repository. */
+    @FunctionalInterface
+    public interface ContentProcessor {
+        void process(InputStream content) throws IOException;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Hex.toHexString(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record TransitionState(String type, boolean transitioning) {}
+
+    private record ArtifactLink(String type, String classifier) {}
+
+    private record ContentEntry(String relativePath, String text, boolean leaf) {}
+
+    /**
+     * The Sling staging repositories of one {@code profile_repositories} listing, indexed by their numeric id (the
+     * suffix of e.g. {@code orgapachesling-1234}).
+     */
+    private record StagingSnapshot(List<StagingRepository> repositories, Map<Integer, StagingRepository> byId) {
+
+        static StagingSnapshot parse(String json) {
+            List<StagingRepository> repositories = new Gson()
+                    .fromJson(json, StagingRepositories.class).getData().stream()
+                            .filter(r -> r.getRepositoryId().startsWith(REPOSITORY_PREFIX))
+                            .collect(Collectors.toList());
+            Map<Integer, StagingRepository> byId = new HashMap<>();
+            for (StagingRepository repository : repositories) {
+                String suffix = repository.getRepositoryId().substring(REPOSITORY_PREFIX.length());
+                try {
+                    byId.putIfAbsent(Integer.parseInt(suffix), repository);
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring staging repository {} without a numeric id.", repository.getRepositoryId());
+                }
+            }
+            return new StagingSnapshot(Collections.unmodifiableList(repositories), byId);
+        }
+    }
+
+    /** The outcome of a single transfer of a file. */
+    private enum Transfer {
+        /** The whole file was transferred. */
+        COMPLETE,
+        /** The file was completed from the bytes kept by an earlier, interrupted transfer. */
+        RESUMED,
+        /** The repository does not have the file. */
+        MISSING
+    }
+
+    /** A checksum read from a sidecar file, such as {@code .sha1}. */
+    private record Checksum(String algorithm, String value) {
+
+        static Checksum read(Path sidecar, String algorithm) throws IOException {
+            if (!Files.isRegularFile(sidecar)) {
+                return null;
+            }
+            // sidecars hold the hex digest, sometimes followed by the file name
+            String content =
+                    Files.readString(sidecar, StandardCharsets.US_ASCII).trim();
+            return content.isEmpty() ? null : new Checksum(algorithm, content.split("\\s+")[0]);
+        }
+
+        boolean matches(Path file) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm + " is not available", e);
+            }
+            byte[] buffer = new byte[8192];
+            try (InputStream in = Files.newInputStream(file)) {
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return value.equalsIgnoreCase(Hex.toHexString(digest.digest()));
+        }
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.pom;
+
+/**
+ * The parts of a staged Maven POM the release tooling relies on. Values that the POM does not declare are empty
+ * strings; {@code groupId}, {@code version} and {@code packaging} already have the Maven inheritance and default
+ * rules applied (from {@code <parent>}, respectively {@code jar}).
+ *
+ * @param name the {@code <name>}
+ * @param groupId the effective group id
+ * @param artifactId the artifact id
+ * @param version the effective version
+ * @param packaging the effective packaging
+ * @param parentGroupId the group id of the {@code <parent>}
+ * @param parentArtifactId the artifact id of the {@code <parent>}
+ * @param parentVersion the version of the {@code <parent>}
+ * @param scmUrl the {@code <scm><url>}
+ * @param scmTag the {@code <scm><tag>}
+ */
+public record PomModel(
+        String name,
+        String groupId,
+        String artifactId,
+        String version,
+        String packaging,
+        String parentGroupId,
+        String parentArtifactId,
+        String parentVersion,
+        String scmUrl,
+        String scmTag) {}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.pom;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * Parses staged POMs into {@link PomModel}s. Every POM is parsed only once: the models are cached by the SHA-256
+ * checksum of the POM's content, so the same POM read from Nexus while resolving releases and later from the
+ * downloaded staging repository while checking the CI status is served from the cache.
+ */
+@Component(service = PomModelService.class)
+public class PomModelService {
+
+    /** The top-level elements read into the model. */
+    private static final Set<String> PROJECT_FIELDS = Set.of("name", "groupId", "artifactId", "version", "packaging");
+
+    /** The top-level sections read into the model, with the elements read from each of them. */
+    private static final Map<String, Set<String>> SECTION_FIELDS = Map.of(
+            "parent", Set.of("groupId", "artifactId", "version"),
+            "scm", Set.of("url", "tag"));
+
+    /**
+     * The top-level elements which may be left out because they are inherited from the parent or defaulted. By
+     * convention they are declared in the header of the POM, before any of the {@link #BODY_ELEMENTS}.
+     */
+    private static final Set<String> HEADER_FIELDS = Set.of("groupId", "version", "packaging");
+
+    /** The top-level elements which cannot precede the {@link #HEADER_FIELDS}. */
+    private static final Set<String> BODY_ELEMENTS = Set.of(
+            "modules",
+            "properties",
+            "dependencyManagement",
+            "dependencies",
+            "repositories",
+            "pluginRepositories",
+            "build",
+            "reporting",
+            "profiles");
+
+    private final Map<String, PomModel> models = new ConcurrentHashMap<>();
+
+    /** One factory per thread: POMs are parsed concurrently and {@link XMLInputFactory} is not thread-safe. */
+    private final ThreadLocal<XMLInputFactory> inputFactory = ThreadLocal.withInitial(PomModelService::newInputFactory);
+
+    /**
+     * Reads the model of a POM file.
+     *
+     * @param pom the POM file
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a well-formed POM
+     */
+    public PomModel read(Path pom) throws IOException {
+        return read(Files.readAllBytes(pom));
+    }
+
+    /**
+     * Reads the model of a POM from a stream; the stream is consumed but not closed.
+     *
+     * @param pom the POM stream
+     * @return the model
+     * @throws IOException if the stream cannot be read or is not a well-formed POM
+     */
+    public PomModel read(InputStream pom) throws IOException {
+        return read(pom.readAllBytes());
+    }
+
+    private PomModel read(byte[] content) throws IOException {
+        String checksum = checksum(content);
+        PomModel model = models.get(checksum);
+        if (model == null) {
+            model = parse(content);
+            models.putIfAbsent(checksum, model);
+        }
+        return model;
+    }
+
+    /**
+     * Streams through the POM with StAX, reading only the top-level elements the model needs and skipping every
+     * other subtree. Parsing stops as soon as all of them are known. Maven does not fix the order of the elements in
+     * {@code <project>}, but a header field which is still missing once the first body element is reached, like the
+     * packaging of a jar, is taken as left out.
+     */
+    private PomModel parse(byte[] content) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        Set<String> sectionsDone = new HashSet<>();
+        boolean headerDone = false;
+        try {
+            XMLStreamReader reader = inputFactory.get().createXMLStreamReader(new ByteArrayInputStream(content));
+            try {
+                if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !"project".equals(reader.getLocalName())) {
+                    throw new IOException("Not a POM: the root element is not <project>");
+                }
+                while (!isComplete(values, sectionsDone, headerDone)
+                        && reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    String element = reader.getLocalName();
+                    headerDone |= BODY_ELEMENTS.contains(element);
+                    if (PROJECT_FIELDS.contains(element)) {
+                        values.put(element, reader.getElementText().trim());
+                    } else if (SECTION_FIELDS.containsKey(element)) {
+                        readSection(reader, element, SECTION_FIELDS.get(element), values);
+                        sectionsDone.add(element);
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to parse POM", e);
+        }
+        String parentGroupId = values.getOrDefault("parent/groupId", "");
+        String parentVersion = values.getOrDefault("parent/version", "");
+        String groupId = values.getOrDefault("groupId", "");
+        String version = values.getOrDefault("version", "");
+        String packaging = values.getOrDefault("packaging", "");
+        // In a multi-module reactor a child module's POM frequently omits <groupId>/<version> and
+        // inherits them from its <parent>
+        return new PomModel(
+                values.getOrDefault("name", ""),
+                groupId.isEmpty() ? parentGroupId : groupId,
+                values.getOrDefault("artifactId", ""),
+                version.isEmpty() ? parentVersion : version,
+                packaging.isEmpty() ? "jar" : packaging,
+                parentGroupId,
+                values.getOrDefault("parent/artifactId", ""),
+                parentVersion,
+                values.getOrDefault("scm/url", ""),
+                values.getOrDefault("scm/tag", ""));
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static boolean isComplete(Map<String, String> values, Set<String> sectionsDone, boolean headerDone) {
+        if (sectionsDone.size() != SECTION_FIELDS.size()) {
+            return false;
+        }
+        for (String field : PROJECT_FIELDS) {
+            if (!values.containsKey(field) && !(headerDone && HEADER_FIELDS.contains(field))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void readSection(
+            XMLStreamReader reader, String section, Set<String> fields, Map<String, String> values)
+            throws XMLStreamException {
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String element = reader.getLocalName();
+            if (fields.contains(element)) {
+                values.put(section + "/" + element, reader.getElementText().trim());
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /** Skips the element the reader is positioned on, leaving it on that element's end tag. */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static String checksum(byte[] content) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+}
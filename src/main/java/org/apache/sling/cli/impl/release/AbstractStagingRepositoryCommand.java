@@ -19,20 +19,27 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.sling.cli.impl.Command;
 import org.apache.sling.cli.impl.InputOption;
 import org.apache.sling.cli.impl.UserInput;
+import org.apache.sling.cli.impl.nexus.StagingRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
 /**
- * Base for the staging-repository commands (close-staging, promote, drop). They all take a repository
- * id, resolve a target from it and then act on that target according to the CLI execution mode. This
- * class owns the shared CLI options and the execution-mode dispatch, leaving each command to declare
- * its own {@code RepositoryService} reference (kept in the concrete class so Declarative Services
- * generates the component descriptor) and to provide its command-specific behaviour.
+ * Base for the staging-repository commands (close-staging, promote, drop). They all take one or more
+ * repository ids, resolve a target from each and then act on all targets at once according to the CLI
+ * execution mode, so that Nexus gets a single bulk request. This class owns the shared CLI options and
+ * the execution-mode dispatch, leaving each command to declare its own {@code RepositoryService}
+ * reference (kept in the concrete class so Declarative Services generates the component descriptor)
+ * and to provide its command-specific behaviour.
  *
  * @param <T> the resolved target the command operates on (a repository, or a small context holding the
  *            repository together with derived display information)
@@ -41,9 +48,11 @@ abstract class AbstractStagingRepositoryCommand<T> implements Command {
 
     @CommandLine.Option(
             names = {"-r", "--repository"},
-            description = "Nexus staging repository id",
-            required = true)
-    protected Integer repositoryId;
+            description = "Nexus staging repository id; may be repeated or given as a comma-separated list to act on"
+                    + " several repositories with a single Nexus request",
+            required = true,
+            split = ",")
+    protected List<Integer> repositoryIds;
 
     @CommandLine.Mixin
     protected ReusableCLIOptions reusableCLIOptions;
@@ -52,20 +61,23 @@ abstract class AbstractStagingRepositoryCommand<T> implements Command {
     public final Integer call() {
         Logger logger = LoggerFactory.getLogger(getClass());
         try {
-            T target = resolve();
+            List<T> targets = new ArrayList<>();
+            for (Integer repositoryId : new LinkedHashSet<>(repositoryIds)) {
+                targets.add(resolve(repositoryId));
+            }
             switch (reusableCLIOptions.executionMode) {
                 case DRY_RUN:
-                    logger.info(dryRunMessage(target));
+                    targets.forEach(target -> logger.info(dryRunMessage(target)));
                     break;
                 case INTERACTIVE:
-                    if (InputOption.YES.equals(UserInput.yesNo(confirmationQuestion(target), interactiveDefault()))) {
-                        perform(target);
+                    if (InputOption.YES.equals(UserInput.yesNo(confirmationQuestion(targets), interactiveDefault()))) {
+                        perform(targets);
                     } else {
                         logger.info("Aborted.");
                     }
                     break;
                 case AUTO:
-                    perform(target);
+                    perform(targets);
                     break;
             }
         } catch (IOException e) {
@@ -75,20 +87,29 @@ abstract class AbstractStagingRepositoryCommand<T> implements Command {
         return CommandLine.ExitCode.OK;
     }
 
-    /** Resolves the target this command acts on from {@link #repositoryId}. */
-    protected abstract T resolve() throws IOException;
+    /** Resolves the target this command acts on from one of the {@link #repositoryIds}. */
+    protected abstract T resolve(int repositoryId) throws IOException;
 
-    /** The message logged in dry-run mode. */
+    /** The message logged for each target in dry-run mode. */
     protected abstract String dryRunMessage(T target);
 
-    /** The yes/no question asked in interactive mode. */
-    protected abstract String confirmationQuestion(T target);
+    /** The yes/no question asked in interactive mode, covering all targets. */
+    protected abstract String confirmationQuestion(List<T> targets);
 
-    /** Performs the actual state-changing operation. */
-    protected abstract void perform(T target) throws IOException;
+    /** Performs the actual state-changing operation on all targets. */
+    protected abstract void perform(List<T> targets) throws IOException;
 
     /** The pre-selected option for the interactive confirmation; defaults to {@link InputOption#YES}. */
     protected InputOption interactiveDefault() {
         return InputOption.YES;
     }
+
+    /**
+     * Describes staging repositories for log messages, e.g. {@code repository orgapachesling-1} or
+     * {@code repositories orgapachesling-1, orgapachesling-2}.
+     */
+    static String describe(Collection<StagingRepository> repositories) {
+        return (repositories.size() == 1 ? "repository " : "repositories ")
+                + repositories.stream().map(StagingRepository::getRepositoryId).collect(Collectors.joining(", "));
+    }
 }
@@ -19,6 +19,10 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.sling.cli.impl.Command;
@@ -51,8 +55,11 @@ public class CloseStagingCommand extends AbstractStagingRepositoryCommand<CloseS
     @Reference
     private RepositoryService repositoryService;
 
+    @CommandLine.Mixin
+    private StagingWaitOptions waitOptions = new StagingWaitOptions();
+
     @Override
-    protected Target resolve() throws IOException {
+    protected Target resolve(int repositoryId) throws IOException {
         StagingRepository repository = repositoryService.findAny(repositoryId);
         // Derive the description from the staged artifacts' POM (name + version), since releases staged
         // via the plain maven-deploy-plugin only get the generic Nexus "Implicitly created (auto
@@ -75,22 +82,42 @@ public class CloseStagingCommand extends AbstractStagingRepositoryCommand<CloseS
     }
 
     @Override
-    protected String confirmationQuestion(Target target) {
+    protected String confirmationQuestion(List<Target> targets) {
         return String.format(
-                "Close staging repository %s with description \"%s\"?",
-                target.repository.getRepositoryId(), target.description);
+                "Close staging %s %s?",
+                targets.size() == 1 ? "repository" : "repositories",
+                targets.stream()
+                        .map(target -> String.format(
+                                "%s with description \"%s\"", target.repository.getRepositoryId(), target.description))
+                        .collect(Collectors.joining(", ")));
     }
 
     @Override
-    protected void perform(Target target) throws IOException {
-        LOGGER.info(
-                "Closing staging repository {} with description \"{}\"...",
-                target.repository.getRepositoryId(),
-                target.description);
-        repositoryService.close(target.repository, target.description);
-        LOGGER.info(
-                "Done. Repository {} is now closed and ready for verification and voting.",
-                target.repository.getRepositoryId());
+    protected void perform(List<Target> targets) throws IOException {
+        // Nexus sets the description of a bulk close on all its repositories, so repositories only share a
+        // request when their descriptions match
+        Map<String, List<StagingRepository>> byDescription = new LinkedHashMap<>();
+        for (Target target : targets) {
+            byDescription
+                    .computeIfAbsent(target.description, description -> new ArrayList<>())
+                    .add(target.repository);
+        }
+        for (Map.Entry<String, List<StagingRepository>> entry : byDescription.entrySet()) {
+            LOGGER.info("Closing staging {} with description \"{}\"...", describe(entry.getValue()), entry.getKey());
+            repositoryService.closeAll(entry.getValue(), entry.getKey(), waitOptions.wait);
+        }
+        List<StagingRepository> repositories =
+                targets.stream().map(target -> target.repository).collect(Collectors.toList());
+        if (!waitOptions.wait) {
+            LOGGER.info(
+                    "Close of {} requested. Nexus evaluates the staging rules asynchronously; pass --wait to wait for"
+                            + " the outcome.",
+                    describe(repositories));
+            return;
+        }
+        LOGGER.info("Waiting for Nexus to close {}...", describe(repositories));
+        repositoryService.awaitClosed(repositories, waitOptions.timeout());
+        LOGGER.info("Done. Staging {} closed and ready for verification and voting.", describe(repositories));
     }
 
     static final class Target {
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * A snapshot of the file names in a {@code dist/release} directory, listed once at a pinned revision.
+ *
+ * <p>The names are kept sorted, so all the files of an artifact (or of one of its versions) form a contiguous range
+ * that {@link #list(String)} returns without scanning the thousands of other entries. Planning one or more releases
+ * against the same snapshot needs a single directory listing and sees a consistent view of {@code dist/release}.
+ */
+final class DistIndex {
+
+    private final long revision;
+    private final NavigableSet<String> names;
+
+    private DistIndex(long revision, Collection<String> names) {
+        this.revision = revision;
+        this.names = new TreeSet<>(names);
+    }
+
+    /**
+     * Lists the directory a session is opened on at its latest revision.
+     *
+     * @param session the session
+     * @return the snapshot
+     * @throws SVNException if the directory cannot be listed
+     */
+    static DistIndex load(SVNRepository session) throws SVNException {
+        long revision = session.getLatestRevision();
+        Collection<SVNDirEntry> entries = new ArrayList<>();
+        session.getDir("", revision, null, entries);
+        return new DistIndex(
+                revision, entries.stream().map(SVNDirEntry::getName).toList());
+    }
+
+    static DistIndex of(long revision, Collection<String> names) {
+        return new DistIndex(revision, names);
+    }
+
+    /** Returns the revision the snapshot was taken at. */
+    long getRevision() {
+        return revision;
+    }
+
+    /** Returns the names starting with {@code prefix}, in ascending order. */
+    List<String> list(String prefix) {
+        // every name starting with the prefix sorts between the prefix itself and the prefix followed by the
+        // highest char
+        return List.copyOf(names.subSet(prefix, true, prefix + Character.MAX_VALUE, false));
+    }
+}
@@ -19,6 +19,8 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.sling.cli.impl.Command;
 import org.apache.sling.cli.impl.InputOption;
@@ -38,7 +40,7 @@ import picocli.CommandLine;
         })
 @CommandLine.Command(
         name = DropCommand.NAME,
-        description = "Drops a Nexus staging repository. Use when a vote fails or to clean up a failed release.",
+        description = "Drops Nexus staging repositories. Use when a vote fails or to clean up a failed release.",
         subcommands = CommandLine.HelpCommand.class)
 public class DropCommand extends AbstractStagingRepositoryCommand<StagingRepository> {
 
@@ -51,7 +53,7 @@ public class DropCommand extends AbstractStagingRepositoryCommand<StagingReposit
     private RepositoryService repositoryService;
 
     @Override
-    protected StagingRepository resolve() throws IOException {
+    protected StagingRepository resolve(int repositoryId) throws IOException {
         return repositoryService.findAny(repositoryId);
     }
 
@@ -62,10 +64,13 @@ public class DropCommand extends AbstractStagingRepositoryCommand<StagingReposit
     }
 
     @Override
-    protected String confirmationQuestion(StagingRepository repository) {
+    protected String confirmationQuestion(List<StagingRepository> repositories) {
         return String.format(
-                "Drop staging repository %s (%s)? This cannot be undone.",
-                repository.getRepositoryId(), repository.getDescription());
+                "Drop staging %s %s? This cannot be undone.",
+                repositories.size() == 1 ? "repository" : "repositories",
+                repositories.stream()
+                        .map(repository -> repository.getRepositoryId() + " (" + repository.getDescription() + ")")
+                        .collect(Collectors.joining(", ")));
     }
 
     @Override
@@ -74,9 +79,9 @@ public class DropCommand extends AbstractStagingRepositoryCommand<StagingReposit
     }
 
     @Override
-    protected void perform(StagingRepository repository) throws IOException {
-        LOGGER.info("Dropping staging repository {}...", repository.getRepositoryId());
-        repositoryService.drop(repository);
-        LOGGER.info("Done. Repository {} has been dropped.", repository.getRepositoryId());
+    protected void perform(List<StagingRepository> repositories) throws IOException {
+        LOGGER.info("Dropping staging {}...", describe(repositories));
+        repositoryService.dropAll(repositories);
+        LOGGER.info("Done. Dropped staging {}.", describe(repositories));
     }
 }
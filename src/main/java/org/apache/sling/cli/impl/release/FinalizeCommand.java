@@ -19,12 +19,19 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.sling.cli.impl.Command;
+import org.apache.sling.cli.impl.ComponentContextHelper;
+import org.apache.sling.cli.impl.Credentials;
 import org.apache.sling.cli.impl.CredentialsService;
 import org.apache.sling.cli.impl.ExecutionMode;
 import org.apache.sling.cli.impl.http.HttpClientFactory;
@@ -33,6 +40,8 @@ import org.apache.sling.cli.impl.jira.VersionClient;
 import org.apache.sling.cli.impl.nexus.RepositoryService;
 import org.apache.sling.cli.impl.nexus.StagingRepository;
 import org.apache.sling.cli.impl.people.MembersFinder;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
@@ -40,7 +49,7 @@ import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
 /**
- * Runs all post-vote release finalization steps in sequence. A read-only pre-flight first validates the
+ * Runs all post-vote release finalization steps. A read-only pre-flight first validates the
  * JIRA state and aborts <em>before</em> any irreversible action if an issue was tagged with the release's
  * fix version only after the artifacts were staged (it cannot be part of the release &mdash; SLING-13260);
  * because nothing has run yet, the operator can fix the tagging in JIRA and simply re-run finalize. The
@@ -59,6 +68,18 @@ import picocli.CommandLine;
  * Each step detects whether it is already done (dist already published, repository already promoted, JIRA
  * version already released, reporter already lists the release) and skips it, so re-running is safe.
  * <p>
+ * The steps form a {@link StepGraph}: dist.apache.org is updated first and promotion follows, then the JIRA steps
+ * of each release (successor first, then the release of the current version) and the reporter update run
+ * concurrently, on at most {@code --parallelism} threads, or one after the other in {@code INTERACTIVE} mode so that
+ * only one step at a time asks for confirmation. A failed step only stops the steps that depend on it; the
+ * step durations and the critical path are logged at the end.
+ * <p>
+ * Every completed step is recorded in a {@link FinalizeJournal} on the local disk. A re-run skips the steps the
+ * journal records as completed without querying JIRA, the Apache Reporter or dist.apache.org again, and only checks
+ * the remote state of the remaining steps; {@code --ignore-journal} checks the remote state of every step. A run from
+ * a staging repository ignores the journal an earlier staging of the same release left behind, and the journal of a
+ * release is removed once all its steps are done.
+ * <p>
  * Uploading to dist.apache.org is only possible for PMC members, so it is performed automatically
  * when the current user (resolved from the ASF credentials) is a PMC member and skipped otherwise.
  * When skipped, a PMC member must complete it separately (the {@code tally-votes} result email asks
@@ -74,8 +95,8 @@ import picocli.CommandLine;
         })
 @CommandLine.Command(
         name = FinalizeCommand.NAME,
-        description = "Runs all post-vote finalization steps, in order: update dist.apache.org (PMC members only),"
-                + " promote to Maven Central, update JIRA, and report to Apache.",
+        description = "Runs all post-vote finalization steps: update dist.apache.org (PMC members only), then"
+                + " promote to Maven Central, then update JIRA and report to Apache.",
         subcommands = CommandLine.HelpCommand.class)
 public class FinalizeCommand implements Command {
 
@@ -83,6 +104,11 @@ public class FinalizeCommand implements Command {
     static final String NAME = "finalize";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FinalizeCommand.class);
+    private static final int DEFAULT_PARALLELISM = 4;
+    // under the user's home rather than the temporary directory, so that the journal can be kept on a mounted volume
+    // when the CLI runs in a throwaway container
+    private static final String DEFAULT_JOURNAL_DIR =
+            Paths.get(System.getProperty("user.home"), ".sling-cli", "finalize").toString();
 
     @CommandLine.Option(
             names = {"-r", "--repository"},
@@ -103,6 +129,19 @@ public class FinalizeCommand implements Command {
                     + " (e.g. the fix version was simply forgotten during the release).")
     private boolean forceCloseLateIssues;
 
+    @CommandLine.Option(
+            names = {"--parallelism"},
+            description = "Maximum number of steps that run at the same time once the staging repository has been"
+                    + " promoted; 1 runs all steps one after the other, as does the INTERACTIVE execution mode"
+                    + " (default: ${DEFAULT-VALUE}).")
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    @CommandLine.Option(
+            names = {"--ignore-journal"},
+            description = "Check the remote state of every step, even of the steps the local finalize journal"
+                    + " records as completed.")
+    private boolean ignoreJournal;
+
     @CommandLine.Mixin
     private ReusableCLIOptions reusableCLIOptions;
 
@@ -121,6 +160,14 @@ public class FinalizeCommand implements Command {
     @Reference
     private MembersFinder membersFinder;
 
+    private Path journalDir;
+
+    @Activate
+    protected void activate(ComponentContext ctx) {
+        ComponentContextHelper helper = ComponentContextHelper.wrap(ctx);
+        journalDir = Paths.get(helper.getProperty("finalize.journal.dir", DEFAULT_JOURNAL_DIR));
+    }
+
     /** The finalize target: the staging repository (null once it has been promoted and dropped) and its releases. */
     private record FinalizeTarget(StagingRepository repository, Set<Release> releases) {}
 
@@ -180,6 +227,7 @@ public class FinalizeCommand implements Command {
         Set<Release> releases = target.releases();
         boolean isPmcMember = membersFinder.getCurrentMember().isPMCMember();
         Instant stagedAt = repository != null ? repository.getCreated() : null;
+        FinalizeJournal journal = new FinalizeJournal(journalDir);
 
         String releaseNames = releases.stream()
                 .map(Release::getFullName)
@@ -189,55 +237,86 @@ public class FinalizeCommand implements Command {
         if (repository == null) {
             LOGGER.info("Resuming by release name; steps already completed before promotion are detected and"
                     + " skipped.");
+        } else {
+            for (Release release : releases) {
+                if (journal.bind(release, repository.getRepositoryId())) {
+                    LOGGER.info(
+                            "Discarding the finalize journal of {}, which was recorded for another staging"
+                                    + " repository; the remote state of every step is checked again.",
+                            release.getFullName());
+                }
+            }
         }
 
-        // Pre-flight: validate JIRA state *before* any irreversible action. Promoting to Maven Central drops
-        // the staging repository, so detecting a mis-tagged issue here lets the operator fix JIRA and re-run
-        // with nothing promoted or changed yet (SLING-13260). On a resume-by-name run there is no staging
-        // timestamp, so this is a no-op — it already passed on the initial run.
-        LOGGER.info("--- Pre-flight: validating JIRA state ---");
-        if (!preflightJiraState(releases, stagedAt)) {
-            LOGGER.error("Aborting finalize before any changes are made. Re-tag the issue(s) to the correct fix"
-                    + " version (or re-run with --force-close-late-issues), then run finalize again — nothing has"
-                    + " been promoted or changed yet.");
-            return CommandLine.ExitCode.SOFTWARE;
-        }
+        // Speculatively read what the steps after promotion need, while dist.apache.org is updated and the
+        // repository promoted; steps already journaled as completed need nothing
+        try (FinalizePrefetch prefetch = FinalizePrefetch.start(
+                versionClient,
+                httpClientFactory,
+                pending(journal, releases, FinalizeJournal.STEP_CREATE_NEXT_JIRA_VERSION),
+                mode != ExecutionMode.DRY_RUN
+                        && !pending(journal, releases, FinalizeJournal.STEP_UPDATE_REPORTER)
+                                .isEmpty())) {
+            // Pre-flight: validate JIRA state *before* any irreversible action. Promoting to Maven Central drops
+            // the staging repository, so detecting a mis-tagged issue here lets the operator fix JIRA and re-run
+            // with nothing promoted or changed yet (SLING-13260). On a resume-by-name run there is no staging
+            // timestamp, so this is a no-op — it already passed on the initial run.
+            LOGGER.info("--- Pre-flight: validating JIRA state ---");
+            if (!preflightJiraState(releases, stagedAt, journal)) {
+                LOGGER.error("Aborting finalize before any changes are made. Re-tag the issue(s) to the correct fix"
+                        + " version (or re-run with --force-close-late-issues), then run finalize again — nothing has"
+                        + " been promoted or changed yet.");
+                return CommandLine.ExitCode.SOFTWARE;
+            }
 
-        // Step 1: Update dist.apache.org. This is the only repository-dependent step, so it runs *before*
-        // promote (which drops the repository); everything after promote is repository-independent and thus
-        // resumable by --release. (PMC members only; auto-detected.)
-        stepUpdateDistStage(repository, mode, isPmcMember);
+            StepGraph graph = new StepGraph();
+            // Step 1: Update dist.apache.org. This is the only repository-dependent step, so it runs *before*
+            // promote (which drops the repository); everything after promote is repository-independent and thus
+            // resumable by --release. (PMC members only; auto-detected.)
+            StepGraph.Step dist =
+                    graph.add("update dist.apache.org", () -> stepUpdateDistStage(target, mode, isPmcMember, journal));
 
-        // Step 2: Promote to Maven Central
-        stepPromoteStage(repository, mode);
+            // Step 2: Promote to Maven Central
+            StepGraph.Step promote = graph.add("promote", () -> stepPromoteStage(target, mode, journal), dist);
 
-        // Step 3: Create next JIRA version and move unresolved issues (idempotent: skips if the successor
-        // already exists / there are no unresolved issues left to move)
-        LOGGER.info("--- Step 3/5: Create next JIRA version ---");
-        for (Release release : releases) {
-            stepCreateNextJiraVersion(release, mode);
-        }
+            for (Release release : releases) {
+                // Step 3: Create next JIRA version and move unresolved issues (idempotent: skips if the successor
+                // already exists / there are no unresolved issues left to move)
+                StepGraph.Step successor = graph.add(
+                        "create next JIRA version after " + release.getFullName(),
+                        () -> stepCreateNextJiraVersion(release, mode, journal, prefetch),
+                        promote);
+
+                // Step 4: Mark JIRA version as released, once its unresolved issues have moved to the successor
+                // (idempotent: release() skips an already-released version)
+                graph.add(
+                        "release JIRA version " + release.getFullName(),
+                        () -> stepReleaseJiraVersion(release, stagedAt, mode, journal),
+                        successor);
+            }
 
-        // Step 4: Mark JIRA version as released (idempotent: release() skips an already-released version)
-        LOGGER.info("--- Step 4/5: Release JIRA version ---");
-        for (Release release : releases) {
-            stepReleaseJiraVersion(release, stagedAt, mode);
-        }
+            // Step 5: Update Apache Reporter (idempotent: skips releases the reporter already lists); independent of
+            // the JIRA steps
+            graph.add(
+                    "update Apache Reporter",
+                    () -> stepUpdateReporterStage(releases, mode, journal, prefetch),
+                    promote);
 
-        // Step 5: Update Apache Reporter (idempotent: skips releases the reporter already lists)
-        LOGGER.info("--- Step 5/5: Update Apache Reporter ---");
-        if (mode == ExecutionMode.DRY_RUN) {
-            LOGGER.info("Would add {} release(s) to the Apache Reporter System", releases.size());
-            releases.forEach(r -> LOGGER.info("  - {}", r.getFullName()));
-        } else {
-            stepUpdateReporter(releases);
+            // the confirmations of concurrent steps would compete for the one console, so they are asked in turn
+            graph.run(mode == ExecutionMode.INTERACTIVE ? 1 : parallelism, LOGGER);
+        }
+        for (Release release : releases) {
+            if (journal.removeIfFinished(release)) {
+                LOGGER.debug("Removed the finalize journal of {}, which has no steps left.", release.getFullName());
+            }
         }
 
         LOGGER.info("=== Release finalization complete! ===");
         return CommandLine.ExitCode.OK;
     }
 
-    private void stepUpdateDistStage(StagingRepository repository, ExecutionMode mode, boolean isPmcMember)
+    private void stepUpdateDistStage(
+            FinalizeTarget target, ExecutionMode mode, boolean isPmcMember, FinalizeJournal journal)
             throws IOException {
         if (!isPmcMember) {
             LOGGER.info("--- Step 1/5: Update dist.apache.org --- SKIPPED (current user is not a PMC member;"
@@ -245,16 +324,27 @@ public class FinalizeCommand implements Command {
             return;
         }
         LOGGER.info("--- Step 1/5: Update dist.apache.org ---");
-        if (repository == null) {
+        if (isJournaled(journal, target.releases(), FinalizeJournal.STEP_UPDATE_DIST)) {
+            return;
+        }
+        if (target.repository() == null) {
             LOGGER.info("SKIPPED (staging repository already promoted; if dist still needs updating a PMC"
                     + " member must run update-dist separately)");
-        } else {
-            stepUpdateDist(repository, mode);
+            return;
+        }
+        String outcome = stepUpdateDist(target.repository(), mode);
+        if (outcome != null) {
+            journal.record(target.releases(), FinalizeJournal.STEP_UPDATE_DIST, outcome);
         }
     }
 
-    private void stepPromoteStage(StagingRepository repository, ExecutionMode mode) throws IOException {
+    private void stepPromoteStage(FinalizeTarget target, ExecutionMode mode, FinalizeJournal journal)
+            throws IOException {
         LOGGER.info("--- Step 2/5: Promote to Maven Central ---");
+        StagingRepository repository = target.repository();
+        if (isJournaled(journal, target.releases(), FinalizeJournal.STEP_PROMOTE)) {
+            return;
+        }
         if (repository == null) {
             LOGGER.info("SKIPPED (staging repository already promoted and dropped)");
         } else if (mode == ExecutionMode.DRY_RUN) {
@@ -262,47 +352,97 @@ public class FinalizeCommand implements Command {
         } else {
             LOGGER.info("Promoting {}...", repository.getRepositoryId());
             repositoryService.promote(repository);
+            journal.record(target.releases(), FinalizeJournal.STEP_PROMOTE, "promoted " + repository.getRepositoryId());
             LOGGER.info("Promoted. Artifacts will appear on Maven Central within ~10 minutes.");
         }
     }
 
-    private void stepUpdateDist(StagingRepository repository, ExecutionMode mode) throws IOException {
-        // Delegate the download/collect/publish flow to UpdateDistCommand so it is not duplicated here.
-        UpdateDistCommand.DistReleasePlan plan = UpdateDistCommand.planDistRelease(repositoryService, repository, null);
-
-        if (plan.alreadyPublished()) {
-            LOGGER.info("dist/release already contains {} {}; skipping.", plan.artifactId(), plan.newVersion());
-            return;
+    /**
+     * Skips a step that the journal records as completed for all the releases, unless {@code --ignore-journal}
+     * was given.
+     *
+     * @return {@code true} if the step is to be skipped
+     */
+    private boolean isJournaled(FinalizeJournal journal, Collection<Release> releases, String step) throws IOException {
+        if (ignoreJournal || !journal.isCompleted(releases, step)) {
+            return false;
         }
-        if (plan.newFiles().isEmpty()) {
-            LOGGER.warn(
-                    "No artifacts were downloaded for {} {}; skipping dist update.",
-                    plan.artifactId(),
-                    plan.newVersion());
-            return;
+        Set<String> outcomes = new LinkedHashSet<>();
+        for (Release release : releases) {
+            outcomes.add(journal.outcome(release, step));
         }
+        LOGGER.info("SKIPPED (the finalize journal records it as completed: {})", String.join(", ", outcomes));
+        return true;
+    }
 
-        if (mode == ExecutionMode.DRY_RUN) {
-            LOGGER.info(
-                    "Would publish {} file(s) to dist/release for {} {}",
-                    plan.newFiles().size(),
-                    plan.artifactId(),
-                    plan.newVersion());
-            LOGGER.info(
-                    "Would remove {} old file(s) from dist/release",
-                    plan.oldFiles().size());
-        } else {
+    /** Returns the releases the journal has no entry of {@code step} for, or all with {@code --ignore-journal}. */
+    private Set<Release> pending(FinalizeJournal journal, Set<Release> releases, String step) throws IOException {
+        Set<Release> pending = new HashSet<>();
+        for (Release release : releases) {
+            if (ignoreJournal || journal.outcome(release, step) == null) {
+                pending.add(release);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Publishes the staged artifacts to dist/release.
+     *
+     * @return the outcome to journal, or {@code null} if dist/release was not brought up to date
+     */
+    private String stepUpdateDist(StagingRepository repository, ExecutionMode mode) throws IOException {
+        // Delegate the download/collect/publish flow to UpdateDistCommand so it is not duplicated here; the listing
+        // and the commit share one authenticated session, which is closed when the step ends.
+        Credentials credentials = credentialsService.getAsfCredentials();
+        try (SvnSessionPool sessions = new SvnSessionPool()) {
+            UpdateDistCommand.DistReleasePlan plan = UpdateDistCommand.planDistRelease(
+                    repositoryService,
+                    repository,
+                    null,
+                    UpdateDistCommand.loadDistIndex(UpdateDistCommand.DIST_RELEASE_URL, credentials, sessions));
+
+            if (plan.alreadyPublished()) {
+                LOGGER.info("dist/release already contains {} {}; skipping.", plan.artifactId(), plan.newVersion());
+                return mode == ExecutionMode.DRY_RUN ? null : "already published";
+            }
+            if (plan.newFiles().isEmpty()) {
+                LOGGER.warn(
+                        "No artifacts were downloaded for {} {}; skipping dist update.",
+                        plan.artifactId(),
+                        plan.newVersion());
+                return null;
+            }
+
+            if (mode == ExecutionMode.DRY_RUN) {
+                LOGGER.info(
+                        "Would publish {} file(s) to dist/release for {} {}",
+                        plan.newFiles().size(),
+                        plan.artifactId(),
+                        plan.newVersion());
+                LOGGER.info(
+                        "Would remove {} old file(s) from dist/release",
+                        plan.oldFiles().size());
+                return null;
+            }
             UpdateDistCommand.publishToDistRelease(
-                    plan.artifactId(),
-                    plan.newVersion(),
-                    plan.newFiles(),
-                    plan.oldFiles(),
-                    credentialsService.getAsfCredentials());
+                    List.of(plan), credentials, UpdateDistCommand.DIST_RELEASE_URL, sessions);
+            repositoryService.discardDownload(repository);
+            return "published " + plan.newFiles().size() + " file(s)";
         }
     }
 
-    private void stepCreateNextJiraVersion(Release release, ExecutionMode mode) throws IOException {
-        JiraVersions.createSuccessorAndMoveUnresolved(versionClient, release, mode, LOGGER);
+    private void stepCreateNextJiraVersion(
+            Release release, ExecutionMode mode, FinalizeJournal journal, FinalizePrefetch prefetch)
+            throws IOException {
+        LOGGER.info("--- Step 3/5: Create next JIRA version after {} ---", release.getFullName());
+        if (isJournaled(journal, List.of(release), FinalizeJournal.STEP_CREATE_NEXT_JIRA_VERSION)) {
+            return;
+        }
+        if (JiraVersions.createSuccessorAndMoveUnresolved(versionClient, prefetch, release, mode, LOGGER)
+                && mode != ExecutionMode.DRY_RUN) {
+            journal.record(release, FinalizeJournal.STEP_CREATE_NEXT_JIRA_VERSION, "successor version in place");
+        }
     }
 
     /**
@@ -311,9 +451,14 @@ public class FinalizeCommand implements Command {
      *
      * @return {@code true} if finalize may proceed, {@code false} if it must abort
      */
-    private boolean preflightJiraState(Set<Release> releases, Instant stagedAt) throws IOException {
+    private boolean preflightJiraState(Set<Release> releases, Instant stagedAt, FinalizeJournal journal)
+            throws IOException {
         boolean ok = true;
         for (Release release : releases) {
+            if (!ignoreJournal && journal.outcome(release, FinalizeJournal.STEP_RELEASE_JIRA_VERSION) != null) {
+                // already released, there is nothing left to guard
+                continue;
+            }
             List<Issue> lateIssues = LateFixVersionGuard.reportLateIssues(
                     versionClient, release, stagedAt, forceCloseLateIssues, LOGGER);
             if (!lateIssues.isEmpty() && !forceCloseLateIssues) {
@@ -326,23 +471,48 @@ public class FinalizeCommand implements Command {
         return ok;
     }
 
-    private void stepReleaseJiraVersion(Release release, Instant stagedAt, ExecutionMode mode) throws Exception {
+    private void stepReleaseJiraVersion(Release release, Instant stagedAt, ExecutionMode mode, FinalizeJournal journal)
+            throws Exception {
+        LOGGER.info("--- Step 4/5: Release JIRA version {} ---", release.getFullName());
+        if (isJournaled(journal, List.of(release), FinalizeJournal.STEP_RELEASE_JIRA_VERSION)) {
+            return;
+        }
         if (mode == ExecutionMode.DRY_RUN) {
             LOGGER.info("Would mark JIRA version {} as released", release.getFullName());
         } else {
             // pre-flight already validated this; when forcing, also skip the guard inside release()
             versionClient.release(release, forceCloseLateIssues ? null : stagedAt);
+            journal.record(release, FinalizeJournal.STEP_RELEASE_JIRA_VERSION, "released");
             LOGGER.info("Marked JIRA version {} as released", release.getFullName());
         }
     }
 
-    private void stepUpdateReporter(Set<Release> releases) throws IOException {
+    private void stepUpdateReporterStage(
+            Set<Release> releases, ExecutionMode mode, FinalizeJournal journal, FinalizePrefetch prefetch)
+            throws IOException {
+        LOGGER.info("--- Step 5/5: Update Apache Reporter ---");
+        if (isJournaled(journal, releases, FinalizeJournal.STEP_UPDATE_REPORTER)) {
+            return;
+        }
+        // only the releases without a journal entry need the reporter overview
+        Set<Release> pending = pending(journal, releases, FinalizeJournal.STEP_UPDATE_REPORTER);
+        if (mode == ExecutionMode.DRY_RUN) {
+            LOGGER.info("Would add {} release(s) to the Apache Reporter System", pending.size());
+            pending.forEach(r -> LOGGER.info("  - {}", r.getFullName()));
+        } else {
+            stepUpdateReporter(pending, journal, prefetch);
+        }
+    }
+
+    private void stepUpdateReporter(Set<Release> releases, FinalizeJournal journal, FinalizePrefetch prefetch)
+            throws IOException {
         try (CloseableHttpClient client = httpClientFactory.newClient()) {
             // Query first so a resumed run does not add a release the reporter already lists.
-            Set<String> alreadyRecorded = Reporter.fetchRegisteredReleaseNames(client);
+            Set<String> alreadyRecorded = prefetch.fetchRegisteredReleaseNames(client);
             for (Release release : releases) {
                 if (alreadyRecorded.contains(release.getFullName())) {
                     LOGGER.info("Apache Reporter already lists {}; skipping.", release.getFullName());
+                    journal.record(release, FinalizeJournal.STEP_UPDATE_REPORTER, "already listed");
                     continue;
                 }
                 // Reporter release data is committee-scoped; a non-PMC / non-ASF-member user cannot add it.
@@ -353,6 +523,7 @@ public class FinalizeCommand implements Command {
                                     + " member must add it.",
                             release.getFullName());
                 } else {
+                    journal.record(release, FinalizeJournal.STEP_UPDATE_REPORTER, "added");
                     LOGGER.info("Updated Apache Reporter for {}", release.getFullName());
                 }
             }
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only local record of the finalize steps that completed, and their outcome, per release.
+ *
+ * <p>Each release has its own journal file in the journal directory, with one line per completed step: the time, the
+ * step and its outcome, separated by tabs. A line is appended and forced to disk as soon as a step completes, so a
+ * finalize run that is interrupted at any point leaves behind exactly the steps that are known to be done. A resumed
+ * run skips these without querying JIRA, the Apache Reporter or dist.apache.org again; only steps without a journal
+ * entry check the remote state. A line that was torn by a crash while it was written is ignored, and dropped when
+ * the next entry is appended.
+ *
+ * <p>A journal written while finalizing from a staging repository starts with the id of that repository. When the
+ * same release is finalized from another staging repository, e.g. because it was staged again after an aborted
+ * attempt, the entries of the earlier one no longer apply and are discarded. Once the last steps of a release are
+ * recorded there is nothing left to resume, and its journal is removed.
+ */
+final class FinalizeJournal {
+
+    static final String STEP_UPDATE_DIST = "update-dist";
+    static final String STEP_PROMOTE = "promote";
+    static final String STEP_CREATE_NEXT_JIRA_VERSION = "create-next-jira-version";
+    static final String STEP_RELEASE_JIRA_VERSION = "release-jira-version";
+    static final String STEP_UPDATE_REPORTER = "update-reporter";
+
+    /** The entry that holds the id of the staging repository the steps were recorded for. */
+    private static final String STAGING_REPOSITORY = "staging-repository";
+
+    /** The steps that run last; once they are recorded, finalize has nothing left to do for a release. */
+    private static final List<String> LAST_STEPS =
+            List.of(STEP_CREATE_NEXT_JIRA_VERSION, STEP_RELEASE_JIRA_VERSION, STEP_UPDATE_REPORTER);
+
+    private final Path directory;
+    private final Map<String, Map<String, String>> outcomes = new HashMap<>();
+    // the staging repository of each release whose journal is to be started over with the next entry
+    private final Map<String, String> restarts = new HashMap<>();
+
+    FinalizeJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the recorded outcome of a step for a release.
+     *
+     * @param release the release
+     * @param step the step
+     * @return the outcome, or {@code null} if the journal has no entry for the step
+     * @throws IOException if the journal cannot be read
+     */
+    synchronized String outcome(Release release, String step) throws IOException {
+        return entries(release).get(step);
+    }
+
+    /**
+     * Tells whether a step is recorded as completed for all the given releases.
+     *
+     * @param releases the releases
+     * @param step the step
+     * @return {@code true} if every release has an entry for the step
+     * @throws IOException if the journal cannot be read
+     */
+    synchronized boolean isCompleted(Collection<Release> releases, String step) throws IOException {
+        for (Release release : releases) {
+            if (!entries(release).containsKey(step)) {
+                return false;
+            }
+        }
+        return !releases.isEmpty();
+    }
+
+    /**
+     * Ties the journal of a release to the staging repository it is finalized from. When the journal was written for
+     * another staging repository, or for none, its entries are discarded; the file is only started over when the next
+     * entry is recorded, so that a dry run leaves it alone.
+     *
+     * @param release the release
+     * @param repositoryId the id of the staging repository
+     * @return {@code true} if entries were discarded
+     * @throws IOException if the journal cannot be read
+     */
+    synchronized boolean bind(Release release, String repositoryId) throws IOException {
+        Map<String, String> entries = entries(release);
+        if (repositoryId.equals(entries.get(STAGING_REPOSITORY))) {
+            return false;
+        }
+        boolean discarded = !entries.isEmpty();
+        entries.clear();
+        restarts.put(release.getFullName(), repositoryId);
+        return discarded;
+    }
+
+    /**
+     * Removes the journal of a release if its last steps are recorded.
+     *
+     * @param release the release
+     * @return {@code true} if the journal was removed
+     * @throws IOException if the journal cannot be read or removed
+     */
+    synchronized boolean removeIfFinished(Release release) throws IOException {
+        if (!entries(release).keySet().containsAll(LAST_STEPS)) {
+            return false;
+        }
+        Files.deleteIfExists(file(release));
+        outcomes.remove(release.getFullName());
+        restarts.remove(release.getFullName());
+        return true;
+    }
+
+    /**
+     * Records that a step completed for a release and forces the entry to disk before returning.
+     *
+     * @param release the release
+     * @param step the step
+     * @param outcome a short description of the outcome; tabs and line breaks are replaced by spaces
+     * @throws IOException if the entry cannot be written
+     */
+    synchronized void record(Release release, String step, String outcome) throws IOException {
+        String sanitized = outcome.replaceAll("[\\t\\r\\n]", " ");
+        String line = Instant.now() + "\t" + step + "\t" + sanitized + "\n";
+        String restartFor = restarts.get(release.getFullName());
+        if (restartFor != null) {
+            line = Instant.now() + "\t" + STAGING_REPOSITORY + "\t" + restartFor + "\n" + line;
+        }
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(
+                file(release), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // drop a line torn by an earlier crash, which would otherwise become part of the new entry, or the whole
+            // journal of another staging repository
+            long size = restartFor != null ? 0 : completeLength(channel);
+            channel.truncate(size);
+            channel.position(size);
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        if (restartFor != null) {
+            restarts.remove(release.getFullName());
+            entries(release).put(STAGING_REPOSITORY, restartFor);
+        }
+        entries(release).put(step, sanitized);
+    }
+
+    /**
+     * Records that a step completed for several releases.
+     *
+     * @see #record(Release, String, String)
+     */
+    void record(Collection<Release> releases, String step, String outcome) throws IOException {
+        for (Release release : releases) {
+            record(release, step, outcome);
+        }
+    }
+
+    private Map<String, String> entries(Release release) throws IOException {
+        Map<String, String> entries = outcomes.get(release.getFullName());
+        if (entries == null) {
+            entries = new LinkedHashMap<>();
+            Path file = file(release);
+            if (Files.isRegularFile(file)) {
+                String content = Files.readString(file, StandardCharsets.UTF_8);
+                // only complete lines count; a last line without a line break was torn while it was written
+                String complete = content.substring(0, content.lastIndexOf('\n') + 1);
+                for (String line : complete.split("\n")) {
+                    String[] fields = line.split("\t", 3);
+                    if (fields.length == 3) {
+                        entries.put(fields[1], fields[2]);
+                    }
+                }
+            }
+            outcomes.put(release.getFullName(), entries);
+        }
+        return entries;
+    }
+
+    private static long completeLength(FileChannel channel) throws IOException {
+        long end = channel.size();
+        ByteBuffer last = ByteBuffer.allocate(1);
+        while (end > 0) {
+            last.clear();
+            channel.read(last, end - 1);
+            if (last.get(0) == '\n') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    private Path file(Release release) {
+        return directory.resolve(release.getFullName().replaceAll("[^A-Za-z0-9._-]", "_") + ".journal");
+    }
+}
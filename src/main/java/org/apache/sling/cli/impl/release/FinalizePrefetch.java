@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.sling.cli.impl.http.HttpClientFactory;
+import org.apache.sling.cli.impl.jira.Issue;
+import org.apache.sling.cli.impl.jira.Version;
+import org.apache.sling.cli.impl.jira.VersionClient;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The read-only inputs of the finalize steps that follow promotion, fetched in the background while dist.apache.org
+ * is updated and the staging repository is promoted.
+ *
+ * <p>The successor JIRA version of each release, and the releases the Apache Reporter already lists, are requested as
+ * soon as the releases are known. A prefetched value is handed out at most once: any later read, and any read after
+ * {@link #invalidate(Release)} reported a write to JIRA, goes to the remote system again. A prefetch that failed is
+ * retried directly, since it was only speculative.
+ *
+ * <p>The unresolved issues are not prefetched: they are moved to the successor version, and issues can still be
+ * resolved or retargeted while dist.apache.org is updated and the repository is promoted, so they are always read
+ * right before they are moved.
+ */
+final class FinalizePrefetch implements JiraVersions.Lookup, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FinalizePrefetch.class);
+    private static final int MAX_THREADS = 4;
+
+    private final VersionClient versionClient;
+    private final ExecutorService executor;
+    private final Map<Release, Promise<Version>> successors = new ConcurrentHashMap<>();
+    private volatile Promise<Set<String>> reporterReleases;
+
+    private FinalizePrefetch(VersionClient versionClient, ExecutorService executor) {
+        this.versionClient = versionClient;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts prefetching.
+     *
+     * @param versionClient the JIRA client
+     * @param httpClientFactory the factory of the client that queries the Apache Reporter
+     * @param jiraReleases the releases whose successor version to prefetch
+     * @param reporter whether to prefetch the releases the Apache Reporter lists
+     * @return the prefetch, to be closed once finalize is done
+     */
+    static FinalizePrefetch start(
+            VersionClient versionClient,
+            HttpClientFactory httpClientFactory,
+            Collection<Release> jiraReleases,
+            boolean reporter) {
+        int tasks = jiraReleases.size() + (reporter ? 1 : 0);
+        ExecutorService executor = tasks == 0 ? null : Executors.newFixedThreadPool(Math.min(tasks, MAX_THREADS));
+        FinalizePrefetch prefetch = new FinalizePrefetch(versionClient, executor);
+        if (executor == null) {
+            return prefetch;
+        }
+        PromiseFactory promiseFactory = new PromiseFactory(executor, null);
+        for (Release release : jiraReleases) {
+            prefetch.successors.put(release, promiseFactory.submit(() -> versionClient.findSuccessorVersion(release)));
+        }
+        if (reporter) {
+            prefetch.reporterReleases = promiseFactory.submit(() -> {
+                try (CloseableHttpClient client = httpClientFactory.newClient()) {
+                    return Reporter.fetchRegisteredReleaseNames(client);
+                }
+            });
+        }
+        return prefetch;
+    }
+
+    @Override
+    public Version findSuccessorVersion(Release release) throws IOException {
+        Prefetched<Version> prefetched =
+                take(successors.remove(release), "successor version of " + release.getFullName());
+        return prefetched != null ? prefetched.value() : versionClient.findSuccessorVersion(release);
+    }
+
+    @Override
+    public List<Issue> findUnresolvedIssues(Release release) throws IOException {
+        return versionClient.findUnresolvedIssues(release);
+    }
+
+    @Override
+    public void invalidate(Release release) {
+        successors.remove(release);
+    }
+
+    /**
+     * Returns the releases the Apache Reporter lists, as prefetched or else queried with {@code client}.
+     *
+     * @param client the client to query the reporter with when nothing was prefetched
+     * @return the release names
+     */
+    Set<String> fetchRegisteredReleaseNames(CloseableHttpClient client) throws IOException {
+        Promise<Set<String>> promise = reporterReleases;
+        reporterReleases = null;
+        Prefetched<Set<String>> prefetched = take(promise, "Apache Reporter releases");
+        return prefetched != null ? prefetched.value() : Reporter.fetchRegisteredReleaseNames(client);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Waits for a prefetched value; {@code null} means that there is none and that the caller has to read it. */
+    private static <T> Prefetched<T> take(Promise<T> promise, String what) throws IOException {
+        if (promise == null) {
+            return null;
+        }
+        try {
+            return new Prefetched<>(promise.getValue());
+        } catch (InvocationTargetException e) {
+            LOGGER.debug("Prefetching the {} failed; reading it again.", what, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the " + what, e);
+        }
+    }
+
+    /** A prefetched value, which may be {@code null}. */
+    private record Prefetched<T>(T value) {}
+}
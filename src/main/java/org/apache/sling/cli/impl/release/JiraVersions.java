@@ -43,10 +43,22 @@ final class JiraVersions {
      * version's still-unresolved issues to it. Honours the execution {@code mode}: {@code DRY_RUN}
      * describes the actions, {@code INTERACTIVE} confirms each one, {@code AUTO} performs them. Both
      * operations are idempotent, so this is safe to re-run.
+     *
+     * @return {@code true} if the successor exists and no unresolved issue was left on the released version
      */
-    static void createSuccessorAndMoveUnresolved(
+    static boolean createSuccessorAndMoveUnresolved(
             VersionClient versionClient, Release release, ExecutionMode mode, Logger logger) throws IOException {
-        Version successorVersion = versionClient.findSuccessorVersion(release);
+        return createSuccessorAndMoveUnresolved(versionClient, direct(versionClient), release, mode, logger);
+    }
+
+    /**
+     * Like {@link #createSuccessorAndMoveUnresolved(VersionClient, Release, ExecutionMode, Logger)}, but reads the
+     * successor version and the unresolved issues through {@code lookup}, which is told about every write.
+     */
+    static boolean createSuccessorAndMoveUnresolved(
+            VersionClient versionClient, Lookup lookup, Release release, ExecutionMode mode, Logger logger)
+            throws IOException {
+        Version successorVersion = lookup.findSuccessorVersion(release);
         if (successorVersion == null) {
             Release next = release.next();
             if (confirm(
@@ -56,29 +68,50 @@ final class JiraVersions {
                     "Should version %s be created?",
                     next.getName())) {
                 versionClient.create(next.getName());
+                lookup.invalidate(release);
                 logger.info("Created JIRA version {}", next.getName());
-                successorVersion = versionClient.findSuccessorVersion(release);
+                successorVersion = lookup.findSuccessorVersion(release);
             }
         } else {
             logger.info("Successor JIRA version {} already exists", successorVersion.getName());
         }
-        if (successorVersion != null) {
-            List<Issue> unresolved = versionClient.findUnresolvedIssues(release);
-            if (!unresolved.isEmpty()
-                    && confirm(
-                            mode,
-                            logger,
-                            String.format(
-                                    "Would move %d unresolved issue(s) from %s to %s",
-                                    unresolved.size(), release.getName(), successorVersion.getName()),
-                            "Should the %d unresolved issue(s) from %s be moved to %s?",
-                            unresolved.size(),
-                            release.getName(),
-                            successorVersion.getName())) {
-                versionClient.moveIssuesToNewVersion(versionClient.find(release), successorVersion, unresolved);
-                logger.info("Moved {} unresolved issue(s) to {}", unresolved.size(), successorVersion.getName());
-            }
+        if (successorVersion == null) {
+            return false;
+        }
+        List<Issue> unresolved = lookup.findUnresolvedIssues(release);
+        if (unresolved.isEmpty()) {
+            return true;
         }
+        if (confirm(
+                mode,
+                logger,
+                String.format(
+                        "Would move %d unresolved issue(s) from %s to %s",
+                        unresolved.size(), release.getName(), successorVersion.getName()),
+                "Should the %d unresolved issue(s) from %s be moved to %s?",
+                unresolved.size(),
+                release.getName(),
+                successorVersion.getName())) {
+            versionClient.moveIssuesToNewVersion(versionClient.find(release), successorVersion, unresolved);
+            lookup.invalidate(release);
+            logger.info("Moved {} unresolved issue(s) to {}", unresolved.size(), successorVersion.getName());
+            return true;
+        }
+        return false;
+    }
+
+    private static Lookup direct(VersionClient versionClient) {
+        return new Lookup() {
+            @Override
+            public Version findSuccessorVersion(Release release) {
+                return versionClient.findSuccessorVersion(release);
+            }
+
+            @Override
+            public List<Issue> findUnresolvedIssues(Release release) throws IOException {
+                return versionClient.findUnresolvedIssues(release);
+            }
+        };
     }
 
     /**
@@ -99,4 +132,15 @@ final class JiraVersions {
                 return true;
         }
     }
+
+    /** Reads the JIRA state {@link #createSuccessorAndMoveUnresolved} works on. */
+    interface Lookup {
+
+        Version findSuccessorVersion(Release release) throws IOException;
+
+        List<Issue> findUnresolvedIssues(Release release) throws IOException;
+
+        /** Called after JIRA was changed for {@code release}, so that nothing read before is reused. */
+        default void invalidate(Release release) {}
+    }
 }
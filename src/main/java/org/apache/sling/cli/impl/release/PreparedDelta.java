@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.ISVNDeltaConsumer;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * The text delta of a file added to {@code dist/release}, computed before the commit editor is opened.
+ *
+ * <p>Computing the delta windows and the MD5 checksum of a file is CPU bound, while the commit transaction on
+ * dist.apache.org stays open for as long as the editor is driven. Preparing the deltas up front, in parallel, leaves
+ * the commit phase with nothing to do but stream the prepared windows.
+ */
+final class PreparedDelta {
+
+    private final String path;
+    private final String checksum;
+    private final List<SVNDiffWindow> windows;
+
+    private PreparedDelta(String path, String checksum, List<SVNDiffWindow> windows) {
+        this.path = path;
+        this.checksum = checksum;
+        this.windows = windows;
+    }
+
+    /**
+     * Computes the delta of {@code content} against an empty base.
+     *
+     * @param path the path the delta is sent for
+     * @param content the file content; not closed
+     * @return the prepared delta
+     * @throws SVNException if the delta cannot be computed
+     */
+    static PreparedDelta compute(String path, InputStream content) throws SVNException {
+        List<SVNDiffWindow> windows = new ArrayList<>();
+        ISVNDeltaConsumer recorder = new ISVNDeltaConsumer() {
+            @Override
+            public void applyTextDelta(String target, String baseChecksum) {}
+
+            @Override
+            public OutputStream textDeltaChunk(String target, SVNDiffWindow window) {
+                // the generator reuses its buffers for the next window, so keep a copy of the data
+                windows.add(window.clone(ByteBuffer.allocate(window.getDataLength())));
+                return null;
+            }
+
+            @Override
+            public void textDeltaEnd(String target) {}
+        };
+        String checksum = new SVNDeltaGenerator().sendDelta(path, content, recorder, true);
+        return new PreparedDelta(path, checksum, List.copyOf(windows));
+    }
+
+    /**
+     * Prepares the deltas of {@code files} in parallel, keyed by file and sent for the file name. Files are taken in
+     * order while their total size stays within {@code budgetBytes}, since a prepared delta is held in memory; the
+     * remaining files are left for the commit to stream.
+     *
+     * @param files the files to prepare
+     * @param budgetBytes the maximum total size of the prepared files
+     * @return the prepared deltas
+     * @throws IOException if a file cannot be read or its delta cannot be computed
+     */
+    static Map<Path, PreparedDelta> prepare(List<Path> files, long budgetBytes) throws IOException {
+        List<Path> selected = new ArrayList<>();
+        long total = 0;
+        for (Path file : files) {
+            long size = Files.size(file);
+            if (total + size <= budgetBytes) {
+                selected.add(file);
+                total += size;
+            }
+        }
+        Map<Path, PreparedDelta> prepared = new HashMap<>();
+        if (selected.isEmpty()) {
+            return prepared;
+        }
+        int threads = Math.min(selected.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            PromiseFactory promiseFactory = new PromiseFactory(executor, null);
+            Map<Path, Promise<PreparedDelta>> promises = new HashMap<>();
+            for (Path file : selected) {
+                promises.put(file, promiseFactory.submit(() -> {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        return compute(file.getFileName().toString(), in);
+                    }
+                }));
+            }
+            for (Map.Entry<Path, Promise<PreparedDelta>> entry : promises.entrySet()) {
+                prepared.put(entry.getKey(), entry.getValue().getValue());
+            }
+        } catch (InvocationTargetException e) {
+            throw new IOException("Failed to prepare the delta of a file to publish", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while preparing the files to publish", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return prepared;
+    }
+
+    /** Returns the MD5 checksum of the full text, to pass to {@link ISVNEditor#closeFile(String, String)}. */
+    String getChecksum() {
+        return checksum;
+    }
+
+    /** Sends the prepared windows to {@code editor}, which must already have the file added or opened. */
+    void sendTo(ISVNEditor editor) throws SVNException, IOException {
+        editor.applyTextDelta(path, null);
+        for (SVNDiffWindow window : windows) {
+            OutputStream data = editor.textDeltaChunk(path, window);
+            if (data != null) {
+                data.close();
+            }
+        }
+        editor.textDeltaEnd(path);
+    }
+}
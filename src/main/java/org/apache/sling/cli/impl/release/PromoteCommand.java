@@ -19,6 +19,7 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -51,8 +52,11 @@ public class PromoteCommand extends AbstractStagingRepositoryCommand<PromoteComm
     @Reference
     private RepositoryService repositoryService;
 
+    @CommandLine.Mixin
+    private StagingWaitOptions waitOptions = new StagingWaitOptions();
+
     @Override
-    protected Target resolve() throws IOException {
+    protected Target resolve(int repositoryId) throws IOException {
         StagingRepository repository = repositoryService.find(repositoryId);
         Set<Release> releases = repositoryService.getReleases(repository);
         String releaseNames = releases.stream().map(Release::getFullName).collect(Collectors.joining(", "));
@@ -67,17 +71,31 @@ public class PromoteCommand extends AbstractStagingRepositoryCommand<PromoteComm
     }
 
     @Override
-    protected String confirmationQuestion(Target target) {
-        return String.format("Promote %s to Maven Central?", target.releaseNames);
+    protected String confirmationQuestion(List<Target> targets) {
+        return String.format("Promote %s to Maven Central?", releaseNames(targets));
     }
 
     @Override
-    protected void perform(Target target) throws IOException {
-        LOGGER.info("Promoting {} to Maven Central...", target.releaseNames);
-        repositoryService.promote(target.repository);
+    protected void perform(List<Target> targets) throws IOException {
+        List<StagingRepository> repositories =
+                targets.stream().map(target -> target.repository).collect(Collectors.toList());
+        LOGGER.info("Promoting {} to Maven Central...", releaseNames(targets));
+        repositoryService.promoteAll(repositories, waitOptions.wait);
+        if (!waitOptions.wait) {
+            LOGGER.info(
+                    "Promotion of {} requested. Nexus releases asynchronously; pass --wait to wait for the outcome.",
+                    describe(repositories));
+            return;
+        }
+        LOGGER.info("Waiting for Nexus to release {}...", describe(repositories));
+        repositoryService.awaitPromoted(repositories, waitOptions.timeout());
         LOGGER.info("Done. Artifacts will appear on Maven Central within ~10 minutes.");
     }
 
+    private static String releaseNames(List<Target> targets) {
+        return targets.stream().map(target -> target.releaseNames).collect(Collectors.joining(", "));
+    }
+
     static final class Target {
         private final StagingRepository repository;
         private final String releaseNames;
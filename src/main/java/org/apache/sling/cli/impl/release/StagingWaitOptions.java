@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.time.Duration;
+
+import picocli.CommandLine;
+
+/** Options of the staging commands whose Nexus operation completes asynchronously (close-staging, promote). */
+class StagingWaitOptions {
+
+    static final int DEFAULT_WAIT_TIMEOUT_SECONDS = 900;
+
+    @CommandLine.Option(
+            names = {"--wait"},
+            description = "wait until Nexus has completed the operation, reporting failed staging rules")
+    boolean wait;
+
+    @CommandLine.Option(
+            names = {"--wait-timeout"},
+            paramLabel = "<seconds>",
+            description = "how long --wait waits at most, in seconds; default: ${DEFAULT-VALUE}")
+    int waitTimeoutSeconds = DEFAULT_WAIT_TIMEOUT_SECONDS;
+
+    Duration timeout() {
+        return Duration.ofSeconds(waitTimeoutSeconds);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
+import org.slf4j.Logger;
+
+/**
+ * A set of steps with declared dependencies, run on a bounded number of threads.
+ *
+ * <p>A step starts as soon as all the steps it depends on have completed, so independent steps run concurrently. A
+ * failed step prevents its dependents from running but not the steps that do not depend on it; once every step has
+ * either run or been skipped, the failure of the first failed step (in the order the steps were added) is rethrown.
+ * Each step is timed, and the chain of steps that determined the total duration (the critical path) is logged.
+ */
+final class StepGraph {
+
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Adds a step. Dependencies must have been added before, which keeps the graph acyclic.
+     *
+     * @param name the name the step is logged with
+     * @param action what the step does
+     * @param dependencies the steps that have to complete before this one starts
+     * @return the step, to be used as the dependency of later steps
+     */
+    Step add(String name, Action action, Step... dependencies) {
+        for (Step dependency : dependencies) {
+            if (!steps.contains(dependency)) {
+                throw new IllegalArgumentException(
+                        "Step " + name + " depends on " + dependency.name() + ", which is not part of the graph.");
+            }
+        }
+        Step step = new Step(name, List.copyOf(Arrays.asList(dependencies)), action);
+        steps.add(step);
+        return step;
+    }
+
+    /**
+     * Runs all the steps.
+     *
+     * @param parallelism the maximum number of steps running at the same time; with {@code 1} the steps run one
+     *     after the other, in the order they were added, on the calling thread
+     * @param logger the logger the timings are reported to
+     * @return the duration of each step, in the order the steps were added; steps that were skipped because a
+     *     dependency failed are missing
+     * @throws Exception the failure of the first step that failed
+     */
+    Map<Step, Timing> run(int parallelism, Logger logger) throws Exception {
+        Map<Step, Timing> timings = new LinkedHashMap<>();
+        if (steps.isEmpty()) {
+            return timings;
+        }
+        int threads = Math.min(Math.max(parallelism, 1), steps.size());
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        Executor executor = pool != null ? pool : Runnable::run;
+        long origin = System.nanoTime();
+        Map<Step, Promise<Timing>> promises = new LinkedHashMap<>();
+        try {
+            PromiseFactory promiseFactory = new PromiseFactory(executor, null);
+            for (Step step : steps) {
+                List<Promise<Timing>> dependencies =
+                        step.dependencies().stream().map(promises::get).toList();
+                Promise<List<Timing>> ready =
+                        dependencies.isEmpty() ? promiseFactory.resolved(List.of()) : promiseFactory.all(dependencies);
+                promises.put(
+                        step,
+                        ready.then(resolved -> promiseFactory.submit(() -> {
+                            long start = System.nanoTime() - origin;
+                            step.action().run();
+                            return new Timing(start, System.nanoTime() - origin);
+                        })));
+            }
+            Exception failure = null;
+            for (Map.Entry<Step, Promise<Timing>> entry : promises.entrySet()) {
+                Step step = entry.getKey();
+                try {
+                    timings.put(step, entry.getValue().getValue());
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    if (failedDependency(step, promises)) {
+                        logger.warn("Step '{}' was skipped because a step it depends on failed.", step.name());
+                    } else if (failure == null) {
+                        failure = cause instanceof Exception ? (Exception) cause : new Exception(cause);
+                    } else {
+                        logger.warn("Step '{}' failed as well.", step.name(), cause);
+                    }
+                }
+            }
+            logTimings(timings, logger);
+            if (failure != null) {
+                throw failure;
+            }
+            return timings;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static boolean failedDependency(Step step, Map<Step, Promise<Timing>> promises)
+            throws InterruptedException {
+        for (Step dependency : step.dependencies()) {
+            if (promises.get(dependency).getFailure() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void logTimings(Map<Step, Timing> timings, Logger logger) {
+        if (timings.isEmpty()) {
+            return;
+        }
+        long busy = 0;
+        for (Map.Entry<Step, Timing> entry : timings.entrySet()) {
+            logger.info(
+                    "Step '{}' took {} ms.",
+                    entry.getKey().name(),
+                    entry.getValue().millis());
+            busy += entry.getValue().end() - entry.getValue().start();
+        }
+        // walk back from the step that finished last, through the dependency that completed last
+        List<Step> path = new ArrayList<>();
+        Comparator<Step> byEnd = Comparator.comparingLong(s -> timings.get(s).end());
+        Step current = timings.keySet().stream().max(byEnd).orElseThrow();
+        while (current != null) {
+            path.add(0, current);
+            current = current.dependencies().stream()
+                    .filter(timings::containsKey)
+                    .max(byEnd)
+                    .orElse(null);
+        }
+        StringJoiner description = new StringJoiner(" -> ");
+        path.forEach(
+                step -> description.add(step.name() + " (" + timings.get(step).millis() + " ms)"));
+        long total = timings.get(path.get(path.size() - 1)).end() / 1_000_000;
+        logger.info(
+                "Critical path: {}; finished after {} ms, with {} ms of work across all steps.",
+                description,
+                total,
+                busy / 1_000_000);
+    }
+
+    /** What a step does. */
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * A step of the graph.
+     *
+     * @param name the name the step is logged with
+     * @param dependencies the steps that have to complete before this one starts
+     * @param action what the step does
+     */
+    record Step(String name, List<Step> dependencies, Action action) {
+
+        // identity semantics: two steps with the same name and dependencies are still different steps
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * When a step ran, relative to the start of the graph.
+     *
+     * @param start the start, in nanoseconds
+     * @param end the end, in nanoseconds
+     */
+    record Timing(long start, long end) {
+
+        long millis() {
+            return (end - start) / 1_000_000;
+        }
+    }
+}
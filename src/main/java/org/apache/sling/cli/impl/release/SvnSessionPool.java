@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.cli.impl.Credentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+/**
+ * The Subversion sessions of one command run, keyed by repository URL and credentials.
+ *
+ * <p>Every {@link SVNRepository} holds its own DAV connection and authenticates on first use. Handing out the same
+ * session to the listing, publishing and any later check against the same URL and credentials reuses the connection
+ * and the authentication handshake. The pool is closed when the run ends, which closes all of its sessions.
+ * Sessions are not thread-safe and must be used by one operation at a time.
+ */
+final class SvnSessionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SvnSessionPool.class);
+
+    private final Map<SessionKey, SVNRepository> sessions = new HashMap<>();
+
+    /**
+     * Returns the session for {@code url}, opening it on first use.
+     *
+     * @param url the repository URL; a trailing slash is ignored
+     * @param credentials the credentials to authenticate with, or {@code null} for an anonymous session
+     * @return the session
+     * @throws SVNException if the URL is invalid
+     */
+    synchronized SVNRepository get(String url, Credentials credentials) throws SVNException {
+        SVNURL svnUrl = SVNURL.parseURIEncoded(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+        SessionKey key = credentials == null
+                ? new SessionKey(svnUrl.toString(), null, null)
+                : new SessionKey(svnUrl.toString(), credentials.getUsername(), credentials.getPassword());
+        SVNRepository session = sessions.get(key);
+        if (session == null) {
+            session = SVNRepositoryFactory.create(svnUrl);
+            if (credentials != null) {
+                session.setAuthenticationManager(
+                        new BasicAuthenticationManager(credentials.getUsername(), credentials.getPassword()));
+            }
+            LOGGER.debug("Opened a Subversion session for {}.", svnUrl);
+            sessions.put(key, session);
+        }
+        return session;
+    }
+
+    /** Closes all the sessions; the pool can still be used afterwards and then opens new ones. */
+    @Override
+    public synchronized void close() {
+        List<SVNRepository> open = new ArrayList<>(sessions.values());
+        sessions.clear();
+        for (SVNRepository session : open) {
+            session.closeSession();
+        }
+    }
+
+    // the password is part of the key but never logged: the record's toString is not used
+    private record SessionKey(String url, String username, String password) {}
+}
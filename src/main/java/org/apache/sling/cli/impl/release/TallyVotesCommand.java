@@ -21,12 +21,14 @@ package org.apache.sling.cli.impl.release;
 import javax.mail.internet.InternetAddress;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
-import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -44,6 +46,8 @@ import org.apache.sling.cli.impl.people.Member;
 import org.apache.sling.cli.impl.people.MembersFinder;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -56,7 +60,7 @@ import picocli.CommandLine;
         })
 @CommandLine.Command(
         name = TallyVotesCommand.NAME,
-        description = "Counts votes cast for a release and generates the result email",
+        description = "Counts votes cast for one or more releases and generates the result emails",
         subcommands = CommandLine.HelpCommand.class)
 public class TallyVotesCommand implements Command {
 
@@ -82,13 +86,20 @@ public class TallyVotesCommand implements Command {
 
     @CommandLine.Option(
             names = {"-r", "--repository"},
-            description = "Nexus repository id",
-            required = true)
-    private Integer repositoryId;
+            description = "Nexus repository id; may be repeated or given as a comma-separated list",
+            split = ",")
+    private List<Integer> repositoryIds;
+
+    @CommandLine.Option(
+            names = {"--all-closed"},
+            description = "Tally the votes of all closed Sling staging repositories")
+    private boolean allClosed;
 
     @CommandLine.Mixin
     private ReusableCLIOptions reusableCLIOptions;
 
+    private final PromiseFactory promiseFactory = new PromiseFactory(null, null);
+
     /** The steps {@link FinalizeCommand} performs, in the order it performs them. */
     private static final String FINALIZE_STEPS = "  1. copy the artifacts to the Sling dist directory\n"
             + "     (https://dist.apache.org/repos/dist/release/sling/)\n"
@@ -97,6 +108,8 @@ public class TallyVotesCommand implements Command {
             + "  4. mark the JIRA version as released\n"
             + "  5. add the release to the Apache Reporter System";
 
+    private static final String SUMMARY_ROW_FORMAT = "%-22s %-50s %7s %11s  %s%n";
+
     private static final String EMAIL_TEMPLATE;
 
     static {
@@ -111,95 +124,198 @@ public class TallyVotesCommand implements Command {
 
     @Override
     public Integer call() {
+        boolean hasRepositoryIds = repositoryIds != null && !repositoryIds.isEmpty();
+        if (hasRepositoryIds == allClosed) {
+            LOGGER.error("Specify either one or more repositories with -r or --all-closed.");
+            return CommandLine.ExitCode.USAGE;
+        }
         try {
-            StagingRepository repository = repositoryService.find(repositoryId);
-            Set<Release> releases = repositoryService.getReleases(repository);
-            String releaseName = releases.stream().map(Release::getName).collect(Collectors.joining(", "));
-            String releaseFullName = releases.stream().map(Release::getFullName).collect(Collectors.joining(", "));
-            Set<String> bindingVoters = new LinkedHashSet<>();
-            Set<String> nonBindingVoters = new LinkedHashSet<>();
-            Collator collator = Collator.getInstance(Locale.US);
-            collator.setDecomposition(Collator.NO_DECOMPOSITION);
-            List<Email> emailThread = voteThreadFinder.findVoteThread(releaseName);
-            if (emailThread.isEmpty()) {
-                LOGGER.error("Could not find a corresponding email voting thread for release \"{}\".", releaseName);
+            List<StagingRepository> repositories = new ArrayList<>();
+            if (allClosed) {
+                repositories.addAll(repositoryService.listClosed());
             } else {
-                emailThread.stream().skip(1).filter(this::isPositiveVote).forEachOrdered(email -> {
-                    String from = email.getFrom().getAddress();
-                    String name = email.getFrom().getPersonal();
-                    Member m = membersFinder.findByNameOrEmail(name, from);
-                    if (m != null) {
-                        if (m.isPMCMember()) {
-                            bindingVoters.add(m.getName());
-                        } else {
-                            nonBindingVoters.add(m.getName());
-                        }
-                    } else {
-                        nonBindingVoters.add(name);
-                    }
-                });
-                Member currentMember = membersFinder.getCurrentMember();
-                String email = EMAIL_TEMPLATE
-                        .replace(
-                                "##FROM##",
-                                new InternetAddress(currentMember.getEmail(), currentMember.getName())
-                                        .toUnicodeString())
-                        .replace("##DATE##", dateProvider.getCurrentDateForEmailHeader())
-                        .replace("##RELEASE_NAME##", releaseFullName)
-                        .replace("##BINDING_VOTERS##", String.join(", ", bindingVoters))
-                        .replace("##CLOSING_ACTION##", closingAction(releaseFullName, currentMember.isPMCMember()))
-                        .replace(
-                                "##USER_NAME##",
-                                membersFinder.getCurrentMember().getName());
-                if (nonBindingVoters.isEmpty()) {
-                    email = email.replace("##NON_BINDING_VOTERS##", "none");
-                } else {
-                    email = email.replace("##NON_BINDING_VOTERS##", String.join(", ", nonBindingVoters));
+                for (Integer repositoryId : repositoryIds) {
+                    repositories.add(repositoryService.find(repositoryId));
                 }
+            }
+            if (repositories.isEmpty()) {
+                LOGGER.info("No closed staging repositories found.");
+                return CommandLine.ExitCode.OK;
+            }
+            // start all the mailing list searches before doing anything else; each one fetches and parses every
+            // message of its thread, so running them side by side is what keeps a batch tally fast
+            Map<StagingRepository, Set<Release>> releasesByRepository = new LinkedHashMap<>();
+            Map<StagingRepository, Promise<List<Email>>> threads = new LinkedHashMap<>();
+            for (StagingRepository repository : repositories) {
+                Set<Release> releases = repositoryService.getReleases(repository);
+                String releaseName = releases.stream().map(Release::getName).collect(Collectors.joining(", "));
+                releasesByRepository.put(repository, releases);
+                threads.put(repository, promiseFactory.submit(() -> voteThreadFinder.findVoteThread(releaseName)));
+            }
+            // load the member directory once, while the searches are running
+            membersFinder.findMembers();
+            Member currentMember = membersFinder.getCurrentMember();
 
-                if (bindingVoters.size() >= 3) {
-                    switch (reusableCLIOptions.executionMode) {
-                        case DRY_RUN:
-                            LOGGER.info(
-                                    "The following email would be sent from your @apache.org address (see the \"From:\" header):\n");
-                            LOGGER.info(email);
-                            break;
-                        case INTERACTIVE:
-                            String question =
-                                    "Should the following email be sent from your @apache.org address (see the"
-                                            + " \"From:\" header)?\n\n" + email;
-                            InputOption answer = UserInput.yesNo(question, InputOption.YES);
-                            if (InputOption.YES.equals(answer)) {
-                                LOGGER.info("Sending email...");
-                                mailer.send(email);
-                                LOGGER.info("Done!");
-                            } else if (InputOption.NO.equals(answer)) {
-                                LOGGER.info("Aborted.");
-                            }
-                            break;
-                        case AUTO:
-                            LOGGER.info(email);
-                            LOGGER.info("Sending email...");
-                            mailer.send(email);
-                            LOGGER.info("Done!");
-                            break;
-                    }
+            List<Tally> tallies = new ArrayList<>();
+            for (Map.Entry<StagingRepository, Promise<List<Email>>> entry : threads.entrySet()) {
+                Set<Release> releases = releasesByRepository.get(entry.getKey());
+                String releaseName = releases.stream().map(Release::getName).collect(Collectors.joining(", "));
+                String releaseFullName =
+                        releases.stream().map(Release::getFullName).collect(Collectors.joining(", "));
+                Throwable failure = entry.getValue().getFailure();
+                if (failure != null) {
+                    LOGGER.error("Unable to search the email voting thread for release \"{}\".", releaseName, failure);
+                    tallies.add(new Tally(entry.getKey(), releaseFullName, null, null, true));
+                    continue;
+                }
+                List<Email> emailThread = entry.getValue().getValue();
+                if (emailThread.isEmpty()) {
+                    LOGGER.error("Could not find a corresponding email voting thread for release \"{}\".", releaseName);
+                    tallies.add(new Tally(entry.getKey(), releaseFullName, null, null, false));
                 } else {
-                    LOGGER.info("Release {} does not have at least 3 binding votes.", releaseFullName);
-                    LOGGER.info(
-                            "Binding votes: {}.", bindingVoters.isEmpty() ? "none" : String.join(", ", bindingVoters));
-                    LOGGER.info(
-                            "Non-binding votes: {}.",
-                            nonBindingVoters.isEmpty() ? "none" : String.join(", ", bindingVoters));
-                    return CommandLine.ExitCode.USAGE;
+                    tallies.add(tally(entry.getKey(), releaseFullName, emailThread));
                 }
             }
+            if (tallies.size() > 1) {
+                logSummary(tallies);
+            }
 
-        } catch (IOException e) {
+            int exitCode = CommandLine.ExitCode.OK;
+            for (Tally tally : tallies) {
+                if (tally.failed()) {
+                    exitCode = CommandLine.ExitCode.SOFTWARE;
+                } else if (tally.bindingVoters() == null) {
+                    continue;
+                } else if (tally.passed()) {
+                    sendResult(resultEmail(tally, currentMember));
+                } else {
+                    LOGGER.info("Release {} does not have at least 3 binding votes.", tally.releaseFullName());
+                    LOGGER.info("Binding votes: {}.", joinOrNone(tally.bindingVoters()));
+                    LOGGER.info("Non-binding votes: {}.", joinOrNone(tally.nonBindingVoters()));
+                    if (exitCode == CommandLine.ExitCode.OK) {
+                        exitCode = CommandLine.ExitCode.USAGE;
+                    }
+                }
+            }
+            return exitCode;
+        } catch (IOException | InvocationTargetException e) {
             LOGGER.warn("Command execution failed", e);
             return CommandLine.ExitCode.SOFTWARE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Command execution interrupted", e);
+            return CommandLine.ExitCode.SOFTWARE;
+        }
+    }
+
+    private Tally tally(StagingRepository repository, String releaseFullName, List<Email> emailThread) {
+        Set<String> bindingVoters = new LinkedHashSet<>();
+        Set<String> nonBindingVoters = new LinkedHashSet<>();
+        emailThread.stream().skip(1).filter(this::isPositiveVote).forEachOrdered(email -> {
+            String from = email.getFrom().getAddress();
+            String name = email.getFrom().getPersonal();
+            Member m = membersFinder.findByNameOrEmail(name, from);
+            if (m != null) {
+                if (m.isPMCMember()) {
+                    bindingVoters.add(m.getName());
+                } else {
+                    nonBindingVoters.add(m.getName());
+                }
+            } else {
+                nonBindingVoters.add(name);
+            }
+        });
+        return new Tally(repository, releaseFullName, bindingVoters, nonBindingVoters, false);
+    }
+
+    private String resultEmail(Tally tally, Member currentMember) throws IOException {
+        return EMAIL_TEMPLATE
+                .replace(
+                        "##FROM##",
+                        new InternetAddress(currentMember.getEmail(), currentMember.getName()).toUnicodeString())
+                .replace("##DATE##", dateProvider.getCurrentDateForEmailHeader())
+                .replace("##RELEASE_NAME##", tally.releaseFullName())
+                .replace("##BINDING_VOTERS##", String.join(", ", tally.bindingVoters()))
+                .replace("##NON_BINDING_VOTERS##", joinOrNone(tally.nonBindingVoters()))
+                .replace("##CLOSING_ACTION##", closingAction(tally.releaseFullName(), currentMember.isPMCMember()))
+                .replace("##USER_NAME##", currentMember.getName());
+    }
+
+    private void sendResult(String email) {
+        switch (reusableCLIOptions.executionMode) {
+            case DRY_RUN:
+                LOGGER.info(
+                        "The following email would be sent from your @apache.org address (see the \"From:\" header):\n");
+                LOGGER.info(email);
+                break;
+            case INTERACTIVE:
+                String question = "Should the following email be sent from your @apache.org address (see the"
+                        + " \"From:\" header)?\n\n" + email;
+                InputOption answer = UserInput.yesNo(question, InputOption.YES);
+                if (InputOption.YES.equals(answer)) {
+                    LOGGER.info("Sending email...");
+                    mailer.send(email);
+                    LOGGER.info("Done!");
+                } else if (InputOption.NO.equals(answer)) {
+                    LOGGER.info("Aborted.");
+                }
+                break;
+            case AUTO:
+                LOGGER.info(email);
+                LOGGER.info("Sending email...");
+                mailer.send(email);
+                LOGGER.info("Done!");
+                break;
+        }
+    }
+
+    private static void logSummary(List<Tally> tallies) {
+        StringBuilder table = new StringBuilder("Vote summary:\n");
+        table.append(String.format(SUMMARY_ROW_FORMAT, "Repository", "Release", "Binding", "Non-binding", "Result"));
+        for (Tally tally : tallies) {
+            table.append(String.format(
+                    SUMMARY_ROW_FORMAT,
+                    tally.repository().getRepositoryId(),
+                    tally.releaseFullName(),
+                    tally.bindingVoters() == null
+                            ? "-"
+                            : String.valueOf(tally.bindingVoters().size()),
+                    tally.nonBindingVoters() == null
+                            ? "-"
+                            : String.valueOf(tally.nonBindingVoters().size()),
+                    tally.result()));
+        }
+        LOGGER.info(table.toString());
+    }
+
+    private static String joinOrNone(Set<String> voters) {
+        return voters.isEmpty() ? "none" : String.join(", ", voters);
+    }
+
+    /**
+     * The outcome of counting the votes cast for the releases staged in one repository. The voter sets are
+     * {@code null} when no voting thread could be found or searched.
+     */
+    record Tally(
+            StagingRepository repository,
+            String releaseFullName,
+            Set<String> bindingVoters,
+            Set<String> nonBindingVoters,
+            boolean failed) {
+
+        boolean passed() {
+            return bindingVoters != null && bindingVoters.size() >= 3;
+        }
+
+        String result() {
+            if (failed) {
+                return "SEARCH FAILED";
+            }
+            if (bindingVoters == null) {
+                return "NO VOTE THREAD";
+            }
+            return passed() ? "PASSED" : "NOT ENOUGH BINDING VOTES";
         }
-        return CommandLine.ExitCode.OK;
     }
 
     /**
@@ -18,15 +18,25 @@
  */
 package org.apache.sling.cli.impl.release;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.sling.cli.impl.Command;
@@ -38,19 +48,16 @@ import org.apache.sling.cli.impl.nexus.Artifact;
 import org.apache.sling.cli.impl.nexus.LocalRepository;
 import org.apache.sling.cli.impl.nexus.RepositoryService;
 import org.apache.sling.cli.impl.nexus.StagingRepository;
+import org.bouncycastle.util.encoders.Hex;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tmatesoft.svn.core.SVNCommitInfo;
-import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNException;
-import org.tmatesoft.svn.core.SVNURL;
-import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
 import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
 import picocli.CommandLine;
 
@@ -62,6 +69,9 @@ import picocli.CommandLine;
  * guide): the artifacts are downloaded from the Nexus staging repository and committed to
  * {@code dist/release/sling}. Unlike the Sling IDE tooling, Maven releases never stage to
  * {@code dist/dev}. Requires PMC membership to commit to dist.apache.org.
+ *
+ * <p>Several staging repositories can be published at once: they are planned against a single listing of
+ * {@code dist/release/sling} and committed together as one revision.
  */
 @Component(
         service = Command.class,
@@ -81,6 +91,11 @@ public class UpdateDistCommand implements Command {
 
     static final String DIST_RELEASE_URL = "https://dist.apache.org/repos/dist/release/sling/";
 
+    // prepared deltas are held in memory until the commit, so they may only take a small share of the heap;
+    // larger batches stream their remaining files
+    private static final long PREPARED_DELTAS_BUDGET_BYTES =
+            Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+
     static {
         // register the http(s):// DAV repository factory used by all SVNKit operations below
         DAVRepositoryFactory.setup();
@@ -90,17 +105,26 @@ public class UpdateDistCommand implements Command {
 
     @CommandLine.Option(
             names = {"-r", "--repository"},
-            description = "Nexus staging repository id",
-            required = true)
-    private Integer repositoryId;
+            description = "Nexus staging repository id; may be repeated or given as a comma-separated list to publish"
+                    + " several releases in a single dist/release revision",
+            required = true,
+            split = ",")
+    private List<Integer> repositoryIds;
 
     @CommandLine.Option(
             names = {"--previous-version"},
             description = "Previous release version to remove from dist/release (e.g. 1.0.0)."
                     + " Optional: if omitted, the closest older version with the same major version currently in"
-                    + " dist/release is removed; other major version streams are left untouched.")
+                    + " dist/release is removed; other major version streams are left untouched."
+                    + " Only supported when publishing a single release.")
     private String previousVersion;
 
+    @CommandLine.Option(
+            names = {"--stream"},
+            description = "Stream the staged files from Nexus straight to dist/release, verifying their checksums on"
+                    + " the fly, instead of downloading them first")
+    private boolean stream;
+
     @CommandLine.Mixin
     private ReusableCLIOptions reusableCLIOptions;
 
@@ -112,61 +136,85 @@ public class UpdateDistCommand implements Command {
 
     @Override
     public Integer call() {
-        try {
-            DistReleasePlan plan =
-                    planDistRelease(repositoryService, repositoryService.find(repositoryId), previousVersion);
-
-            if (plan.alreadyPublished()) {
-                LOGGER.info(
-                        "dist/release already contains {} {}; nothing to do.", plan.artifactId(), plan.newVersion());
-                return CommandLine.ExitCode.OK;
+        if (repositoryIds.size() > 1 && previousVersion != null) {
+            LOGGER.error("--previous-version can only be used when publishing a single staging repository.");
+            return CommandLine.ExitCode.USAGE;
+        }
+        Credentials credentials = credentialsService.getAsfCredentials();
+        // the listing and the commit share one authenticated session, which is closed when the run ends
+        try (SvnSessionPool sessions = new SvnSessionPool()) {
+            // plan all the releases against a single listing of dist/release
+            DistIndex distIndex = loadDistIndex(DIST_RELEASE_URL, credentials, sessions);
+            List<DistReleasePlan> plans = new ArrayList<>();
+            List<StagingRepository> repositories = new ArrayList<>();
+            for (Integer repositoryId : repositoryIds) {
+                StagingRepository repository = repositoryService.find(repositoryId);
+                DistReleasePlan plan = stream
+                        ? planStreamedDistRelease(repositoryService, repository, previousVersion, distIndex)
+                        : planDistRelease(repositoryService, repository, previousVersion, distIndex);
+                if (plan.alreadyPublished()) {
+                    LOGGER.info(
+                            "dist/release already contains {} {}; nothing to do.",
+                            plan.artifactId(),
+                            plan.newVersion());
+                    continue;
+                }
+                if (plan.newFiles().isEmpty() && plan.stagedArtifacts().isEmpty()) {
+                    LOGGER.warn("No artifacts were downloaded for staging repository {}.", repositoryId);
+                    return CommandLine.ExitCode.USAGE;
+                }
+                plans.add(plan);
+                repositories.add(repository);
             }
-            if (plan.newFiles().isEmpty()) {
-                LOGGER.warn("No artifacts were downloaded for staging repository {}.", repositoryId);
-                return CommandLine.ExitCode.USAGE;
+            if (plans.isEmpty()) {
+                return CommandLine.ExitCode.OK;
             }
 
             switch (reusableCLIOptions.executionMode) {
                 case DRY_RUN:
-                    LOGGER.info(
-                            "Would publish {} file(s) to dist/release for {} {}:",
-                            plan.newFiles().size(),
-                            plan.artifactId(),
-                            plan.newVersion());
-                    plan.newFiles().forEach(f -> LOGGER.info("  put {} -> {}{}", f, DIST_RELEASE_URL, f.getFileName()));
-                    if (!plan.oldFiles().isEmpty()) {
-                        LOGGER.info(
-                                "Would remove {} old file(s) from dist/release:",
-                                plan.oldFiles().size());
-                        plan.oldFiles().forEach(f -> LOGGER.info("  rm {}", DIST_RELEASE_URL + f));
+                    for (DistReleasePlan plan : plans) {
+                        if (stream) {
+                            LOGGER.info(
+                                    "Would stream {} staged artifact(s) with their signature and checksum files to"
+                                            + " dist/release for {} {}:",
+                                    plan.stagedArtifacts().size(),
+                                    plan.artifactId(),
+                                    plan.newVersion());
+                            plan.stagedArtifacts()
+                                    .forEach(a ->
+                                            LOGGER.info("  put {} -> {}{}", a.getUri(), DIST_RELEASE_URL, fileName(a)));
+                        } else {
+                            LOGGER.info(
+                                    "Would publish {} file(s) to dist/release for {} {}:",
+                                    plan.newFiles().size(),
+                                    plan.artifactId(),
+                                    plan.newVersion());
+                            plan.newFiles()
+                                    .forEach(
+                                            f -> LOGGER.info("  put {} -> {}{}", f, DIST_RELEASE_URL, f.getFileName()));
+                        }
+                        if (!plan.oldFiles().isEmpty()) {
+                            LOGGER.info(
+                                    "Would remove {} old file(s) from dist/release:",
+                                    plan.oldFiles().size());
+                            plan.oldFiles().forEach(f -> LOGGER.info("  rm {}", DIST_RELEASE_URL + f));
+                        }
                     }
                     break;
                 case INTERACTIVE:
                     String question = String.format(
-                            "Publish %d file(s) for %s %s to dist/release and remove %d older file(s) for %s?",
-                            plan.newFiles().size(),
-                            plan.artifactId(),
-                            plan.newVersion(),
-                            plan.oldFiles().size(),
-                            plan.artifactId());
+                            "Publish %s for %s to dist/release and remove %d older file(s)?",
+                            describeFiles(plans),
+                            describe(plans),
+                            plans.stream().mapToInt(p -> p.oldFiles().size()).sum());
                     if (InputOption.YES.equals(UserInput.yesNo(question, InputOption.YES))) {
-                        publishToDistRelease(
-                                plan.artifactId(),
-                                plan.newVersion(),
-                                plan.newFiles(),
-                                plan.oldFiles(),
-                                credentialsService.getAsfCredentials());
+                        publish(plans, repositories, credentials, sessions);
                     } else {
                         LOGGER.info("Aborted.");
                     }
                     break;
                 case AUTO:
-                    publishToDistRelease(
-                            plan.artifactId(),
-                            plan.newVersion(),
-                            plan.newFiles(),
-                            plan.oldFiles(),
-                            credentialsService.getAsfCredentials());
+                    publish(plans, repositories, credentials, sessions);
                     break;
             }
         } catch (IOException e) {
@@ -176,21 +224,62 @@ public class UpdateDistCommand implements Command {
         return CommandLine.ExitCode.OK;
     }
 
-    /** What to publish to and remove from dist/release for one staged release. */
+    private void publish(
+            List<DistReleasePlan> plans,
+            List<StagingRepository> repositories,
+            Credentials credentials,
+            SvnSessionPool sessions)
+            throws IOException {
+        if (stream) {
+            streamToDistRelease(plans, repositoryService, credentials, DIST_RELEASE_URL, sessions);
+        } else {
+            publishToDistRelease(plans, credentials, DIST_RELEASE_URL, sessions);
+        }
+        repositories.forEach(repositoryService::discardDownload);
+    }
+
+    private String describeFiles(List<DistReleasePlan> plans) {
+        if (stream) {
+            return plans.stream().mapToInt(p -> p.stagedArtifacts().size()).sum() + " staged artifact(s)";
+        }
+        return plans.stream().mapToInt(p -> p.newFiles().size()).sum() + " file(s)";
+    }
+
+    /**
+     * What to publish to and remove from dist/release for one staged release. The files to publish are either
+     * {@code newFiles}, downloaded from the staging repository, or the {@code stagedArtifacts} to stream from it
+     * together with their signature and checksum files.
+     */
     record DistReleasePlan(
             String artifactId,
             String newVersion,
             List<Path> newFiles,
+            List<Artifact> stagedArtifacts,
             List<String> oldFiles,
-            boolean alreadyPublished) {}
+            boolean alreadyPublished) {
+
+        DistReleasePlan(
+                String artifactId,
+                String newVersion,
+                List<Path> newFiles,
+                List<String> oldFiles,
+                boolean alreadyPublished) {
+            this(artifactId, newVersion, newFiles, List.of(), oldFiles, alreadyPublished);
+        }
+    }
 
     /**
      * Downloads the staged artifacts and works out what to publish to and remove from {@code dist/release}.
-     * Shared by this command and {@link FinalizeCommand} so the flow is not duplicated. When the version is
-     * already present in {@code dist/release} the returned plan is marked {@link DistReleasePlan#alreadyPublished()}.
+     * Shared by this command and {@link FinalizeCommand} so the flow is not duplicated. All the {@code dist/release}
+     * queries are answered from {@code distIndex}, so that several releases can be planned against a single listing.
+     * When the version is already present in {@code dist/release} the returned plan is marked
+     * {@link DistReleasePlan#alreadyPublished()}.
      */
     static DistReleasePlan planDistRelease(
-            RepositoryService repositoryService, StagingRepository repository, String previousVersion)
+            RepositoryService repositoryService,
+            StagingRepository repository,
+            String previousVersion,
+            DistIndex distIndex)
             throws IOException {
         LocalRepository localRepository = repositoryService.download(repository);
         Artifact primary = localRepository.getArtifacts().stream()
@@ -199,14 +288,41 @@ public class UpdateDistCommand implements Command {
                 .orElseThrow(() -> new IllegalStateException("No POM artifact found in staging repository"));
         String artifactId = primary.getArtifactId();
         String newVersion = primary.getVersion();
-        if (isVersionPublished(artifactId, newVersion)) {
+        if (isVersionPublished(distIndex, artifactId, newVersion)) {
             return new DistReleasePlan(artifactId, newVersion, List.of(), List.of(), true);
         }
         List<Path> newFiles = collectDownloadedFiles(localRepository.getRootFolder());
-        List<String> oldFiles = listPreviousReleaseFiles(artifactId, newVersion, previousVersion);
+        List<String> oldFiles = listPreviousReleaseFiles(distIndex, artifactId, newVersion, previousVersion);
         return new DistReleasePlan(artifactId, newVersion, newFiles, oldFiles, false);
     }
 
+    /**
+     * Works out what to stream to and remove from {@code dist/release} for a staged release without downloading
+     * anything: the plan lists the staged artifacts, which {@link #streamToDistRelease(List, RepositoryService,
+     * Credentials, String, SvnSessionPool)} fetches while committing.
+     */
+    static DistReleasePlan planStreamedDistRelease(
+            RepositoryService repositoryService,
+            StagingRepository repository,
+            String previousVersion,
+            DistIndex distIndex)
+            throws IOException {
+        List<Artifact> artifacts = repositoryService.getArtifacts(repository).stream()
+                .sorted(Comparator.comparing(Artifact::getRepositoryRelativePath))
+                .toList();
+        Artifact primary = artifacts.stream()
+                .filter(a -> "pom".equals(a.getType()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No POM artifact found in staging repository"));
+        String artifactId = primary.getArtifactId();
+        String newVersion = primary.getVersion();
+        if (isVersionPublished(distIndex, artifactId, newVersion)) {
+            return new DistReleasePlan(artifactId, newVersion, List.of(), List.of(), true);
+        }
+        List<String> oldFiles = listPreviousReleaseFiles(distIndex, artifactId, newVersion, previousVersion);
+        return new DistReleasePlan(artifactId, newVersion, List.of(), artifacts, oldFiles, false);
+    }
+
     /**
      * Collects every regular file downloaded from the staging repository (each artifact together with
      * its {@code .asc} signature and checksum sidecars), which is the exact set to publish to the flat
@@ -219,42 +335,201 @@ public class UpdateDistCommand implements Command {
     }
 
     /**
-     * Commits {@code newFiles} into {@code dist/release/sling} and removes {@code oldFiles} from it in a
-     * single atomic revision, using SVNKit over https. Files are published flat, keyed by their file
-     * name (the {@code dist/release/sling} directory holds no sub-directories).
+     * Commits the new files of {@code plans} into {@code dist/release/sling} and removes their old files from it. All
+     * the files are added and removed through one commit editor, so the whole batch becomes a single atomic revision
+     * made over the session {@code sessions} holds for {@code releaseBaseUrl}. Files are published flat, keyed by
+     * their file name (the {@code dist/release/sling} directory holds no sub-directories).
      */
     static void publishToDistRelease(
-            String artifactId, String newVersion, List<Path> newFiles, List<String> oldFiles, Credentials credentials)
+            List<DistReleasePlan> plans, Credentials credentials, String releaseBaseUrl, SvnSessionPool sessions)
             throws IOException {
-        publishToDistRelease(artifactId, newVersion, newFiles, oldFiles, credentials, DIST_RELEASE_URL);
+        Logger logger = LoggerFactory.getLogger(UpdateDistCommand.class);
+        Map<String, Path> newFiles = new LinkedHashMap<>();
+        Set<String> oldFiles = new LinkedHashSet<>();
+        for (DistReleasePlan plan : plans) {
+            for (Path file : plan.newFiles()) {
+                Path previous = newFiles.putIfAbsent(file.getFileName().toString(), file);
+                if (previous != null) {
+                    throw new IOException("Both " + previous + " and " + file + " would be published as "
+                            + file.getFileName() + " in dist/release");
+                }
+            }
+            oldFiles.addAll(plan.oldFiles());
+        }
+        // compute the deltas before the commit transaction is opened, so that the commit only streams them
+        Map<Path, PreparedDelta> preparedDeltas =
+                PreparedDelta.prepare(List.copyOf(newFiles.values()), PREPARED_DELTAS_BUDGET_BYTES);
+        try {
+            SVNRepository repository = sessions.get(releaseBaseUrl, credentials);
+            ISVNEditor editor = repository.getCommitEditor("Release " + describe(plans), null);
+            commitFiles(editor, List.copyOf(newFiles.values()), preparedDeltas, List.copyOf(oldFiles), logger);
+        } catch (SVNException e) {
+            throw new IOException("Failed to update dist.apache.org", e);
+        }
     }
 
-    static void publishToDistRelease(
-            String artifactId,
-            String newVersion,
-            List<Path> newFiles,
-            List<String> oldFiles,
+    /**
+     * Streams the staged artifacts of {@code plans} from Nexus straight into a single dist/release commit and removes
+     * the superseded files in the same revision. No local copy is made: the small signature and checksum files of
+     * each artifact are fetched first, then the artifact itself is piped into the commit editor while its SHA-1, MD5
+     * and, when staged, SHA-512 digests are computed. A digest that does not match the staged checksum aborts the
+     * whole commit, so nothing unverified is ever published.
+     */
+    static void streamToDistRelease(
+            List<DistReleasePlan> plans,
+            RepositoryService repositoryService,
             Credentials credentials,
-            String releaseBaseUrl)
+            String releaseBaseUrl,
+            SvnSessionPool sessions)
             throws IOException {
         Logger logger = LoggerFactory.getLogger(UpdateDistCommand.class);
+        Map<String, Artifact> artifacts = new LinkedHashMap<>();
+        Set<String> oldFiles = new LinkedHashSet<>();
+        for (DistReleasePlan plan : plans) {
+            for (Artifact artifact : plan.stagedArtifacts()) {
+                Artifact previous = artifacts.putIfAbsent(fileName(artifact), artifact);
+                if (previous != null) {
+                    throw new IOException("Both " + previous.getUri() + " and " + artifact.getUri()
+                            + " would be published as " + fileName(artifact) + " in dist/release");
+                }
+            }
+            oldFiles.addAll(plan.oldFiles());
+        }
         try {
-            SVNRepository repository =
-                    SVNRepositoryFactory.create(SVNURL.parseURIEncoded(stripTrailingSlash(releaseBaseUrl)));
-            repository.setAuthenticationManager(
-                    new BasicAuthenticationManager(credentials.getUsername(), credentials.getPassword()));
-            ISVNEditor editor = repository.getCommitEditor("Release " + artifactId + " " + newVersion, null);
-            commitFiles(editor, newFiles, oldFiles, logger);
+            SVNRepository repository = sessions.get(releaseBaseUrl, credentials);
+            ISVNEditor editor = repository.getCommitEditor("Release " + describe(plans), null);
+            try {
+                editor.openRoot(-1);
+                logger.info("Streaming {} staged artifact(s) to dist/release...", artifacts.size());
+                for (Artifact artifact : artifacts.values()) {
+                    streamArtifact(editor, repositoryService, artifact);
+                }
+                for (String file : oldFiles) {
+                    editor.deleteEntry(file, -1);
+                }
+                if (!oldFiles.isEmpty()) {
+                    logger.info("Removing {} superseded file(s) from dist/release...", oldFiles.size());
+                }
+                editor.closeDir();
+                SVNCommitInfo info = editor.closeEdit();
+                logger.info("Done. Committed revision {} to dist.apache.org.", info.getNewRevision());
+            } catch (SVNException | IOException e) {
+                editor.abortEdit();
+                throw e;
+            }
         } catch (SVNException e) {
             throw new IOException("Failed to update dist.apache.org", e);
         }
     }
 
+    /**
+     * Adds one staged artifact and its sidecars to the commit, verifying the artifact against the staged checksums
+     * before its file is closed.
+     */
+    private static void streamArtifact(ISVNEditor editor, RepositoryService repositoryService, Artifact artifact)
+            throws SVNException, IOException {
+        StagingRepository repository = artifact.getRepository();
+        Map<String, byte[]> sidecars = new LinkedHashMap<>();
+        for (String sidecar : List.of(
+                artifact.getRepositoryRelativeSignaturePath(),
+                artifact.getRepositoryRelativeSha1SumPath(),
+                artifact.getRepositoryRelativeMd5SumPath(),
+                artifact.getRepositoryRelativeSha512SumPath())) {
+            repositoryService.processRepositoryFile(
+                    repository, sidecar, content -> sidecars.put(sidecar, content.readAllBytes()));
+        }
+        if (!sidecars.containsKey(artifact.getRepositoryRelativeSignaturePath())) {
+            throw new IOException("No .asc signature is staged for " + artifact.getUri()
+                    + ", so it cannot be published to dist/release");
+        }
+        String expectedSha1 = checksumOf(sidecars.get(artifact.getRepositoryRelativeSha1SumPath()));
+        if (expectedSha1 == null) {
+            throw new IOException("No .sha1 checksum is staged for " + artifact.getUri()
+                    + ", so it cannot be verified while streaming it");
+        }
+        String expectedMd5 = checksumOf(sidecars.get(artifact.getRepositoryRelativeMd5SumPath()));
+        String expectedSha512 = checksumOf(sidecars.get(artifact.getRepositoryRelativeSha512SumPath()));
+
+        String path = artifact.getRepositoryRelativePath();
+        String name = fileName(artifact);
+        SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
+        boolean found = repositoryService.processRepositoryFile(repository, path, in -> {
+            MessageDigest sha1 = newDigest("SHA-1");
+            MessageDigest sha512 = newDigest("SHA-512");
+            try (InputStream content = new DigestInputStream(new DigestInputStream(in, sha1), sha512)) {
+                editor.addFile(name, null, -1);
+                editor.applyTextDelta(name, null);
+                String md5 = deltaGenerator.sendDelta(name, content, editor, true);
+                verifyChecksum(name, "SHA-1", expectedSha1, Hex.toHexString(sha1.digest()));
+                verifyChecksum(name, "MD5", expectedMd5, md5);
+                verifyChecksum(name, "SHA-512", expectedSha512, Hex.toHexString(sha512.digest()));
+                editor.closeFile(name, md5);
+            } catch (SVNException e) {
+                throw new IOException("Failed to stream " + name + " to dist/release", e);
+            }
+        });
+        if (!found) {
+            throw new IOException("Staging repository " + repository.getRepositoryId() + " does not have " + path);
+        }
+        for (Map.Entry<String, byte[]> sidecar : sidecars.entrySet()) {
+            String sidecarName = sidecar.getKey().substring(sidecar.getKey().lastIndexOf('/') + 1);
+            editor.addFile(sidecarName, null, -1);
+            editor.applyTextDelta(sidecarName, null);
+            String checksum =
+                    deltaGenerator.sendDelta(sidecarName, new ByteArrayInputStream(sidecar.getValue()), editor, true);
+            editor.closeFile(sidecarName, checksum);
+        }
+    }
+
+    private static void verifyChecksum(String name, String algorithm, String expected, String actual)
+            throws IOException {
+        if (expected != null && !expected.equalsIgnoreCase(actual)) {
+            throw new IOException(String.format(
+                    "%s checksum mismatch for %s: the staging repository has %s, the streamed content %s",
+                    algorithm, name, expected, actual));
+        }
+    }
+
+    /** Reads a checksum sidecar, which holds the hex digest optionally followed by the file name. */
+    private static String checksumOf(byte[] sidecar) {
+        if (sidecar == null) {
+            return null;
+        }
+        String content = new String(sidecar, StandardCharsets.US_ASCII).trim();
+        return content.isEmpty() ? null : content.split("\\s+")[0];
+    }
+
+    private static MessageDigest newDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String fileName(Artifact artifact) {
+        String path = artifact.getRepositoryRelativePath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /** Describes the releases of {@code plans} as {@code artifactId version}, comma-separated. */
+    private static String describe(List<DistReleasePlan> plans) {
+        return plans.stream()
+                .map(plan -> plan.artifactId() + " " + plan.newVersion())
+                .collect(Collectors.joining(", "));
+    }
+
     /**
      * Drives the commit editor to add {@code newFiles} and delete {@code oldFiles} in a single
-     * revision, aborting the edit if anything fails so a partial commit is never left behind.
+     * revision, aborting the edit if anything fails so a partial commit is never left behind. Files with a
+     * prepared delta are streamed from it, the others are read and diffed while the editor is open.
      */
-    private static void commitFiles(ISVNEditor editor, List<Path> newFiles, List<String> oldFiles, Logger logger)
+    private static void commitFiles(
+            ISVNEditor editor,
+            List<Path> newFiles,
+            Map<Path, PreparedDelta> preparedDeltas,
+            List<String> oldFiles,
+            Logger logger)
             throws SVNException, IOException {
         SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
         try {
@@ -263,10 +538,16 @@ public class UpdateDistCommand implements Command {
             for (Path file : newFiles) {
                 String name = file.getFileName().toString();
                 editor.addFile(name, null, -1);
-                editor.applyTextDelta(name, null);
                 String checksum;
-                try (InputStream in = Files.newInputStream(file)) {
-                    checksum = deltaGenerator.sendDelta(name, in, editor, true);
+                PreparedDelta prepared = preparedDeltas.get(file);
+                if (prepared != null) {
+                    prepared.sendTo(editor);
+                    checksum = prepared.getChecksum();
+                } else {
+                    editor.applyTextDelta(name, null);
+                    try (InputStream in = Files.newInputStream(file)) {
+                        checksum = deltaGenerator.sendDelta(name, in, editor, true);
+                    }
                 }
                 editor.closeFile(name, checksum);
             }
@@ -297,12 +578,12 @@ public class UpdateDistCommand implements Command {
      * keeps {@code 2.1.0}, and publishing {@code 2.1.2} leaves {@code 1.2.14} alone) and never removes
      * a newer version.
      */
-    static List<String> listPreviousReleaseFiles(String artifactId, String newVersion, String explicitPreviousVersion)
-            throws IOException {
+    static List<String> listPreviousReleaseFiles(
+            DistIndex distIndex, String artifactId, String newVersion, String explicitPreviousVersion) {
         if (explicitPreviousVersion != null && !explicitPreviousVersion.isBlank()) {
-            return listDistFiles(DIST_RELEASE_URL, artifactId + "-" + explicitPreviousVersion);
+            return distIndex.list(artifactId + "-" + explicitPreviousVersion);
         }
-        List<String> artifactFiles = listDistFiles(DIST_RELEASE_URL, artifactId + "-").stream()
+        List<String> artifactFiles = distIndex.list(artifactId + "-").stream()
                 // keep only versioned files for this exact artifact (a numeric version component
                 // right after the prefix excludes sibling artifacts such as artifactId-extra-...)
                 .filter(f -> isVersionedArtifactFile(f, artifactId))
@@ -364,8 +645,8 @@ public class UpdateDistCommand implements Command {
      * {@code artifactId} and {@code version}. Used to make publishing idempotent so finalize can be
      * safely re-run.
      */
-    static boolean isVersionPublished(String artifactId, String version) throws IOException {
-        return listDistFiles(DIST_RELEASE_URL, artifactId + "-" + version).stream()
+    static boolean isVersionPublished(DistIndex distIndex, String artifactId, String version) {
+        return distIndex.list(artifactId + "-" + version).stream()
                 .anyMatch(f -> belongsToVersion(f, artifactId, version));
     }
 
@@ -390,24 +671,15 @@ public class UpdateDistCommand implements Command {
         return next == '.' || next == '-';
     }
 
-    static List<String> listDistFiles(String baseUrl, String prefix) throws IOException {
-        List<String> files = new ArrayList<>();
+    /** Lists {@code baseUrl} once; all the planning queries of a run are answered from the returned snapshot. */
+    static DistIndex loadDistIndex(String baseUrl, Credentials credentials, SvnSessionPool sessions)
+            throws IOException {
         try {
-            SVNRepository repository = SVNRepositoryFactory.create(SVNURL.parseURIEncoded(baseUrl));
-            long revision = repository.getLatestRevision();
-            Collection<SVNDirEntry> entries = new ArrayList<>();
-            repository.getDir("", revision, null, entries);
-            entries.stream()
-                    .map(SVNDirEntry::getName)
-                    .filter(name -> name.startsWith(prefix))
-                    .forEach(files::add);
+            DistIndex distIndex = DistIndex.load(sessions.get(baseUrl, credentials));
+            LOGGER.debug("Listed {} at revision {}.", baseUrl, distIndex.getRevision());
+            return distIndex;
         } catch (SVNException e) {
             throw new IOException("Failed to list " + baseUrl, e);
         }
-        return files;
-    }
-
-    private static String stripTrailingSlash(String url) {
-        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
     }
 }
@@ -19,21 +19,28 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.sling.cli.impl.Command;
 import org.apache.sling.cli.impl.ci.CIStatusValidator;
 import org.apache.sling.cli.impl.nexus.Artifact;
 import org.apache.sling.cli.impl.nexus.LocalRepository;
 import org.apache.sling.cli.impl.nexus.RepositoryService;
+import org.apache.sling.cli.impl.nexus.StagingRepository;
 import org.apache.sling.cli.impl.pgp.HashValidator;
 import org.apache.sling.cli.impl.pgp.PGPSignatureValidator;
 import org.bouncycastle.openpgp.PGPPublicKey;
 import org.bouncycastle.util.encoders.Hex;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -73,23 +80,46 @@ public class VerifyReleasesCommand implements Command {
             required = true)
     private Integer repositoryId;
 
+    @CommandLine.Option(
+            names = {"--allow-deferred"},
+            description = "Exit successfully when all executed checks pass but some had to be deferred, e.g. because"
+                    + " the GitHub API rate limit is exhausted")
+    private boolean allowDeferred;
+
     @CommandLine.Mixin
     private ReusableCLIOptions reusableCLIOptions;
 
+    private final PromiseFactory promiseFactory = new PromiseFactory(null, null);
+
     @Override
     public Integer call() {
         int checksRun = 0;
         int failedChecks = 0;
+        int deferredChecks = 0;
+        StagingRepository stagingRepository;
         try {
-            LocalRepository repository = repositoryService.download(repositoryService.find(repositoryId));
-            Path repositoryRootPath = repository.getRootFolder();
-            Artifact pom = null;
-            Path pomPath = null;
-            for (Artifact artifact : repository.getArtifacts()) {
+            stagingRepository = repositoryService.find(repositoryId);
+            // the CI status checks only need the POMs, which are downloaded first, so they start as soon as each POM
+            // is in and run alongside the remaining downloads instead of adding the GitHub round-trips at the end; the
+            // modules of a reactor share their CI status, which is therefore queried once per endpoint
+            Map<Artifact, Promise<CIStatusValidator.ValidationResult>> ciStatuses = new ConcurrentHashMap<>();
+            Map<String, Promise<CIStatusValidator.ValidationResult>> ciStatusesByEndpoint = new ConcurrentHashMap<>();
+            LocalRepository repository = repositoryService.download(stagingRepository, (artifact, file) -> {
                 if ("pom".equals(artifact.getType())) {
-                    pom = artifact;
-                    pomPath = repositoryRootPath.resolve(artifact.getRepositoryRelativePath());
+                    ciStatuses.put(
+                            artifact,
+                            promiseFactory
+                                    .submit(() -> ciStatusValidator.getCIStatusEndpoint(file))
+                                    .flatMap(endpoint -> endpoint == null
+                                            ? promiseFactory.resolved(null)
+                                            : ciStatusesByEndpoint.computeIfAbsent(
+                                                    endpoint,
+                                                    key -> promiseFactory.submit(
+                                                            () -> ciStatusValidator.isValid(file)))));
                 }
+            });
+            Path repositoryRootPath = repository.getRootFolder();
+            for (Artifact artifact : repository.getArtifacts()) {
                 Path artifactFilePath = repositoryRootPath.resolve(artifact.getRepositoryRelativePath());
                 Path artifactSignaturePath = repositoryRootPath.resolve(artifact.getRepositoryRelativeSignaturePath());
                 PGPSignatureValidator.ValidationResult validationResult =
@@ -140,11 +170,38 @@ public class VerifyReleasesCommand implements Command {
                                         "INVALID (expected %s, got %s)",
                                         md5validationResult.getExpectedHash(), md5validationResult.getActualHash()));
             }
-            if (pom != null && pomPath != null) {
-                if (ciStatusValidator.shouldCheck(pom, pomPath)) {
-                    CIStatusValidator.ValidationResult ciValidationResult = ciStatusValidator.isValid(pomPath);
+            for (Artifact artifact : repository.getArtifacts()) {
+                Promise<CIStatusValidator.ValidationResult> ciStatus = ciStatuses.get(artifact);
+                if (ciStatus == null) {
+                    continue;
+                }
+                String pomName = Paths.get(artifact.getRepositoryRelativePath())
+                        .getFileName()
+                        .toString();
+                CIStatusValidator.ValidationResult ciValidationResult;
+                try {
+                    ciValidationResult = awaitCIStatus(ciStatus);
+                } catch (InvocationTargetException e) {
+                    // a failed lookup only invalidates the release of this POM; the other checks still report
+                    LOGGER.info(
+                            "\nCI Status ({}): INVALID: \nUnable to check the CI status: {}",
+                            pomName,
+                            e.getCause().toString());
+                    checksRun++;
+                    failedChecks++;
+                    continue;
+                }
+                if (ciValidationResult == null) {
+                    continue;
+                }
+                if (ciValidationResult.isDeferred()) {
+                    // not a failure: GitHub's rate limit is exhausted, so the check has to be repeated later
+                    LOGGER.warn("\nCI Status ({}): DEFERRED: {}", pomName, ciValidationResult.getMessage());
+                    deferredChecks++;
+                } else {
                     LOGGER.info(
-                            "\nCI Status: {}",
+                            "\nCI Status ({}): {}",
+                            pomName,
                             ciValidationResult.isValid()
                                     ? String.format("VALID: %n%s", ciValidationResult.getMessage())
                                     : String.format("INVALID: %n%s", ciValidationResult.getMessage()));
@@ -160,13 +217,34 @@ public class VerifyReleasesCommand implements Command {
             return CommandLine.ExitCode.SOFTWARE;
         }
         LOGGER.info("\n\nRelease Summary: {}\n\n");
-        if (failedChecks == 0) {
-            LOGGER.info(String.format("VALID (%d checks executed)", checksRun));
-            return CommandLine.ExitCode.OK;
-        } else {
+        if (failedChecks > 0) {
             LOGGER.info(String.format("INVALID (%d of %d checks failed)", failedChecks, checksRun));
             return CommandLine.ExitCode.USAGE;
         }
+        if (deferredChecks > 0) {
+            // the release is not verified until the deferred checks ran, so only an explicit opt-in makes this a pass
+            LOGGER.info(String.format(
+                    "DEFERRED (%d checks executed, %d deferred; run verify again later to complete them)",
+                    checksRun, deferredChecks));
+            if (!allowDeferred) {
+                return CommandLine.ExitCode.USAGE;
+            }
+        } else {
+            LOGGER.info(String.format("VALID (%d checks executed)", checksRun));
+        }
+        // the files of a release that passed are not needed anymore; those of a failed one are kept for the next run
+        repositoryService.discardDownload(stagingRepository);
+        return CommandLine.ExitCode.OK;
+    }
+
+    private static CIStatusValidator.ValidationResult awaitCIStatus(
+            Promise<CIStatusValidator.ValidationResult> ciStatus) throws InvocationTargetException, IOException {
+        try {
+            return ciStatus.getValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking the CI status", e);
+        }
     }
 
     private String getKeyUserId(PGPPublicKey key) {
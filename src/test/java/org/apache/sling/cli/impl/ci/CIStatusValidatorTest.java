@@ -25,27 +25,35 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
 import org.apache.sling.cli.impl.CredentialsService;
 import org.apache.sling.cli.impl.ci.CIStatusValidator.ValidationResult;
 import org.apache.sling.cli.impl.http.HttpClientFactory;
 import org.apache.sling.cli.impl.junit.SystemPropertiesRule;
 import org.apache.sling.cli.impl.nexus.Artifact;
 import org.apache.sling.cli.impl.nexus.StagingRepository;
+import org.apache.sling.cli.impl.pom.PomModelService;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 public class CIStatusValidatorTest {
@@ -70,6 +78,9 @@ public class CIStatusValidatorTest {
     @Rule
     public OsgiContext context = new OsgiContext();
 
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
     private HttpClientFactory clientFactory;
     private CIStatusValidator validator;
     private Map<String, String> urlResourceMap = new HashMap<>();
@@ -88,6 +99,8 @@ public class CIStatusValidatorTest {
                         .thenReturn(CIStatusValidatorTest.class.getResourceAsStream(
                                 urlResourceMap.get(get.getURI().toString())));
                 when(response.getEntity()).thenReturn(entity);
+                when(response.getStatusLine())
+                        .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
             } else {
                 throw new IOException("Failed to call URL: " + get.getURI());
             }
@@ -111,6 +124,9 @@ public class CIStatusValidatorTest {
 
         context.registerInjectActivateService(new CredentialsService());
         context.registerInjectActivateService(clientFactory);
+        context.registerInjectActivateService(new PomModelService());
+        context.registerInjectActivateService(
+                new GitHubClient(), "github.cache.dir", cacheFolder.getRoot().getAbsolutePath());
         validator = context.registerInjectActivateService(new CIStatusValidator());
     }
 
@@ -156,4 +172,16 @@ public class CIStatusValidatorTest {
         assertTrue(valid.isValid());
         assertNotNull(valid.getMessage());
     }
+
+    @Test
+    public void isDeferredWhenRateLimited() throws Exception {
+        CIStatusValidator rateLimited = spy(validator);
+        doThrow(new RateLimitedException("GitHub API rate limit exhausted"))
+                .when(rateLimited)
+                .fetchJson(anyString());
+        ValidationResult deferred = rateLimited.isValid(getResourcePath("/ci/repo-1.0.pom"));
+        assertTrue(deferred.isDeferred());
+        assertFalse(deferred.isValid());
+        assertTrue(deferred.getMessage().contains("GitHub API rate limit exhausted"));
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.ci;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonObject;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.sling.cli.impl.CredentialsService;
+import org.apache.sling.cli.impl.http.HttpClientFactory;
+import org.apache.sling.cli.impl.junit.SystemPropertiesRule;
+import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GitHubClientTest {
+
+    private static final String URL = "https://api.github.com/repos/apache/sling-repo-pom/commits/repo-pom-1.0/status";
+    private static final Map<String, String> SYSTEM_PROPS = new HashMap<>();
+
+    static {
+        SYSTEM_PROPS.put("asf.username", "asf-user");
+        SYSTEM_PROPS.put("asf.password", "asf-password");
+        SYSTEM_PROPS.put("github.token", "gh-token");
+    }
+
+    @Rule
+    public final SystemPropertiesRule sysProps = new SystemPropertiesRule(SYSTEM_PROPS);
+
+    @Rule
+    public final OsgiContext context = new OsgiContext();
+
+    @Rule
+    public final TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private final List<HttpGet> requests = new ArrayList<>();
+    private final List<CloseableHttpResponse> responses = new ArrayList<>();
+    private GitHubClient client;
+
+    @Before
+    public void before() throws Exception {
+        HttpClientFactory clientFactory = mock(HttpClientFactory.class);
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        when(httpClient.execute(any(HttpGet.class))).thenAnswer(inv -> {
+            requests.add(inv.getArgument(0, HttpGet.class));
+            return responses.remove(0);
+        });
+        when(clientFactory.newClient()).thenReturn(httpClient);
+
+        context.registerInjectActivateService(new CredentialsService());
+        context.registerService(HttpClientFactory.class, clientFactory);
+        client = spy(new GitHubClient());
+        doNothing().when(client).pause(anyLong());
+        doReturn(1_000_000L).when(client).currentTimeMillis();
+        context.registerInjectActivateService(
+                client, "github.cache.dir", cacheFolder.getRoot().getAbsolutePath());
+    }
+
+    @Test
+    public void revalidatesCachedResponseWithETag() throws Exception {
+        responses.add(response(HttpStatus.SC_OK, "{\"state\":\"success\"}", "\"abc\"", 60, 59));
+        responses.add(response(HttpStatus.SC_NOT_MODIFIED, null, "\"abc\"", 60, 59));
+
+        assertEquals("success", client.getJson(URL).get("state").getAsString());
+        JsonObject revalidated = client.getJson(URL);
+
+        assertEquals("success", revalidated.get("state").getAsString());
+        assertNull(requests.get(0).getFirstHeader(HttpHeaders.IF_NONE_MATCH));
+        assertEquals(
+                "\"abc\"",
+                requests.get(1).getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue());
+        assertEquals(
+                "Bearer gh-token",
+                requests.get(0).getFirstHeader(HttpHeaders.AUTHORIZATION).getValue());
+    }
+
+    @Test
+    public void reusesOnDiskCacheAcrossInstances() throws Exception {
+        responses.add(response(HttpStatus.SC_OK, "{\"state\":\"success\"}", "\"abc\"", 60, 59));
+        client.getJson(URL);
+
+        GitHubClient other = context.registerInjectActivateService(
+                new GitHubClient(), "github.cache.dir", cacheFolder.getRoot().getAbsolutePath());
+        responses.add(response(HttpStatus.SC_NOT_MODIFIED, null, "\"abc\"", 60, 59));
+
+        assertEquals("success", other.getJson(URL).get("state").getAsString());
+        assertEquals(
+                "\"abc\"",
+                requests.get(1).getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue());
+    }
+
+    @Test
+    public void ignoresCacheEntriesOtherUsersCanWrite() throws Exception {
+        responses.add(response(HttpStatus.SC_OK, "{\"state\":\"success\"}", "\"abc\"", 60, 59));
+        client.getJson(URL);
+        try (Stream<Path> entries = Files.list(cacheFolder.getRoot().toPath())) {
+            for (Path entry : entries.collect(Collectors.toList())) {
+                Files.setPosixFilePermissions(entry, PosixFilePermissions.fromString("rw-rw-rw-"));
+            }
+        }
+
+        GitHubClient other = context.registerInjectActivateService(
+                new GitHubClient(), "github.cache.dir", cacheFolder.getRoot().getAbsolutePath());
+        responses.add(response(HttpStatus.SC_OK, "{\"state\":\"failure\"}", "\"def\"", 60, 58));
+
+        assertEquals("failure", other.getJson(URL).get("state").getAsString());
+        assertNull(requests.get(1).getFirstHeader(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    public void tracksRateLimitHeaders() throws Exception {
+        responses.add(response(HttpStatus.SC_OK, "{}", null, 60, 42));
+        client.getJson(URL);
+        assertEquals(new GitHubClient.RateLimit(60, 42, 1_060L), client.getRateLimit());
+    }
+
+    @Test
+    public void spreadsCallsWhenFewAreLeft() throws Exception {
+        // 2 calls left and the limit resets in 60 seconds: wait half of that before the next call
+        responses.add(response(HttpStatus.SC_OK, "{}", null, 60, 2));
+        responses.add(response(HttpStatus.SC_OK, "{}", null, 60, 1));
+        client.getJson(URL);
+        client.getJson(URL);
+        verify(client).pause(30_000L);
+    }
+
+    @Test
+    public void defersWhenLimitIsExhaustedForTooLong() throws Exception {
+        responses.add(response(HttpStatus.SC_OK, "{}", null, 60, 0, 4_600L));
+        client.getJson(URL);
+        assertThrows(RateLimitedException.class, () -> client.getJson(URL));
+        assertEquals(1, requests.size());
+        verify(client, never()).pause(anyLong());
+    }
+
+    @Test
+    public void waitsWhenLimitResetsSoon() throws Exception {
+        responses.add(response(HttpStatus.SC_OK, "{}", null, 60, 0, 1_010L));
+        responses.add(response(HttpStatus.SC_OK, "{}", null, 60, 59));
+        client.getJson(URL);
+        client.getJson(URL);
+        verify(client).pause(10_000L);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void reportsRejectedCallsAsRateLimited() throws Exception {
+        responses.add(response(HttpStatus.SC_FORBIDDEN, "{}", null, 60, 0, 4_600L));
+        assertThrows(RateLimitedException.class, () -> client.getJson(URL));
+    }
+
+    private static CloseableHttpResponse response(int status, String body, String etag, int limit, int remaining)
+            throws IOException {
+        return response(status, body, etag, limit, remaining, 1_060L);
+    }
+
+    private static CloseableHttpResponse response(
+            int status, String body, String etag, int limit, int remaining, long reset) throws IOException {
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, status, ""));
+        if (body != null) {
+            HttpEntity entity = mock(HttpEntity.class);
+            when(entity.getContent()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+            when(response.getEntity()).thenReturn(entity);
+        }
+        when(response.getFirstHeader(HttpHeaders.ETAG)).thenReturn(header(HttpHeaders.ETAG, etag));
+        when(response.getFirstHeader(GitHubClient.HEADER_RATE_LIMIT))
+                .thenReturn(header(GitHubClient.HEADER_RATE_LIMIT, String.valueOf(limit)));
+        when(response.getFirstHeader(GitHubClient.HEADER_RATE_LIMIT_REMAINING))
+                .thenReturn(header(GitHubClient.HEADER_RATE_LIMIT_REMAINING, String.valueOf(remaining)));
+        when(response.getFirstHeader(GitHubClient.HEADER_RATE_LIMIT_RESET))
+                .thenReturn(header(GitHubClient.HEADER_RATE_LIMIT_RESET, String.valueOf(reset)));
+        return response;
+    }
+
+    private static Header header(String name, String value) {
+        return value == null ? null : new BasicHeader(name, value);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+public class AdaptiveRetryStrategyTest {
+
+    private static final HttpHost NEXUS = new HttpHost("repository.apache.org", 443, "https");
+    private static final HttpHost JIRA = new HttpHost("issues.apache.org", 443, "https");
+
+    private final List<Long> pauses = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    @Test
+    public void retriesIdempotentRequestsWithExponentialBackoff() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 20, 10);
+        HttpClientContext context = context(NEXUS, new HttpGet("/service/local/staging/profile_repositories"));
+
+        assertTrue(strategy.retryRequest(response(503), 1, context));
+        assertTrue(strategy.retryRequest(response(502), 2, context));
+        assertTrue(strategy.retryRequest(response(504), 3, context));
+        assertFalse(strategy.retryRequest(response(503), 4, context));
+
+        // half of the doubling delay is fixed, the other half random (0.5 here)
+        assertEquals(List.of(750L, 1_500L, 3_000L), pauses);
+        assertEquals(0, strategy.getRetryInterval());
+    }
+
+    @Test
+    public void doesNotRetryOtherStatuses() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 20, 10);
+        HttpClientContext context = context(NEXUS, new HttpGet("/"));
+        assertFalse(strategy.retryRequest(response(500), 1, context));
+        assertFalse(strategy.retryRequest(response(404), 1, context));
+        assertTrue(pauses.isEmpty());
+    }
+
+    @Test
+    public void waitsAsLongAsRetryAfterAsks() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 20, 10);
+        HttpResponse response = response(429);
+        response.addHeader(HttpHeaders.RETRY_AFTER, "7");
+
+        assertTrue(strategy.retryRequest(response, 1, context(JIRA, new HttpGet("/rest/api/2/project/SLING"))));
+        assertEquals(List.of(7_000L), pauses);
+    }
+
+    @Test
+    public void doesNotWaitForRetryAfterBeyondTheMaximumDelay() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 20, 10);
+        HttpResponse response = response(503);
+        response.addHeader(HttpHeaders.RETRY_AFTER, "3600");
+
+        assertFalse(strategy.retryRequest(response, 1, context(JIRA, new HttpGet("/"))));
+        assertTrue(pauses.isEmpty());
+    }
+
+    @Test
+    public void retriesPostsOnlyWhenTheServerDidNotActOnThem() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 20, 10);
+        HttpPost post = new HttpPost("/service/local/staging/bulk/promote");
+        post.setEntity(new StringEntity("{}"));
+        HttpClientContext context = context(NEXUS, post);
+
+        assertTrue(strategy.retryRequest(response(503), 1, context));
+        assertTrue(strategy.retryRequest(response(429), 1, context));
+        assertFalse(strategy.retryRequest(response(502), 1, context));
+        assertFalse(strategy.retryRequest(response(504), 1, context));
+    }
+
+    @Test
+    public void leavesExhaustedRateLimitsToTheCaller() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 20, 10);
+        HttpResponse response = response(429);
+        response.addHeader("X-RateLimit-Remaining", "0");
+
+        assertFalse(strategy.retryRequest(response, 1, context(NEXUS, new HttpGet("/"))));
+    }
+
+    @Test
+    public void stopsRetryingOnceTheBudgetOfAHostIsUsedUp() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(3, 2, 10);
+        HttpClientContext nexus = context(NEXUS, new HttpGet("/"));
+
+        assertTrue(strategy.retryRequest(response(503), 1, nexus));
+        assertTrue(strategy.retryRequest(response(503), 1, nexus));
+        assertFalse(strategy.retryRequest(response(503), 1, nexus));
+        // other hosts have their own budget
+        assertTrue(strategy.retryRequest(response(503), 1, context(JIRA, new HttpGet("/"))));
+    }
+
+    @Test
+    public void opensTheCircuitAfterConsecutiveFailures() throws Exception {
+        AdaptiveRetryStrategy strategy = newStrategy(5, 20, 3);
+        HttpGet get = new HttpGet("/");
+        HttpClientContext context = context(NEXUS, get);
+
+        assertTrue(strategy.retryRequest(response(503), 1, context));
+        assertTrue(strategy.retryRequest(response(503), 2, context));
+        assertFalse(strategy.retryRequest(response(503), 3, context));
+
+        assertThrows(AdaptiveRetryStrategy.CircuitOpenException.class, () -> strategy.process(get, context));
+        // other hosts are still called
+        strategy.process(get, context(JIRA, get));
+
+        clock.addAndGet(30_000L);
+        strategy.process(get, context);
+        // the first request after the pause failed again: the circuit opens right away
+        assertFalse(strategy.retryRequest(response(503), 1, context));
+        assertThrows(AdaptiveRetryStrategy.CircuitOpenException.class, () -> strategy.process(get, context));
+
+        clock.addAndGet(30_000L);
+        assertFalse(strategy.retryRequest(response(200), 1, context));
+        assertTrue(strategy.retryRequest(response(503), 1, context));
+    }
+
+    private AdaptiveRetryStrategy newStrategy(int maxRetries, int budget, int circuitThreshold)
+            throws InterruptedException {
+        AdaptiveRetryStrategy strategy = spy(new AdaptiveRetryStrategy(
+                new AdaptiveRetryStrategy.Settings(maxRetries, 1_000L, 60_000L, budget, circuitThreshold, 30_000L)));
+        doAnswer(invocation -> {
+                    pauses.add(invocation.getArgument(0));
+                    return null;
+                })
+                .when(strategy)
+                .pause(anyLong());
+        doAnswer(invocation -> clock.get()).when(strategy).currentTimeMillis();
+        doReturn(0.5).when(strategy).random();
+        return strategy;
+    }
+
+    private static HttpClientContext context(HttpHost target, HttpRequest request) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setTargetHost(target);
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        return context;
+    }
+
+    private static HttpResponse response(int status) {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+    }
+}
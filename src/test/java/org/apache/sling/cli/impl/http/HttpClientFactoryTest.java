@@ -19,12 +19,21 @@
 package org.apache.sling.cli.impl.http;
 
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.sling.cli.impl.CredentialsService;
 import org.apache.sling.cli.impl.junit.SystemPropertiesRule;
@@ -34,12 +43,16 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 public class HttpClientFactoryTest {
 
     private HttpServer server;
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private final AtomicInteger flakyCalls = new AtomicInteger();
     private static final Map<String, String> SYSTEM_PROPS = new HashMap<>();
 
     static {
@@ -58,7 +71,19 @@ public class HttpClientFactoryTest {
         server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
         HttpContext rootContext = server.createContext("/");
         rootContext.setHandler(ex -> {
-            ex.sendResponseHeaders(401, -1);
+            String authorization = ex.getRequestHeaders().getFirst("Authorization");
+            authorizations.add(authorization == null ? "none" : authorization);
+            String path = ex.getRequestURI().getPath();
+            int status;
+            if (path.startsWith("/ok")) {
+                status = 200;
+            } else if (path.startsWith("/flaky")) {
+                // busy for the first call only
+                status = flakyCalls.getAndIncrement() == 0 ? 503 : 200;
+            } else {
+                status = 401;
+            }
+            ex.sendResponseHeaders(status, -1);
             ex.close();
         });
         server.start();
@@ -85,6 +110,67 @@ public class HttpClientFactoryTest {
         assertTrue(t.getMessage().contains("Server returned a 401 status; please check your authentication details"));
     }
 
+    @Test
+    public void test401WithSharedClient() throws Exception {
+        HttpClientFactory factory = osgiContext.getService(HttpClientFactory.class);
+        try (CloseableHttpClient client = factory.newClient(4)) {
+            HttpGet httpGet = new HttpGet("http://" + server.getAddress().getHostString() + ":"
+                    + server.getAddress().getPort() + "/shared");
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> client.execute(httpGet));
+            assertTrue(e.getMessage().endsWith("/shared"));
+        }
+    }
+
+    @Test
+    public void testCredentialsAreSentPreemptivelyToConfiguredHosts() throws Exception {
+        HttpClientFactory factory = osgiContext.registerInjectActivateService(
+                new HttpClientFactory(),
+                "nexus.host",
+                server.getAddress().getHostString(),
+                "nexus.port",
+                server.getAddress().getPort());
+        try (CloseableHttpClient client = factory.newClient()) {
+            // each request on its own connection: the test server may close a kept-alive one under the next request
+            client.execute(closingConnection(new HttpGet(serverUrl("/ok/get")))).close();
+            client.execute(closingConnection(new HttpPost(serverUrl("/ok/post"))))
+                    .close();
+        }
+        String basic =
+                "Basic " + Base64.getEncoder().encodeToString("asf-user:asf-password".getBytes(StandardCharsets.UTF_8));
+        // no 401 challenge round trip: every request carries the credentials from the start
+        assertEquals(List.of(basic, basic), authorizations);
+    }
+
+    @Test
+    public void testCredentialsAreNotSentToOtherHosts() throws Exception {
+        HttpClientFactory factory = osgiContext.getService(HttpClientFactory.class);
+        try (CloseableHttpClient client = factory.newClient()) {
+            client.execute(new HttpGet(serverUrl("/ok"))).close();
+        }
+        assertEquals(List.of("none"), authorizations);
+    }
+
+    @Test
+    public void testServiceUnavailableIsRetried() throws Exception {
+        HttpClientFactory factory =
+                osgiContext.registerInjectActivateService(new HttpClientFactory(), "http.retry.delay.millis", 1);
+        try (CloseableHttpClient client = factory.newClient();
+                CloseableHttpResponse response = client.execute(new HttpGet(serverUrl("/flaky")))) {
+            assertEquals(200, response.getStatusLine().getStatusCode());
+        }
+        assertEquals(2, flakyCalls.get());
+    }
+
+    private static <T extends HttpRequestBase> T closingConnection(T request) {
+        request.setHeader(HttpHeaders.CONNECTION, "close");
+        return request;
+    }
+
+    private String serverUrl(String path) {
+        return "http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + path;
+    }
+
     @After
     public void after() {
         server.stop(0);
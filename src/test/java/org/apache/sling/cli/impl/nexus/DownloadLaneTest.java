@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.nexus;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+public class DownloadLaneTest {
+
+    private final DownloadLane lane = new DownloadLane(1);
+
+    @After
+    public void shutdown() {
+        lane.shutdownNow();
+    }
+
+    @Test
+    public void runsQueuedDownloadsByPriorityThenInQueueOrder() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        // occupy the only thread, so that the following downloads are all queued before any of them runs
+        CompletableFuture<Void> blocker = lane.schedule(0, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add("blocker");
+        });
+        CompletableFuture<Void> jar = lane.schedule(2, () -> order.add("jar"));
+        CompletableFuture<Void> sha1 = lane.schedule(1, () -> order.add("sha1"));
+        CompletableFuture<Void> pom = lane.schedule(0, () -> order.add("pom"));
+        CompletableFuture<Void> asc = lane.schedule(1, () -> order.add("asc"));
+        release.countDown();
+
+        CompletableFuture.allOf(blocker, jar, sha1, pom, asc).get();
+
+        assertEquals(List.of("blocker", "pom", "sha1", "asc", "jar"), order);
+    }
+
+    @Test
+    public void pomsQueuedAfterBinariesRunFirst() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // binaries are queued before the POMs, while the first one is still downloading
+        CompletableFuture<Void> firstJar = lane.schedule(2, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add("jar-1");
+        });
+        started.await();
+        CompletableFuture<Void> secondJar = lane.schedule(2, () -> order.add("jar-2"));
+        CompletableFuture<Void> thirdJar = lane.schedule(2, () -> order.add("jar-3"));
+        CompletableFuture<Void> firstPom = lane.schedule(0, () -> order.add("pom-1"));
+        CompletableFuture<Void> secondPom = lane.schedule(0, () -> order.add("pom-2"));
+        release.countDown();
+
+        CompletableFuture.allOf(firstJar, secondJar, thirdJar, firstPom, secondPom)
+                .get();
+
+        assertEquals(List.of("jar-1", "pom-1", "pom-2", "jar-2", "jar-3"), order);
+    }
+
+    @Test
+    public void failedDownloadCompletesExceptionally() {
+        IOException failure = new IOException("connection reset");
+        CompletableFuture<Void> download = lane.schedule(0, () -> {
+            throw failure;
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, download::get);
+        assertSame(failure, e.getCause());
+    }
+}
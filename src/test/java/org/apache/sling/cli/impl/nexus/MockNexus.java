@@ -18,10 +18,21 @@
  */
 package org.apache.sling.cli.impl.nexus;
 
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.sun.net.httpserver.Authenticator;
 import com.sun.net.httpserver.BasicAuthenticator;
 import com.sun.net.httpserver.HttpContext;
@@ -36,14 +47,59 @@ public class MockNexus extends ExternalResource {
     static final String NEXUS_USER = "asf-user";
     static final String NEXUS_PASSWORD = "asf-password";
 
+    private static final String STAGING_REPOSITORY_PATH = "/service/local/staging/repository/";
+    private static final String ACTIVITY_SUFFIX = "/activity";
+
     private HttpServer server;
     private volatile String lastBulkAction;
+    private volatile List<String> lastBulkRepositoryIds;
+    private final AtomicInteger stagingRepositoriesRequests = new AtomicInteger();
+    private final AtomicInteger activityRequests = new AtomicInteger();
+    private final Map<String, Deque<String>> repositoryStates = new ConcurrentHashMap<>();
+    private final Map<String, Deque<String>> activities = new ConcurrentHashMap<>();
+    private final List<String> rangeRequests = new CopyOnWriteArrayList<>();
 
     /** The last staging bulk action (e.g. {@code close}, {@code promote}, {@code delete}) posted, or {@code null}. */
     public String getLastBulkAction() {
         return lastBulkAction;
     }
 
+    /**
+     * Sets the JSON bodies served, one per request, for the status of a staging repository; the last one keeps being
+     * served. Repositories without states are answered with a 404, like dropped ones.
+     */
+    void setRepositoryStates(String repositoryId, String... states) {
+        repositoryStates.put(repositoryId, new ConcurrentLinkedDeque<>(List.of(states)));
+    }
+
+    /**
+     * Sets the JSON bodies served, one per request, for the activity log of a staging repository; the last one keeps
+     * being served.
+     */
+    void setActivity(String repositoryId, String... activity) {
+        activities.put(repositoryId, new ConcurrentLinkedDeque<>(List.of(activity)));
+    }
+
+    /** The staging repository ids of the last staging bulk action posted, or {@code null}. */
+    public List<String> getLastBulkRepositoryIds() {
+        return lastBulkRepositoryIds;
+    }
+
+    /** The number of times the staging repositories were listed. */
+    public int getStagingRepositoriesRequests() {
+        return stagingRepositoriesRequests.get();
+    }
+
+    /** The number of times the activity log of a staging repository was read. */
+    public int getActivityRequests() {
+        return activityRequests.get();
+    }
+
+    /** The repository content requests that asked for a byte range, as {@code <path> <Range header>}. */
+    public List<String> getRangeRequests() {
+        return rangeRequests;
+    }
+
     @Override
     protected void before() throws Throwable {
         server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
@@ -70,19 +126,73 @@ public class MockNexus extends ExternalResource {
 
         List<HttpExchangeHandler> handlers = new ArrayList<>();
         handlers.add(new QueryLuceneIndexHandler());
-        handlers.add(new StagingRepositoriesHandler());
+        StagingRepositoriesHandler stagingRepositoriesHandler = new StagingRepositoriesHandler();
+        handlers.add(ex -> {
+            boolean handled = stagingRepositoriesHandler.tryHandle(ex);
+            if (handled) {
+                stagingRepositoriesRequests.incrementAndGet();
+            }
+            return handled;
+        });
         handlers.add(new RepositoryContentListingHandler());
-        handlers.add(new RepositoryContentHandler());
+        RepositoryContentHandler repositoryContentHandler = new RepositoryContentHandler();
+        handlers.add(ex -> {
+            String range = ex.getRequestHeaders().getFirst("Range");
+            boolean handled = repositoryContentHandler.tryHandle(ex);
+            if (handled && range != null) {
+                rangeRequests.add(ex.getRequestURI().getPath() + " " + range);
+            }
+            return handled;
+        });
         // staging bulk actions (close/promote/delete) are POSTs answered with HTTP 201
         handlers.add(ex -> {
             String path = ex.getRequestURI().getPath();
             if ("POST".equals(ex.getRequestMethod()) && path.startsWith("/service/local/staging/bulk/")) {
                 lastBulkAction = path.substring(path.lastIndexOf('/') + 1);
+                List<String> repositoryIds = new ArrayList<>();
+                try (InputStreamReader reader = new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8)) {
+                    for (JsonElement id : new JsonParser()
+                            .parse(reader)
+                            .getAsJsonObject()
+                            .getAsJsonObject("data")
+                            .getAsJsonArray("stagedRepositoryIds")) {
+                        repositoryIds.add(id.getAsString());
+                    }
+                }
+                lastBulkRepositoryIds = repositoryIds;
                 ex.sendResponseHeaders(201, -1);
                 return true;
             }
             return false;
         });
+        // status and activity log of a single staging repository
+        handlers.add(ex -> {
+            String path = ex.getRequestURI().getPath();
+            if (!"GET".equals(ex.getRequestMethod()) || !path.startsWith(STAGING_REPOSITORY_PATH)) {
+                return false;
+            }
+            String repositoryId = path.substring(STAGING_REPOSITORY_PATH.length());
+            if (repositoryId.endsWith(ACTIVITY_SUFFIX)) {
+                activityRequests.incrementAndGet();
+            }
+            Deque<String> bodies = repositoryId.endsWith(ACTIVITY_SUFFIX)
+                    ? activities.get(repositoryId.substring(0, repositoryId.length() - ACTIVITY_SUFFIX.length()))
+                    : repositoryStates.get(repositoryId);
+            String body = bodies == null ? null : bodies.size() > 1 ? bodies.poll() : bodies.peek();
+            if (body == null) {
+                // an empty body rather than none, which would make the server close the connection under the next
+                // request, such as the POST of a bulk action that follows a look at the activity log
+                ex.sendResponseHeaders(404, 0);
+                ex.close();
+                return true;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+            return true;
+        });
         handlers.add(ex -> {
             ex.sendResponseHeaders(400, -1);
             return true;
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.nexus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.sling.cli.impl.nexus.PomParser.PomCoordinates;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReactorGraphTest {
+
+    private static final String PARENT_POM = "org.apache.sling:sling:66";
+    private static final String REACTOR_KEY = "org.apache.sling:org.apache.sling.reactor:1.0.0";
+
+    private static final PomCoordinates REACTOR = pom("org.apache.sling.reactor", "pom", PARENT_POM);
+    private static final PomCoordinates CORE = pom("core", "jar", REACTOR_KEY);
+    private static final PomCoordinates API = pom("api", "jar", REACTOR_KEY);
+    private static final PomCoordinates FOO = pom("org.apache.sling.foo", "jar", PARENT_POM);
+
+    @Test
+    public void testIndexesStagedPomsByKey() {
+        ReactorGraph graph = ReactorGraph.of(List.of(REACTOR, CORE, API));
+        assertSame(REACTOR, graph.get(REACTOR_KEY));
+        assertSame(CORE, graph.get("org.apache.sling:core:1.0.0"));
+        // the shared parent POM is referenced but not staged
+        assertNull(graph.get(PARENT_POM));
+    }
+
+    @Test
+    public void testChildrenAndRoots() {
+        ReactorGraph graph = ReactorGraph.of(List.of(CORE, REACTOR, FOO, API));
+        assertEquals(List.of(CORE, API), graph.children(REACTOR));
+        assertTrue(graph.children(CORE).isEmpty());
+        assertEquals(List.of(REACTOR, FOO), graph.roots());
+        assertEquals(List.of(REACTOR), graph.aggregators());
+    }
+
+    @Test
+    public void testPomParentWithoutStagedChildrenIsNoAggregator() {
+        PomCoordinates bom = pom("org.apache.sling.bom", "pom", PARENT_POM);
+        ReactorGraph graph = ReactorGraph.of(List.of(bom, FOO));
+        assertEquals(List.of(bom, FOO), graph.roots());
+        assertTrue(graph.aggregators().isEmpty());
+    }
+
+    @Test
+    public void testNestedAggregatorIsNoRoot() {
+        PomCoordinates nested = pom("nested", "pom", REACTOR_KEY);
+        PomCoordinates leaf = pom("leaf", "jar", "org.apache.sling:nested:1.0.0");
+        ReactorGraph graph = ReactorGraph.of(List.of(REACTOR, nested, leaf));
+        assertEquals(List.of(REACTOR), graph.roots());
+        assertEquals(List.of(leaf), graph.children(nested));
+        assertEquals(List.of(REACTOR), graph.aggregators());
+    }
+
+    @Test
+    public void testScalesLinearlyWithLargeReactors() {
+        List<PomCoordinates> poms = new ArrayList<>();
+        poms.add(REACTOR);
+        for (int i = 0; i < 50_000; i++) {
+            poms.add(pom("module-" + i, "jar", REACTOR_KEY));
+        }
+        ReactorGraph graph = ReactorGraph.of(poms);
+        assertEquals(50_000, graph.children(REACTOR).size());
+        assertEquals(List.of(REACTOR), graph.aggregators());
+    }
+
+    private static PomCoordinates pom(String artifactId, String packaging, String parentKey) {
+        return new PomCoordinates(artifactId, "org.apache.sling", artifactId, "1.0.0", packaging, parentKey);
+    }
+}
@@ -19,19 +19,55 @@
 package org.apache.sling.cli.impl.nexus;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import com.sun.net.httpserver.HttpExchange;
+import org.apache.commons.io.IOUtils;
 import org.apache.sling.cli.impl.http.HttpExchangeHandler;
 
 public class RepositoryContentHandler implements HttpExchangeHandler {
 
+    private static final String RANGE_PREFIX = "bytes=";
+
     @Override
     public boolean tryHandle(HttpExchange ex) throws IOException {
         if (!"GET".equals(ex.getRequestMethod())
-                && !ex.getRequestURI().getPath().startsWith("/content/repositories/")) {
+                || !ex.getRequestURI().getPath().startsWith("/content/repositories/")) {
             return false;
         }
-        serveFileFromClasspath(ex, "/nexus/" + ex.getRequestURI().getPath().substring(22));
+        String classpathLocation = "/nexus/" + ex.getRequestURI().getPath().substring(22);
+        String range = ex.getRequestHeaders().getFirst("Range");
+        if (range == null) {
+            serveFileFromClasspath(ex, classpathLocation);
+        } else {
+            serveRangeFromClasspath(ex, classpathLocation, range);
+        }
         return true;
     }
+
+    /** Serves an open-ended {@code bytes=<offset>-} range, the only kind of range the CLI asks for. */
+    private void serveRangeFromClasspath(HttpExchange ex, String classpathLocation, String range) throws IOException {
+        byte[] content;
+        try (InputStream in = getClass().getResourceAsStream(classpathLocation)) {
+            if (in == null) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            content = IOUtils.toByteArray(in);
+        }
+        int offset = Integer.parseInt(range.substring(RANGE_PREFIX.length(), range.length() - 1));
+        if (offset >= content.length) {
+            ex.getResponseHeaders().add("Content-Range", "bytes */" + content.length);
+            ex.sendResponseHeaders(416, -1);
+            return;
+        }
+        ex.getResponseHeaders()
+                .add("Content-Range", "bytes " + offset + "-" + (content.length - 1) + "/" + content.length);
+        ex.sendResponseHeaders(206, content.length - offset);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(Arrays.copyOfRange(content, offset, content.length));
+        }
+    }
 }
@@ -23,31 +23,54 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.sling.cli.impl.CredentialsService;
 import org.apache.sling.cli.impl.http.HttpClientFactory;
 import org.apache.sling.cli.impl.junit.SystemPropertiesRule;
+import org.apache.sling.cli.impl.pom.PomModelService;
 import org.apache.sling.cli.impl.release.Release;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
 
 public class RepositoryServiceTest {
 
@@ -61,7 +84,15 @@ public class RepositoryServiceTest {
         SYSTEM_PROPS.put("jira.password", "jira-password");
     }
 
+    private static final String OPEN_TRANSITIONING = "{\"type\":\"open\",\"transitioning\":true}";
+    private static final String OPEN = "{\"type\":\"open\",\"transitioning\":false}";
+    private static final String CLOSED = "{\"type\":\"closed\",\"transitioning\":false}";
+    private static final String SOURCE_RELEASE =
+            "org/apache/sling/adapter-annotations/1.0.0/adapter-annotations-1.0.0-source-release.zip";
+
     private RepositoryService repositoryService;
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Long> pauses = new ArrayList<>();
 
     @Rule
     public final OsgiContext context = new OsgiContext();
@@ -72,13 +103,47 @@ public class RepositoryServiceTest {
     @Rule
     public MockNexus nexus = new MockNexus();
 
+    @Rule
+    public final TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    @Rule
+    public final TemporaryFolder downloadFolder = new TemporaryFolder();
+
     @Before
-    public void prepareDependencies() {
+    public void prepareDependencies() throws Exception {
         context.registerInjectActivateService(new CredentialsService());
+        context.registerInjectActivateService(new PomModelService());
         context.registerInjectActivateService(
                 new HttpClientFactory(), "nexus.host", "localhost", "nexus.port", nexus.getBoundPort());
-        repositoryService = context.registerInjectActivateService(
-                new RepositoryService(), "nexus.url.prefix", "http://localhost:" + nexus.getBoundPort());
+        clock.set(System.currentTimeMillis());
+        repositoryService = newRepositoryService();
+    }
+
+    private RepositoryService newRepositoryService() throws InterruptedException {
+        return newRepositoryService(0);
+    }
+
+    private RepositoryService newRepositoryService(int stagingCacheTtlSeconds) throws InterruptedException {
+        RepositoryService repositoryService = spy(new RepositoryService());
+        doAnswer(invocation -> clock.get()).when(repositoryService).currentTimeMillis();
+        doAnswer(invocation -> {
+                    long millis = invocation.getArgument(0);
+                    pauses.add(millis);
+                    clock.addAndGet(millis);
+                    return null;
+                })
+                .when(repositoryService)
+                .pause(anyLong());
+        return context.registerInjectActivateService(
+                repositoryService,
+                "nexus.url.prefix",
+                "http://localhost:" + nexus.getBoundPort(),
+                "nexus.cache.dir",
+                cacheFolder.getRoot().getAbsolutePath(),
+                "nexus.download.dir",
+                downloadFolder.getRoot().getAbsolutePath(),
+                "nexus.staging.cache.ttl.seconds",
+                stagingCacheTtlSeconds);
     }
 
     @Test
@@ -87,6 +152,21 @@ public class RepositoryServiceTest {
         assertEquals(5, artifacts.size());
     }
 
+    @Test
+    public void testLuceneSearchIsReadInAnyFieldOrder() throws IOException {
+        // the artifact links may precede the coordinates; only the first artifact hit is considered
+        StagingRepository repository = new StagingRepository();
+        repository.setRepositoryId("orgapachesling-4");
+        Set<String> paths = repositoryService.getArtifacts(repository).stream()
+                .map(Artifact::getRepositoryRelativePath)
+                .collect(Collectors.toSet());
+        assertEquals(
+                Set.of(
+                        "org/apache/sling/adapter-annotations/1.0.0/adapter-annotations-1.0.0.pom",
+                        "org/apache/sling/adapter-annotations/1.0.0/adapter-annotations-1.0.0-sources.jar"),
+                paths);
+    }
+
     @Test
     public void testRepositoryFind() throws IOException {
         StagingRepository stagingRepository = repositoryService.find(0);
@@ -110,6 +190,16 @@ public class RepositoryServiceTest {
         assertTrue(repositoriesIds.isEmpty());
     }
 
+    @Test
+    public void testRepositoryListClosed() throws IOException {
+        List<StagingRepository> stagingRepositories = repositoryService.listClosed();
+        assertEquals(
+                Set.of("orgapachesling-0", "orgapachesling-1"),
+                stagingRepositories.stream()
+                        .map(StagingRepository::getRepositoryId)
+                        .collect(Collectors.toSet()));
+    }
+
     @Test
     public void testArtifactStream() throws IOException {
         Set<Artifact> artifacts = repositoryService.getArtifacts(getStagingRepository());
@@ -161,6 +251,30 @@ public class RepositoryServiceTest {
         }
     }
 
+    @Test
+    public void testDownloadReportsEveryArtifactOnceItIsIn() throws IOException {
+        Map<Artifact, Boolean> reported = new ConcurrentHashMap<>();
+        LocalRepository localRepository = repositoryService.download(
+                getStagingRepository(), (artifact, file) -> reported.put(artifact, Files.isRegularFile(file)));
+
+        assertEquals(localRepository.getArtifacts(), reported.keySet());
+        assertFalse("an artifact was reported before it was downloaded", reported.containsValue(false));
+    }
+
+    @Test
+    public void testConcurrentDownloadsOfTheSameRepositoryAreShared() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<LocalRepository> download = () -> repositoryService.download(getStagingRepository());
+            Future<LocalRepository> first = executor.submit(download);
+            Future<LocalRepository> second = executor.submit(download);
+            assertSame(first.get(), second.get());
+            assertSame(first.get(), repositoryService.download(getStagingRepository()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testDownloadRepositoryFetchesSha512Sidecar() throws IOException {
         // the Apache release build emits a .sha512 for the source-release archive only; it must be
@@ -175,6 +289,110 @@ public class RepositoryServiceTest {
                 Files.notExists(base.resolve("adapter-annotations-1.0.0.jar.sha512")));
     }
 
+    @Test
+    public void testDownloadResumesPartialFile() throws IOException {
+        byte[] expected = IOUtils.resourceToByteArray("/nexus/orgapachesling-0/" + SOURCE_RELEASE);
+        int kept = expected.length / 2;
+        writePartialFile(SOURCE_RELEASE, Arrays.copyOf(expected, kept));
+
+        LocalRepository localRepository = repositoryService.download(getStagingRepository());
+
+        assertArrayEquals(
+                expected, Files.readAllBytes(localRepository.getRootFolder().resolve(SOURCE_RELEASE)));
+        assertEquals(
+                List.of("/content/repositories/orgapachesling-0/" + SOURCE_RELEASE + " bytes=" + kept + "-"),
+                nexus.getRangeRequests());
+        assertTrue(
+                "no partial files should be left behind",
+                Files.notExists(downloadFolder.getRoot().toPath().resolve("orgapachesling-0.partial")));
+    }
+
+    @Test
+    public void testDownloadStartsOverWhenResumedFileDoesNotMatchChecksum() throws IOException {
+        byte[] expected = IOUtils.resourceToByteArray("/nexus/orgapachesling-0/" + SOURCE_RELEASE);
+        writePartialFile(SOURCE_RELEASE, new byte[expected.length / 2]);
+
+        LocalRepository localRepository = repositoryService.download(getStagingRepository());
+
+        assertArrayEquals(
+                expected, Files.readAllBytes(localRepository.getRootFolder().resolve(SOURCE_RELEASE)));
+        assertEquals(1, nexus.getRangeRequests().size());
+    }
+
+    @Test
+    public void testDownloadReplacesCorruptedFilesOfAnEarlierRun() throws Exception {
+        byte[] expected = IOUtils.resourceToByteArray("/nexus/orgapachesling-0/" + SOURCE_RELEASE);
+        Path downloaded = repositoryService
+                .download(getStagingRepository())
+                .getRootFolder()
+                .resolve(SOURCE_RELEASE);
+        Files.write(downloaded, new byte[] {42});
+
+        // a new instance, as the next run of the CLI would have
+        LocalRepository localRepository = newRepositoryService().download(getStagingRepository());
+
+        assertEquals(downloaded, localRepository.getRootFolder().resolve(SOURCE_RELEASE));
+        assertArrayEquals(expected, Files.readAllBytes(downloaded));
+    }
+
+    @Test
+    public void testSidecarsOfAnEarlierRunAreFetchedAgain() throws Exception {
+        byte[] expected = IOUtils.resourceToByteArray("/nexus/orgapachesling-0/" + SOURCE_RELEASE);
+        // an earlier run left a tampered archive behind, together with a checksum that matches it
+        byte[] tampered = {42};
+        Path rootFolder = downloadFolder.getRoot().toPath().resolve("orgapachesling-0");
+        Path archive = rootFolder.resolve(SOURCE_RELEASE);
+        Files.createDirectories(archive.getParent());
+        Files.write(archive, tampered);
+        Files.writeString(
+                rootFolder.resolve(SOURCE_RELEASE + ".sha512"),
+                Hex.toHexString(MessageDigest.getInstance("SHA-512").digest(tampered)));
+
+        repositoryService.download(getStagingRepository());
+
+        assertArrayEquals(expected, Files.readAllBytes(archive));
+    }
+
+    @Test
+    public void testDiscardDownloadDeletesTheLocalCopy() throws IOException {
+        LocalRepository downloaded = repositoryService.download(getStagingRepository());
+        writePartialFile(SOURCE_RELEASE, new byte[] {42});
+
+        repositoryService.discardDownload(getStagingRepository());
+
+        assertTrue(Files.notExists(downloaded.getRootFolder()));
+        assertTrue(Files.notExists(downloadFolder.getRoot().toPath().resolve("orgapachesling-0.partial")));
+        LocalRepository localRepository = repositoryService.download(getStagingRepository());
+        assertNotSame(downloaded, localRepository);
+        assertTrue(Files.exists(localRepository.getRootFolder().resolve(SOURCE_RELEASE)));
+    }
+
+    private void writePartialFile(String relativePath, byte[] content) throws IOException {
+        Path partial = downloadFolder
+                .getRoot()
+                .toPath()
+                .resolve("orgapachesling-0.partial")
+                .resolve(relativePath);
+        Files.createDirectories(partial.getParent());
+        Files.write(partial, content);
+    }
+
+    @Test
+    public void testProcessRepositoryFile() throws IOException {
+        String pomPath = "org/apache/sling/adapter-annotations/1.0.0/adapter-annotations-1.0.0.pom";
+        AtomicReference<String> content = new AtomicReference<>();
+        assertTrue(repositoryService.processRepositoryFile(getStagingRepository(), pomPath, stream -> {
+            content.set(IOUtils.toString(stream, StandardCharsets.UTF_8));
+        }));
+        assertEquals(
+                IOUtils.resourceToString("/nexus/orgapachesling-0/" + pomPath, StandardCharsets.UTF_8), content.get());
+        // sidecars such as .sha512 exist only for some artifacts
+        assertFalse(repositoryService.processRepositoryFile(
+                getStagingRepository(),
+                "org/apache/sling/adapter-annotations/1.0.0/adapter-annotations-1.0.0.jar.sha512",
+                stream -> fail("A missing file must not be processed.")));
+    }
+
     @Test
     public void testReleaseLookup() throws IOException {
         StagingRepository stagingRepository = getStagingRepository();
@@ -184,6 +402,16 @@ public class RepositoryServiceTest {
         assertEquals("Sling Adapter Annotations 1.0.0", release.getFullName());
     }
 
+    @Test
+    public void testReleaseLookupSkipsUnreadablePoms() throws IOException {
+        // the POM listed by the search of orgapachesling-4 cannot be downloaded: it is reported and skipped
+        StagingRepository repository = new StagingRepository();
+        repository.setRepositoryId("orgapachesling-4");
+        repository.setRepositoryURI(
+                "http://localhost:" + nexus.getBoundPort() + "/content/repositories/orgapachesling-4");
+        assertTrue(repositoryService.getReleases(repository).isEmpty());
+    }
+
     @Test
     public void testGetReleasesFromContent() throws IOException {
         // browses the repository content tree directly (no Lucene index), recursing into directories
@@ -196,6 +424,15 @@ public class RepositoryServiceTest {
                 "Sling Adapter Annotations 1.0.0", releases.iterator().next().getFullName());
     }
 
+    @Test
+    public void testGetReleasesFromContentFailsOnBrokenListing() {
+        // the listing of a subdirectory is truncated; its error stops the crawl instead of being lost
+        StagingRepository repository = new StagingRepository();
+        repository.setRepositoryId("orgapachesling-5");
+        IOException e = assertThrows(IOException.class, () -> repositoryService.getReleasesFromContent(repository));
+        assertEquals("Failed to process orgapachesling-5", e.getMessage());
+    }
+
     @Test
     public void testFindAnyReturnsOpenRepository() throws IOException {
         // findAny does not require the repository to be closed, so the open orgapachesling-2 resolves
@@ -216,6 +453,62 @@ public class RepositoryServiceTest {
         }
     }
 
+    @Test
+    public void testRepeatedLookupsListRepositoriesOnce() throws IOException {
+        assertEquals(3, repositoryService.list().size());
+        assertEquals("orgapachesling-0", repositoryService.find(0).getRepositoryId());
+        assertEquals("orgapachesling-2", repositoryService.findAny(2).getRepositoryId());
+        assertEquals(2, repositoryService.listClosed().size());
+        assertEquals(1, nexus.getStagingRepositoriesRequests());
+    }
+
+    @Test
+    public void testListingIsNotSharedAcrossRunsByDefault() throws Exception {
+        repositoryService.list();
+        // a later invocation of the CLI gets a new service instance
+        assertEquals(3, newRepositoryService().list().size());
+        assertEquals(2, nexus.getStagingRepositoriesRequests());
+        assertEquals(0, cacheFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testListingIsReusedAcrossRunsWithinTtl() throws Exception {
+        newRepositoryService(60).list();
+        assertEquals(3, newRepositoryService(60).list().size());
+        assertEquals(1, nexus.getStagingRepositoriesRequests());
+    }
+
+    @Test
+    public void testListingOtherUsersCanWriteIsNotReused() throws Exception {
+        newRepositoryService(60).list();
+        try (Stream<Path> entries = Files.list(cacheFolder.getRoot().toPath())) {
+            for (Path entry : entries.collect(Collectors.toList())) {
+                Files.setPosixFilePermissions(entry, PosixFilePermissions.fromString("rw-rw-rw-"));
+            }
+        }
+
+        assertEquals(3, newRepositoryService(60).list().size());
+        assertEquals(2, nexus.getStagingRepositoriesRequests());
+    }
+
+    @Test
+    public void testExpiredListingIsFetchedAgain() throws Exception {
+        newRepositoryService(60).list();
+        clock.addAndGet(61_000L);
+        assertEquals(3, newRepositoryService(60).list().size());
+        assertEquals(2, nexus.getStagingRepositoriesRequests());
+    }
+
+    @Test
+    public void testBulkActionInvalidatesListing() throws Exception {
+        RepositoryService first = newRepositoryService(60);
+        first.find(0);
+        first.promote(getStagingRepository());
+        first.find(0);
+        newRepositoryService(60).find(0);
+        assertEquals(2, nexus.getStagingRepositoriesRequests());
+    }
+
     @Test
     public void testPromote() throws IOException {
         repositoryService.promote(getStagingRepository());
@@ -228,12 +521,114 @@ public class RepositoryServiceTest {
         assertEquals("close", nexus.getLastBulkAction());
     }
 
+    @Test
+    public void testBulkActionReadsActivityLogOnlyWhenAwaited() throws IOException {
+        repositoryService.promoteAll(List.of(getStagingRepository()));
+        repositoryService.closeAll(List.of(getStagingRepository()), "voting");
+        assertEquals(0, nexus.getActivityRequests());
+
+        repositoryService.closeAll(List.of(getStagingRepository()), "voting", true);
+        assertEquals(1, nexus.getActivityRequests());
+    }
+
     @Test
     public void testDrop() throws IOException {
         repositoryService.drop(getStagingRepository());
         assertEquals("delete", nexus.getLastBulkAction());
     }
 
+    @Test
+    public void testPromoteSeveralRepositoriesInOneRequest() throws IOException {
+        StagingRepository other = new StagingRepository();
+        other.setRepositoryId("orgapachesling-1");
+        repositoryService.promoteAll(List.of(getStagingRepository(), other));
+        assertEquals("promote", nexus.getLastBulkAction());
+        assertEquals(List.of("orgapachesling-0", "orgapachesling-1"), nexus.getLastBulkRepositoryIds());
+    }
+
+    @Test
+    public void testAwaitClosedSharesTimeoutAcrossRepositories() {
+        nexus.setRepositoryStates("orgapachesling-0", OPEN_TRANSITIONING, CLOSED);
+        nexus.setRepositoryStates("orgapachesling-1", OPEN_TRANSITIONING);
+        StagingRepository other = new StagingRepository();
+        other.setRepositoryId("orgapachesling-1");
+        IOException e = assertThrows(
+                IOException.class,
+                () -> repositoryService.awaitClosed(List.of(getStagingRepository(), other), Duration.ofSeconds(10)));
+        assertTrue(e.getMessage().contains("orgapachesling-1"));
+        // the second repository only gets what the first one left of the 10 seconds
+        assertEquals(List.of(1_000L, 1_000L, 2_000L, 4_000L, 2_000L), pauses);
+    }
+
+    @Test
+    public void testAwaitClosedBacksOffUntilClosed() throws IOException {
+        nexus.setRepositoryStates(
+                "orgapachesling-0", OPEN_TRANSITIONING, OPEN_TRANSITIONING, OPEN_TRANSITIONING, CLOSED);
+        nexus.setActivity("orgapachesling-0", "[{\"name\":\"close\",\"events\":[{\"name\":\"rulesPassed\"}]}]");
+        repositoryService.awaitClosed(List.of(getStagingRepository()), Duration.ofMinutes(15));
+        assertEquals(List.of(1_000L, 2_000L, 4_000L), pauses);
+    }
+
+    @Test
+    public void testAwaitClosedWaitsForTransitionToStart() throws IOException {
+        // right after the bulk request Nexus may not have flagged the repository as transitioning yet
+        nexus.setRepositoryStates("orgapachesling-0", OPEN, OPEN_TRANSITIONING, CLOSED);
+        repositoryService.awaitClosed(List.of(getStagingRepository()), Duration.ofMinutes(15));
+        assertEquals(List.of(1_000L, 2_000L), pauses);
+    }
+
+    @Test
+    public void testAwaitClosedReportsRuleFailures() {
+        nexus.setRepositoryStates("orgapachesling-0", OPEN_TRANSITIONING, OPEN);
+        nexus.setActivity(
+                "orgapachesling-0",
+                "[{\"name\":\"open\",\"events\":[]},{\"name\":\"close\",\"events\":[{\"name\":\"ruleFailed\","
+                        + "\"properties\":[{\"name\":\"typeId\",\"value\":\"signature-staging\"},"
+                        + "{\"name\":\"failureMessage\","
+                        + "\"value\":\"Missing Signature: adapter-annotations-1.0.0.jar.asc\"}]}]}]");
+        IOException e = assertThrows(
+                IOException.class,
+                () -> repositoryService.awaitClosed(List.of(getStagingRepository()), Duration.ofMinutes(15)));
+        assertTrue(e.getMessage().contains("Missing Signature: adapter-annotations-1.0.0.jar.asc"));
+        assertEquals(List.of(1_000L), pauses);
+    }
+
+    @Test
+    public void testAwaitClosedIgnoresRuleFailuresOfAnEarlierClose() throws IOException {
+        String failedClose = "{\"name\":\"close\",\"events\":[{\"name\":\"ruleFailed\",\"properties\":["
+                + "{\"name\":\"failureMessage\",\"value\":\"Missing Signature: adapter-annotations-1.0.0.jar.asc\"}]}]}";
+        String passedClose = "{\"name\":\"close\",\"events\":[{\"name\":\"rulesPassed\"}]}";
+        // the failed close of an earlier attempt is the latest until Nexus records the one requested below
+        nexus.setRepositoryStates("orgapachesling-0", OPEN, OPEN_TRANSITIONING, CLOSED);
+        nexus.setActivity(
+                "orgapachesling-0",
+                "[" + failedClose + "]",
+                "[" + failedClose + "]",
+                "[" + failedClose + "," + passedClose + "]");
+
+        repositoryService.closeAll(List.of(getStagingRepository()), "voting", true);
+        repositoryService.awaitClosed(List.of(getStagingRepository()), Duration.ofMinutes(15));
+
+        assertEquals(List.of(1_000L, 2_000L), pauses);
+    }
+
+    @Test
+    public void testAwaitClosedTimesOut() {
+        nexus.setRepositoryStates("orgapachesling-0", OPEN_TRANSITIONING);
+        IOException e = assertThrows(
+                IOException.class,
+                () -> repositoryService.awaitClosed(List.of(getStagingRepository()), Duration.ofSeconds(10)));
+        assertTrue(e.getMessage().startsWith("Timed out after 10 seconds"));
+        assertEquals(List.of(1_000L, 2_000L, 4_000L, 3_000L), pauses);
+    }
+
+    @Test
+    public void testAwaitPromotedCompletesWhenRepositoryIsDropped() throws IOException {
+        // promote asks Nexus to drop the staging repository once released, so a 404 means done
+        repositoryService.awaitPromoted(List.of(getStagingRepository()), Duration.ofMinutes(15));
+        assertTrue(pauses.isEmpty());
+    }
+
     private StagingRepository getStagingRepository() {
         StagingRepository stagingRepository = new StagingRepository();
         stagingRepository.setRepositoryId("orgapachesling-0");
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+public class PomModelServiceTest {
+
+    private static final String CHILD_POM = "<project>"
+            + "<parent>"
+            + "<groupId>org.apache.sling</groupId>"
+            + "<artifactId>parent</artifactId>"
+            + "<version>3.4.5</version>"
+            + "</parent>"
+            + "<artifactId>child</artifactId>"
+            + "<name>Apache Sling Child</name>"
+            + "<dependencies><dependency><groupId>other</groupId><version>9</version></dependency></dependencies>"
+            + "</project>";
+
+    private final PomModelService pomModelService = new PomModelService();
+
+    @Test
+    public void testReadsCoordinatesInheritedFromParent() throws IOException {
+        PomModel pom = read(CHILD_POM);
+        assertEquals("Apache Sling Child", pom.name());
+        assertEquals("org.apache.sling", pom.groupId());
+        assertEquals("child", pom.artifactId());
+        assertEquals("3.4.5", pom.version());
+        assertEquals("jar", pom.packaging());
+        assertEquals("parent", pom.parentArtifactId());
+        assertEquals("", pom.scmUrl());
+    }
+
+    @Test
+    public void testReadsScm() throws IOException, URISyntaxException {
+        PomModel pom = pomModelService.read(Path.of(
+                PomModelServiceTest.class.getResource("/ci/repo-1.0.pom").toURI()));
+        assertEquals("repo-pom-1.0", pom.scmTag());
+        assertEquals("https://gitbox.apache.org/repos/asf?p=sling-repo-pom.git", pom.scmUrl());
+    }
+
+    @Test
+    public void testParsesEachPomOnlyOnce() throws IOException {
+        // the same content read from a stream and from a file resolves to the same cached model
+        Path file = Files.createTempFile("child", ".pom");
+        try {
+            Files.writeString(file, CHILD_POM);
+            PomModel fromStream = read(CHILD_POM);
+            assertSame(fromStream, pomModelService.read(file));
+            assertSame(fromStream, read(CHILD_POM));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStopsReadingOnceAllFieldsAreKnown() throws IOException {
+        // everything the model needs is declared before <build>, so the broken remainder is never read
+        PomModel pom = read("<project>"
+                + "<parent>"
+                + "<groupId>org.apache.sling</groupId><artifactId>sling</artifactId><version>66</version>"
+                + "</parent>"
+                + "<groupId>org.apache.sling</groupId>"
+                + "<artifactId>org.apache.sling.foo</artifactId>"
+                + "<version>1.2.0</version>"
+                + "<packaging>pom</packaging>"
+                + "<name>Apache Sling Foo</name>"
+                + "<scm><url>https://github.com/apache/sling-foo</url><tag>foo-1.2.0</tag></scm>"
+                + "<build><plugins><plugin>");
+        assertEquals("Apache Sling Foo", pom.name());
+        assertEquals("pom", pom.packaging());
+        assertEquals("foo-1.2.0", pom.scmTag());
+    }
+
+    @Test
+    public void testStopsReadingPomsWithoutPackaging() throws IOException {
+        // a jar leaves out <packaging>, which can no longer follow once <dependencies> is reached
+        PomModel pom = read("<project>"
+                + "<parent>"
+                + "<groupId>org.apache.sling</groupId><artifactId>sling</artifactId><version>66</version>"
+                + "</parent>"
+                + "<artifactId>org.apache.sling.foo</artifactId>"
+                + "<name>Apache Sling Foo</name>"
+                + "<dependencies><dependency><groupId>other</groupId></dependency></dependencies>"
+                + "<scm><url>https://github.com/apache/sling-foo</url><tag>foo-1.2.0</tag></scm>"
+                + "<build><plugins><plugin>");
+        assertEquals("org.apache.sling", pom.groupId());
+        assertEquals("66", pom.version());
+        assertEquals("jar", pom.packaging());
+        assertEquals("foo-1.2.0", pom.scmTag());
+    }
+
+    @Test
+    public void testReadsFieldsDeclaredAfterTheBuild() throws IOException {
+        // Maven accepts the elements of <project> in any order
+        PomModel pom = read("<project>"
+                + "<groupId>org.apache.sling</groupId>"
+                + "<artifactId>org.apache.sling.foo</artifactId>"
+                + "<version>1.2.0</version>"
+                + "<dependencies><dependency><groupId>other</groupId><name>dependency</name></dependency></dependencies>"
+                + "<build><plugins><plugin><artifactId>maven-bundle-plugin</artifactId></plugin></plugins></build>"
+                + "<profiles><profile><id>release</id></profile></profiles>"
+                + "<name>Apache Sling Foo</name>"
+                + "<scm><url>https://github.com/apache/sling-foo</url><tag>foo-1.2.0</tag></scm>"
+                + "</project>");
+        assertEquals("org.apache.sling.foo", pom.artifactId());
+        assertEquals("jar", pom.packaging());
+        assertEquals("Apache Sling Foo", pom.name());
+        assertEquals("https://github.com/apache/sling-foo", pom.scmUrl());
+        assertEquals("foo-1.2.0", pom.scmTag());
+    }
+
+    @Test
+    public void testIgnoresNestedElementsWithTheSameNames() throws IOException {
+        PomModel pom = read("<project>"
+                + "<artifactId>foo</artifactId>"
+                + "<dependencies><dependency><groupId>other</groupId><version>9</version></dependency></dependencies>"
+                + "<profiles><profile><build><finalName>x</finalName></build><name>profile</name></profile></profiles>"
+                + "</project>");
+        assertEquals("", pom.groupId());
+        assertEquals("", pom.version());
+        assertEquals("", pom.name());
+    }
+
+    @Test
+    public void testRejectsInvalidPoms() {
+        assertThrows(IOException.class, () -> read("this is not xml"));
+        assertThrows(IOException.class, () -> read("<settings/>"));
+    }
+
+    private PomModel read(String pomXml) throws IOException {
+        try (InputStream stream = new ByteArrayInputStream(pomXml.getBytes(StandardCharsets.UTF_8))) {
+            return pomModelService.read(stream);
+        }
+    }
+}
@@ -18,6 +18,9 @@
  */
 package org.apache.sling.cli.impl.release;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
@@ -38,6 +41,8 @@ import picocli.CommandLine;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
@@ -78,7 +83,7 @@ public class CloseStagingCommandTest {
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
         assertTrue(logCapture.containsMessage(
                 "Would close staging repository orgapachesling-123 with description \"Apache Sling CLI Test 1.0.0\"."));
-        verify(repositoryService, never()).close(any(), any());
+        verify(repositoryService, never()).closeAll(any(), any(), anyBoolean());
     }
 
     @Test
@@ -89,7 +94,7 @@ public class CloseStagingCommandTest {
             userInputMock.when(() -> UserInput.yesNo(question, InputOption.YES)).thenReturn(InputOption.YES);
             Command command = createCommand(123, ExecutionMode.INTERACTIVE);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-            verify(repositoryService).close(stagingRepository, "Apache Sling CLI Test 1.0.0");
+            verify(repositoryService).closeAll(List.of(stagingRepository), "Apache Sling CLI Test 1.0.0", false);
         }
     }
 
@@ -97,7 +102,32 @@ public class CloseStagingCommandTest {
     public void testAuto() throws Exception {
         Command command = createCommand(123, ExecutionMode.AUTO);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-        verify(repositoryService, times(1)).close(stagingRepository, "Apache Sling CLI Test 1.0.0");
+        verify(repositoryService, times(1)).closeAll(List.of(stagingRepository), "Apache Sling CLI Test 1.0.0", false);
+        verify(repositoryService, never()).awaitClosed(any(), any());
+        assertTrue(logCapture.containsMessage("Close of repository orgapachesling-123 requested. Nexus evaluates the "
+                + "staging rules asynchronously; pass --wait to wait for the outcome."));
+    }
+
+    @Test
+    public void testWaitAwaitsClose() throws Exception {
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        enableWait(command);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        verify(repositoryService).closeAll(List.of(stagingRepository), "Apache Sling CLI Test 1.0.0", true);
+        verify(repositoryService).awaitClosed(List.of(stagingRepository), Duration.ofSeconds(900));
+        assertTrue(logCapture.containsMessage(
+                "Done. Staging repository orgapachesling-123 closed and ready for verification and voting."));
+    }
+
+    @Test
+    public void testWaitReportsFailedClose() throws Exception {
+        doThrow(new IOException("Nexus could not close staging repository orgapachesling-123: Missing Signature"))
+                .when(repositoryService)
+                .awaitClosed(any(), any());
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        enableWait(command);
+        assertEquals(CommandLine.ExitCode.SOFTWARE, (int) command.call());
+        assertTrue(logCapture.containsMessage("Failed executing command"));
     }
 
     @Test
@@ -107,7 +137,7 @@ public class CloseStagingCommandTest {
             Command command = createCommand(123, ExecutionMode.INTERACTIVE);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
             assertTrue(logCapture.containsMessage("Aborted."));
-            verify(repositoryService, never()).close(any(), any());
+            verify(repositoryService, never()).closeAll(any(), any(), anyBoolean());
         }
     }
 
@@ -118,7 +148,32 @@ public class CloseStagingCommandTest {
         when(repositoryService.getReleasesFromContent(stagingRepository)).thenReturn(Set.of());
         Command command = createCommand(123, ExecutionMode.AUTO);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-        verify(repositoryService).close(stagingRepository, "Apache Sling CLI Test 1.0.0");
+        verify(repositoryService).closeAll(List.of(stagingRepository), "Apache Sling CLI Test 1.0.0", false);
+    }
+
+    @Test
+    public void testRepositoriesWithTheSameDescriptionAreClosedInOneRequest() throws Exception {
+        StagingRepository other = addRepository(124, "Apache Sling CLI Test 1.0.0");
+        StagingRepository different = addRepository(125, "Apache Sling CLI Other 2.0.0");
+        Command command = createCommand(List.of(123, 124, 125), ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        verify(repositoryService).closeAll(List.of(stagingRepository, other), "Apache Sling CLI Test 1.0.0", false);
+        verify(repositoryService).closeAll(List.of(different), "Apache Sling CLI Other 2.0.0", false);
+        assertTrue(logCapture.containsMessage(
+                "Close of repositories orgapachesling-123, orgapachesling-124, orgapachesling-125 requested."));
+    }
+
+    @Test
+    public void testInteractiveQuestionCoversAllRepositories() throws Exception {
+        addRepository(124, "Apache Sling CLI Other 2.0.0");
+        try (MockedStatic<UserInput> userInputMock = mockStatic(UserInput.class)) {
+            String question = "Close staging repositories orgapachesling-123 with description \"Apache Sling CLI Test"
+                    + " 1.0.0\", orgapachesling-124 with description \"Apache Sling CLI Other 2.0.0\"?";
+            userInputMock.when(() -> UserInput.yesNo(question, InputOption.YES)).thenReturn(InputOption.YES);
+            Command command = createCommand(List.of(123, 124), ExecutionMode.INTERACTIVE);
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+            verify(repositoryService, times(2)).closeAll(any(), any(), anyBoolean());
+        }
     }
 
     @Test
@@ -130,8 +185,13 @@ public class CloseStagingCommandTest {
     }
 
     private Command createCommand(int repositoryId, ExecutionMode executionMode) throws IllegalAccessException {
+        return createCommand(List.of(repositoryId), executionMode);
+    }
+
+    private Command createCommand(List<Integer> repositoryIds, ExecutionMode executionMode)
+            throws IllegalAccessException {
         CloseStagingCommand closeStagingCommand = spy(new CloseStagingCommand());
-        FieldUtils.writeField(closeStagingCommand, "repositoryId", repositoryId, true);
+        FieldUtils.writeField(closeStagingCommand, "repositoryIds", repositoryIds, true);
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
         FieldUtils.writeField(closeStagingCommand, "reusableCLIOptions", reusableCLIOptions, true);
@@ -142,4 +202,19 @@ public class CloseStagingCommandTest {
                 result instanceof CloseStagingCommand);
         return result;
     }
+
+    private StagingRepository addRepository(int id, String release) throws IOException {
+        StagingRepository repository = mock(StagingRepository.class);
+        when(repository.getRepositoryId()).thenReturn("orgapachesling-" + id);
+        when(repositoryService.findAny(id)).thenReturn(repository);
+        when(repositoryService.getReleasesFromContent(repository))
+                .thenReturn(Set.of(Release.fromString(release).get(0)));
+        return repository;
+    }
+
+    private static void enableWait(Command command) throws IllegalAccessException {
+        StagingWaitOptions waitOptions = new StagingWaitOptions();
+        waitOptions.wait = true;
+        FieldUtils.writeField(command, "waitOptions", waitOptions, true);
+    }
 }
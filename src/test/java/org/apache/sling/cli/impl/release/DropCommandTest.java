@@ -18,6 +18,8 @@
  */
 package org.apache.sling.cli.impl.release;
 
+import java.util.List;
+
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.sling.cli.impl.Command;
 import org.apache.sling.cli.impl.ExecutionMode;
@@ -72,7 +74,7 @@ public class DropCommandTest {
     public void testDryRun() throws Exception {
         Command command = createCommand(123, ExecutionMode.DRY_RUN);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-        verify(repositoryService, never()).drop(any());
+        verify(repositoryService, never()).dropAll(any());
         assertTrue(logCapture.containsMessage("Would drop staging repository"));
     }
 
@@ -82,7 +84,7 @@ public class DropCommandTest {
             userInputMock.when(() -> UserInput.yesNo(anyString(), any())).thenReturn(InputOption.YES);
             Command command = createCommand(123, ExecutionMode.INTERACTIVE);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-            verify(repositoryService, times(1)).drop(stagingRepository);
+            verify(repositoryService, times(1)).dropAll(List.of(stagingRepository));
         }
     }
 
@@ -92,7 +94,7 @@ public class DropCommandTest {
             userInputMock.when(() -> UserInput.yesNo(anyString(), any())).thenReturn(InputOption.NO);
             Command command = createCommand(123, ExecutionMode.INTERACTIVE);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-            verify(repositoryService, never()).drop(any());
+            verify(repositoryService, never()).dropAll(any());
             assertTrue(logCapture.containsMessage("Aborted."));
         }
     }
@@ -101,12 +103,34 @@ public class DropCommandTest {
     public void testAuto() throws Exception {
         Command command = createCommand(123, ExecutionMode.AUTO);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-        verify(repositoryService, times(1)).drop(stagingRepository);
+        verify(repositoryService, times(1)).dropAll(List.of(stagingRepository));
+    }
+
+    @Test
+    public void testSeveralRepositoriesAreDroppedInOneRequest() throws Exception {
+        StagingRepository other = mock(StagingRepository.class);
+        when(other.getRepositoryId()).thenReturn("orgapachesling-124");
+        when(other.getDescription()).thenReturn("Apache Sling CLI Other 2.0.0");
+        when(repositoryService.findAny(124)).thenReturn(other);
+        try (MockedStatic<UserInput> userInputMock = mockStatic(UserInput.class)) {
+            String question = "Drop staging repositories orgapachesling-123 (Apache Sling CLI Test 1.0.0),"
+                    + " orgapachesling-124 (Apache Sling CLI Other 2.0.0)? This cannot be undone.";
+            userInputMock.when(() -> UserInput.yesNo(question, InputOption.NO)).thenReturn(InputOption.YES);
+            // a repeated id is dropped only once
+            Command command = createCommand(List.of(123, 124, 123), ExecutionMode.INTERACTIVE);
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+            verify(repositoryService).dropAll(List.of(stagingRepository, other));
+        }
     }
 
     private Command createCommand(int repositoryId, ExecutionMode executionMode) throws IllegalAccessException {
+        return createCommand(List.of(repositoryId), executionMode);
+    }
+
+    private Command createCommand(List<Integer> repositoryIds, ExecutionMode executionMode)
+            throws IllegalAccessException {
         DropCommand dropCommand = spy(new DropCommand());
-        FieldUtils.writeField(dropCommand, "repositoryId", repositoryId, true);
+        FieldUtils.writeField(dropCommand, "repositoryIds", repositoryIds, true);
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
         FieldUtils.writeField(dropCommand, "reusableCLIOptions", reusableCLIOptions, true);
@@ -18,18 +18,27 @@
  */
 package org.apache.sling.cli.impl.release;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.sling.cli.impl.Command;
 import org.apache.sling.cli.impl.Credentials;
 import org.apache.sling.cli.impl.CredentialsService;
 import org.apache.sling.cli.impl.ExecutionMode;
+import org.apache.sling.cli.impl.InputOption;
+import org.apache.sling.cli.impl.UserInput;
 import org.apache.sling.cli.impl.http.HttpClientFactory;
 import org.apache.sling.cli.impl.jira.VersionClient;
 import org.apache.sling.cli.impl.junit.LogCapture;
@@ -42,6 +51,8 @@ import org.apache.sling.cli.impl.people.MembersFinder;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockedStatic;
 import picocli.CommandLine;
 
@@ -49,13 +60,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,6 +87,9 @@ public class FinalizeCommandTest {
     @Rule
     public final LogCapture logCapture = new LogCapture(FinalizeCommand.class);
 
+    @Rule
+    public final TemporaryFolder journalFolder = new TemporaryFolder();
+
     private RepositoryService repositoryService;
     private VersionClient versionClient;
     private CloseableHttpClient client;
@@ -136,7 +159,7 @@ public class FinalizeCommandTest {
     public void testDryRunPmc() throws Exception {
         prepare(true);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class)) {
-            dist.when(() -> UpdateDistCommand.planDistRelease(any(), any(), any()))
+            dist.when(() -> UpdateDistCommand.planDistRelease(any(), any(), any(), any()))
                     .thenReturn(new UpdateDistCommand.DistReleasePlan(
                             "org.apache.sling.cli.test",
                             "1.0.0",
@@ -144,10 +167,12 @@ public class FinalizeCommandTest {
                             List.of("org.apache.sling.cli.test-0.9.0.pom"),
                             false));
             Command command = createCommand(123, ExecutionMode.DRY_RUN);
+            // static mocks only apply to the calling thread, so the steps have to run on it
+            FieldUtils.writeField(command, "parallelism", 1, true);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
             assertTrue(logCapture.containsMessage("--- Step 1/5: Update dist.apache.org ---"));
             // dry-run: dist is described, not committed
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()), never());
+            dist.verify(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()), never());
         }
     }
 
@@ -165,11 +190,31 @@ public class FinalizeCommandTest {
                 + " PMC member; a PMC member must update dist.apache.org separately) ---"));
     }
 
+    @Test
+    public void testInteractiveRunsStepsOnTheConsoleThread() throws Exception {
+        prepare(false);
+        Set<Thread> stepThreads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> stepThreads.add(Thread.currentThread()))
+                .when(repositoryService)
+                .promote(any());
+        doAnswer(invocation -> stepThreads.add(Thread.currentThread()))
+                .when(versionClient)
+                .release(any(), any());
+        try (MockedStatic<UserInput> userInput = mockStatic(UserInput.class)) {
+            userInput.when(() -> UserInput.yesNo(anyString(), any())).thenReturn(InputOption.YES);
+            // the default parallelism is left in place, yet only one step at a time may ask for confirmation
+            Command command = createCommand(123, ExecutionMode.INTERACTIVE);
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        }
+        assertEquals(Set.of(Thread.currentThread()), stepThreads);
+    }
+
     @Test
     public void testAutoPmc() throws Exception {
         prepare(true);
+        ArgumentCaptor<SvnSessionPool> sessions = ArgumentCaptor.forClass(SvnSessionPool.class);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class)) {
-            dist.when(() -> UpdateDistCommand.planDistRelease(any(), any(), any()))
+            dist.when(() -> UpdateDistCommand.planDistRelease(any(), any(), any(), any()))
                     .thenReturn(new UpdateDistCommand.DistReleasePlan(
                             "org.apache.sling.cli.test",
                             "1.0.0",
@@ -177,11 +222,21 @@ public class FinalizeCommandTest {
                             List.of("org.apache.sling.cli.test-0.9.0.pom"),
                             false));
             Command command = createCommand(123, ExecutionMode.AUTO);
+            // static mocks only apply to the calling thread, so the steps have to run on it
+            FieldUtils.writeField(command, "parallelism", 1, true);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
             verify(repositoryService).promote(any());
             // dist upload is actually committed for a PMC member
+            // the listing and the commit share one session
+            dist.verify(() ->
+                    UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), sessions.capture()));
             dist.verify(() -> UpdateDistCommand.publishToDistRelease(
-                    eq("org.apache.sling.cli.test"), eq("1.0.0"), any(), any(), any()));
+                    argThat(plans -> plans.size() == 1
+                            && "org.apache.sling.cli.test".equals(plans.get(0).artifactId())
+                            && "1.0.0".equals(plans.get(0).newVersion())),
+                    any(),
+                    eq(UpdateDistCommand.DIST_RELEASE_URL),
+                    same(sessions.getValue())));
             verify(versionClient).release(any(), any());
         }
     }
@@ -329,6 +384,155 @@ public class FinalizeCommandTest {
         verify(versionClient).release(any(), isNull());
     }
 
+    @Test
+    public void testJiraStepsOfSeveralReleasesRunConcurrently() throws Exception {
+        prepare(false);
+        StagingRepository repository = repositoryService.find(123);
+        when(repositoryService.getReleases(repository))
+                .thenReturn(Set.copyOf(Release.fromString("Apache Sling CLI Test 1.0.0,Apache Sling CLI Other 2.0.0")));
+        // each JIRA release waits for the other one to start, which only succeeds if they run at the same time
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        doAnswer(invocation -> barrier.await(10, TimeUnit.SECONDS))
+                .when(versionClient)
+                .release(any(), any());
+
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+        verify(versionClient, times(2)).release(any(), any());
+        assertTrue(logCapture.containsMessage("Critical path: update dist.apache.org"));
+    }
+
+    @Test
+    public void testFailedJiraStepDoesNotStopReporter() throws Exception {
+        prepare(false);
+        doThrow(new IOException("JIRA down")).when(versionClient).release(any(), any());
+
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.SOFTWARE, (int) command.call());
+
+        assertTrue(logCapture.containsMessage("Failed executing command"));
+        // the reporter does not depend on JIRA, so it is updated anyway and a re-run only has JIRA left to do
+        assertTrue(logCapture.containsMessage("Updated Apache Reporter for Apache Sling CLI Test 1.0.0"));
+    }
+
+    @Test
+    public void testFailedPromoteStopsLaterSteps() throws Exception {
+        prepare(false);
+        doThrow(new IOException("Nexus down")).when(repositoryService).promote(any());
+
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.SOFTWARE, (int) command.call());
+
+        verify(versionClient, never()).release(any(), any());
+        // the reporter overview may have been prefetched, but nothing is added
+        verify(client, never()).execute(any(HttpPost.class));
+    }
+
+    @Test
+    public void testResumeSkipsJournaledStepsWithoutRemoteCalls() throws Exception {
+        prepare(false);
+        doThrow(new IOException("JIRA down")).when(versionClient).release(any(), any());
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.SOFTWARE, (int) command.call());
+
+        // resume by name once JIRA is back: promote, the JIRA successor and the reporter are journaled
+        doNothing().when(versionClient).release(any(), any());
+        clearInvocations(versionClient, client, repositoryService);
+        FieldUtils.writeField(command, "repositoryId", null, true);
+        FieldUtils.writeField(command, "releaseName", "Apache Sling CLI Test 1.0.0", true);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+        verify(versionClient).release(any(), isNull());
+        verify(versionClient, never()).findSuccessorVersion(any());
+        verify(versionClient, never()).findUnresolvedIssues(any());
+        verify(client, never()).execute(any());
+        assertTrue(logCapture.containsMessage("SKIPPED (the finalize journal records it as completed: promoted"));
+        assertTrue(logCapture.containsMessage("SKIPPED (the finalize journal records it as completed: added)"));
+    }
+
+    @Test
+    public void testJournalOfAnEarlierStagingIsNotReused() throws Exception {
+        prepare(false);
+        // an aborted attempt to finalize the same release, staged in another repository
+        Release release = Release.fromString("Apache Sling CLI Test 1.0.0").get(0);
+        FinalizeJournal earlier = new FinalizeJournal(journalFolder.getRoot().toPath());
+        earlier.bind(release, "orgapachesling-99");
+        earlier.record(release, FinalizeJournal.STEP_PROMOTE, "promoted orgapachesling-99");
+        earlier.record(release, FinalizeJournal.STEP_RELEASE_JIRA_VERSION, "released");
+
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+        verify(repositoryService).promote(any());
+        verify(versionClient).release(any(), any());
+        assertTrue(logCapture.containsMessage("Discarding the finalize journal of Apache Sling CLI Test 1.0.0"));
+    }
+
+    @Test
+    public void testJournalIsRemovedOnceAllStepsAreDone() throws Exception {
+        prepare(false);
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        assertEquals(0, journalFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testIgnoreJournalChecksRemoteState() throws Exception {
+        prepare(false);
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+        clearInvocations(versionClient, client);
+        FieldUtils.writeField(command, "repositoryId", null, true);
+        FieldUtils.writeField(command, "releaseName", "Apache Sling CLI Test 1.0.0", true);
+        FieldUtils.writeField(command, "ignoreJournal", true, true);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+        verify(versionClient).findSuccessorVersion(any());
+        verify(versionClient).release(any(), any());
+        verify(client, atLeastOnce()).execute(any());
+    }
+
+    @Test
+    public void testDryRunDoesNotJournal() throws Exception {
+        prepare(false);
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        assertEquals(0, journalFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testJiraStateIsPrefetchedBeforePromotion() throws Exception {
+        prepare(false);
+        CountDownLatch prefetched = new CountDownLatch(1);
+        AtomicBoolean promoted = new AtomicBoolean();
+        when(versionClient.findSuccessorVersion(any())).thenAnswer(invocation -> {
+            prefetched.countDown();
+            return mock(org.apache.sling.cli.impl.jira.Version.class);
+        });
+        when(versionClient.findUnresolvedIssues(any())).thenAnswer(invocation -> {
+            // the unresolved issues may change until they are moved, so they are never read ahead
+            assertTrue("unresolved issues were read before the promotion", promoted.get());
+            return List.of();
+        });
+        // promotion only completes once the JIRA state was read in the background
+        doAnswer(invocation -> {
+                    assertTrue(prefetched.await(10, TimeUnit.SECONDS));
+                    promoted.set(true);
+                    return null;
+                })
+                .when(repositoryService)
+                .promote(any());
+
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+        // the prefetched successor is used instead of being read again
+        verify(versionClient, times(1)).findSuccessorVersion(any());
+        verify(versionClient, times(1)).findUnresolvedIssues(any());
+    }
+
     private Command createCommand(int repositoryId, ExecutionMode executionMode) throws IllegalAccessException {
         return createCommand(repositoryId, executionMode, false);
     }
@@ -339,7 +543,8 @@ public class FinalizeCommandTest {
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
         FieldUtils.writeField(finalizeCommand, "reusableCLIOptions", reusableCLIOptions, true);
-        osgiContext.registerInjectActivateService(finalizeCommand);
+        osgiContext.registerInjectActivateService(
+                finalizeCommand, "finalize.journal.dir", journalFolder.getRoot().getAbsolutePath());
         Command result = osgiContext.getService(Command.class);
         assertTrue(
                 "Expected to retrieve the FinalizeCommand from the mocked OSGi environment.",
@@ -355,7 +560,8 @@ public class FinalizeCommandTest {
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
         FieldUtils.writeField(finalizeCommand, "reusableCLIOptions", reusableCLIOptions, true);
-        osgiContext.registerInjectActivateService(finalizeCommand);
+        osgiContext.registerInjectActivateService(
+                finalizeCommand, "finalize.journal.dir", journalFolder.getRoot().getAbsolutePath());
         Command result = osgiContext.getService(Command.class);
         assertTrue(
                 "Expected to retrieve the FinalizeCommand from the mocked OSGi environment.",
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FinalizeJournalTest {
+
+    private static final Release FOO =
+            Release.fromString("Apache Sling Foo 1.0.0").get(0);
+    private static final Release BAR =
+            Release.fromString("Apache Sling Bar 2.0.0").get(0);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEntriesSurviveAcrossInstances() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        new FinalizeJournal(directory).record(FOO, FinalizeJournal.STEP_PROMOTE, "promoted orgapachesling-1");
+
+        FinalizeJournal reopened = new FinalizeJournal(directory);
+        assertEquals("promoted orgapachesling-1", reopened.outcome(FOO, FinalizeJournal.STEP_PROMOTE));
+        assertNull(reopened.outcome(FOO, FinalizeJournal.STEP_UPDATE_REPORTER));
+        assertNull(reopened.outcome(BAR, FinalizeJournal.STEP_PROMOTE));
+    }
+
+    @Test
+    public void testStepIsCompletedOnlyForAllReleases() throws Exception {
+        FinalizeJournal journal = new FinalizeJournal(folder.getRoot().toPath());
+        journal.record(FOO, FinalizeJournal.STEP_PROMOTE, "promoted");
+        assertTrue(journal.isCompleted(List.of(FOO), FinalizeJournal.STEP_PROMOTE));
+        assertFalse(journal.isCompleted(List.of(FOO, BAR), FinalizeJournal.STEP_PROMOTE));
+
+        journal.record(List.of(FOO, BAR), FinalizeJournal.STEP_UPDATE_DIST, "published");
+        assertTrue(journal.isCompleted(List.of(FOO, BAR), FinalizeJournal.STEP_UPDATE_DIST));
+        assertFalse(journal.isCompleted(List.of(), FinalizeJournal.STEP_UPDATE_DIST));
+    }
+
+    @Test
+    public void testTornLineIsIgnored() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        FinalizeJournal journal = new FinalizeJournal(directory);
+        journal.record(FOO, FinalizeJournal.STEP_PROMOTE, "promoted");
+        Path file;
+        try (var files = Files.list(directory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        // a crash in the middle of appending the next entry
+        String torn = "2026-01-01T00:00:00Z\trelease-jira-version\trel";
+        Files.writeString(file, torn, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        FinalizeJournal reopened = new FinalizeJournal(directory);
+        assertNull(reopened.outcome(FOO, FinalizeJournal.STEP_RELEASE_JIRA_VERSION));
+        reopened.record(FOO, FinalizeJournal.STEP_UPDATE_REPORTER, "added\tto the reporter");
+
+        FinalizeJournal again = new FinalizeJournal(directory);
+        assertEquals("promoted", again.outcome(FOO, FinalizeJournal.STEP_PROMOTE));
+        assertNull(again.outcome(FOO, FinalizeJournal.STEP_RELEASE_JIRA_VERSION));
+        assertEquals("added to the reporter", again.outcome(FOO, FinalizeJournal.STEP_UPDATE_REPORTER));
+    }
+
+    @Test
+    public void testEntriesOfAnotherStagingRepositoryAreDiscarded() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        FinalizeJournal aborted = new FinalizeJournal(directory);
+        aborted.bind(FOO, "orgapachesling-1");
+        aborted.record(FOO, FinalizeJournal.STEP_UPDATE_DIST, "published 4 file(s)");
+
+        FinalizeJournal sameStaging = new FinalizeJournal(directory);
+        assertFalse(sameStaging.bind(FOO, "orgapachesling-1"));
+        assertEquals("published 4 file(s)", sameStaging.outcome(FOO, FinalizeJournal.STEP_UPDATE_DIST));
+
+        FinalizeJournal restaged = new FinalizeJournal(directory);
+        assertTrue(restaged.bind(FOO, "orgapachesling-2"));
+        assertNull(restaged.outcome(FOO, FinalizeJournal.STEP_UPDATE_DIST));
+        // nothing changes on disk until the first step for the new staging repository completes
+        assertEquals(
+                "published 4 file(s)", new FinalizeJournal(directory).outcome(FOO, FinalizeJournal.STEP_UPDATE_DIST));
+
+        restaged.record(FOO, FinalizeJournal.STEP_PROMOTE, "promoted orgapachesling-2");
+        FinalizeJournal reopened = new FinalizeJournal(directory);
+        assertNull(reopened.outcome(FOO, FinalizeJournal.STEP_UPDATE_DIST));
+        assertEquals("promoted orgapachesling-2", reopened.outcome(FOO, FinalizeJournal.STEP_PROMOTE));
+        assertFalse(reopened.bind(FOO, "orgapachesling-2"));
+    }
+
+    @Test
+    public void testJournalIsRemovedOnceTheLastStepsAreRecorded() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        FinalizeJournal journal = new FinalizeJournal(directory);
+        journal.record(FOO, FinalizeJournal.STEP_PROMOTE, "promoted");
+        journal.record(FOO, FinalizeJournal.STEP_CREATE_NEXT_JIRA_VERSION, "successor version in place");
+        journal.record(FOO, FinalizeJournal.STEP_RELEASE_JIRA_VERSION, "released");
+        assertFalse(journal.removeIfFinished(FOO));
+        assertEquals(1, directory.toFile().list().length);
+
+        journal.record(FOO, FinalizeJournal.STEP_UPDATE_REPORTER, "added");
+        assertTrue(journal.removeIfFinished(FOO));
+        assertEquals(0, directory.toFile().list().length);
+        assertNull(journal.outcome(FOO, FinalizeJournal.STEP_PROMOTE));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.sling.cli.impl.http.HttpClientFactory;
+import org.apache.sling.cli.impl.jira.Issue;
+import org.apache.sling.cli.impl.jira.Version;
+import org.apache.sling.cli.impl.jira.VersionClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FinalizePrefetchTest {
+
+    private static final Release RELEASE =
+            Release.fromString("Apache Sling Foo 1.0.0").get(0);
+
+    private VersionClient versionClient;
+    private HttpClientFactory httpClientFactory;
+
+    @Before
+    public void before() {
+        versionClient = mock(VersionClient.class);
+        httpClientFactory = mock(HttpClientFactory.class);
+    }
+
+    @Test
+    public void testPrefetchedValueIsHandedOutOnce() throws Exception {
+        Version successor = mock(Version.class);
+        when(versionClient.findSuccessorVersion(RELEASE)).thenReturn(successor);
+        try (FinalizePrefetch prefetch = start(false, RELEASE)) {
+            assertSame(successor, prefetch.findSuccessorVersion(RELEASE));
+            verify(versionClient, times(1)).findSuccessorVersion(RELEASE);
+            // a second read may follow a write, so it goes to JIRA
+            assertSame(successor, prefetch.findSuccessorVersion(RELEASE));
+            verify(versionClient, times(2)).findSuccessorVersion(RELEASE);
+        }
+    }
+
+    @Test
+    public void testMissingSuccessorIsNotReadAgain() throws Exception {
+        try (FinalizePrefetch prefetch = start(false, RELEASE)) {
+            assertNull(prefetch.findSuccessorVersion(RELEASE));
+            verify(versionClient, times(1)).findSuccessorVersion(RELEASE);
+        }
+    }
+
+    @Test
+    public void testInvalidateDropsPrefetchedValues() throws Exception {
+        Version successor = mock(Version.class);
+        when(versionClient.findSuccessorVersion(RELEASE)).thenReturn(null, successor);
+        try (FinalizePrefetch prefetch = start(false, RELEASE)) {
+            // wait for the prefetch, then report a write
+            verify(versionClient, timeout(10_000)).findSuccessorVersion(RELEASE);
+            prefetch.invalidate(RELEASE);
+
+            assertSame(successor, prefetch.findSuccessorVersion(RELEASE));
+            verify(versionClient, times(2)).findSuccessorVersion(RELEASE);
+        }
+    }
+
+    @Test
+    public void testFailedPrefetchIsReadAgain() throws Exception {
+        Version successor = mock(Version.class);
+        when(versionClient.findSuccessorVersion(RELEASE))
+                .thenThrow(new IllegalStateException("JIRA hiccup"))
+                .thenReturn(successor);
+        try (FinalizePrefetch prefetch = start(false, RELEASE)) {
+            assertSame(successor, prefetch.findSuccessorVersion(RELEASE));
+        }
+    }
+
+    @Test
+    public void testUnresolvedIssuesAreReadWhenTheyAreMoved() throws Exception {
+        Issue issue = mock(Issue.class);
+        when(versionClient.findUnresolvedIssues(RELEASE)).thenReturn(List.of(issue));
+        try (FinalizePrefetch prefetch = start(false, RELEASE)) {
+            prefetch.findSuccessorVersion(RELEASE);
+            verify(versionClient, never()).findUnresolvedIssues(RELEASE);
+
+            assertEquals(List.of(issue), prefetch.findUnresolvedIssues(RELEASE));
+            verify(versionClient, times(1)).findUnresolvedIssues(RELEASE);
+        }
+    }
+
+    @Test
+    public void testReporterReleasesArePrefetched() throws Exception {
+        CloseableHttpClient prefetchClient = mock(CloseableHttpClient.class);
+        CloseableHttpClient stepClient = mock(CloseableHttpClient.class);
+        when(httpClientFactory.newClient()).thenReturn(prefetchClient);
+        try (FinalizePrefetch prefetch = start(true)) {
+            // the mocked client gives no answer, which the reporter treats as no releases listed yet
+            assertEquals(Set.of(), prefetch.fetchRegisteredReleaseNames(stepClient));
+        }
+        verify(prefetchClient).execute(any());
+        verify(stepClient, never()).execute(any());
+    }
+
+    private FinalizePrefetch start(boolean reporter, Release... jiraReleases) {
+        return FinalizePrefetch.start(versionClient, httpClientFactory, List.of(jiraReleases), reporter);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class PreparedDeltaTest {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testChecksumIsTheMd5OfTheFullText() throws Exception {
+        // larger than a single 100 KB delta window
+        byte[] content = randomBytes(300 * 1024);
+        PreparedDelta delta = PreparedDelta.compute("file.zip", new ByteArrayInputStream(content));
+        assertEquals(Hex.toHexString(MessageDigest.getInstance("MD5").digest(content)), delta.getChecksum());
+    }
+
+    @Test
+    public void testPrepareStaysWithinTheBudget() throws Exception {
+        Path small = write("small.pom", 10);
+        Path large = write("large.zip", 1000);
+        Path other = write("other.pom.asc", 10);
+
+        Map<Path, PreparedDelta> prepared = PreparedDelta.prepare(List.of(small, large, other), 100);
+
+        // the large file is left for the commit to stream, the files after it are still prepared
+        assertEquals(Set.of(small, other), prepared.keySet());
+    }
+
+    private Path write(String name, int size) throws Exception {
+        Path file = tempFolder.getRoot().toPath().resolve(name);
+        Files.write(file, randomBytes(size));
+        return file;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
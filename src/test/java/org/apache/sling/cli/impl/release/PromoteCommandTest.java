@@ -18,6 +18,8 @@
  */
 package org.apache.sling.cli.impl.release;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
@@ -38,6 +40,7 @@ import picocli.CommandLine;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
@@ -76,7 +79,7 @@ public class PromoteCommandTest {
     public void testDryRun() throws Exception {
         Command command = createCommand(123, ExecutionMode.DRY_RUN);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-        verify(repositoryService, never()).promote(any());
+        verify(repositoryService, never()).promoteAll(any(), anyBoolean());
         assertTrue(logCapture.containsMessage("Would promote"));
     }
 
@@ -86,7 +89,7 @@ public class PromoteCommandTest {
             userInputMock.when(() -> UserInput.yesNo(anyString(), any())).thenReturn(InputOption.YES);
             Command command = createCommand(123, ExecutionMode.INTERACTIVE);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-            verify(repositoryService, times(1)).promote(stagingRepository);
+            verify(repositoryService, times(1)).promoteAll(List.of(stagingRepository), false);
         }
     }
 
@@ -94,12 +97,46 @@ public class PromoteCommandTest {
     public void testAuto() throws Exception {
         Command command = createCommand(123, ExecutionMode.AUTO);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
-        verify(repositoryService, times(1)).promote(stagingRepository);
+        verify(repositoryService, times(1)).promoteAll(List.of(stagingRepository), false);
+        verify(repositoryService, never()).awaitPromoted(any(), any());
+    }
+
+    @Test
+    public void testSeveralRepositoriesArePromotedInOneRequest() throws Exception {
+        StagingRepository other = mock(StagingRepository.class);
+        when(other.getRepositoryId()).thenReturn("orgapachesling-124");
+        when(repositoryService.find(124)).thenReturn(other);
+        when(repositoryService.getReleases(other))
+                .thenReturn(Set.of(
+                        Release.fromString("Apache Sling CLI Other 2.0.0").get(0)));
+        Command command = createCommand(List.of(123, 124), ExecutionMode.AUTO);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        verify(repositoryService).promoteAll(List.of(stagingRepository, other), false);
+        assertTrue(logCapture.containsMessage(
+                "Promoting Apache Sling CLI Test 1.0.0, Apache Sling CLI Other 2.0.0 to Maven Central..."));
+    }
+
+    @Test
+    public void testWaitAwaitsPromotion() throws Exception {
+        Command command = createCommand(123, ExecutionMode.AUTO);
+        StagingWaitOptions waitOptions = new StagingWaitOptions();
+        waitOptions.wait = true;
+        waitOptions.waitTimeoutSeconds = 60;
+        FieldUtils.writeField(command, "waitOptions", waitOptions, true);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        verify(repositoryService).promoteAll(List.of(stagingRepository), true);
+        verify(repositoryService).awaitPromoted(List.of(stagingRepository), Duration.ofSeconds(60));
+        assertTrue(logCapture.containsMessage("Done. Artifacts will appear on Maven Central within ~10 minutes."));
     }
 
     private Command createCommand(int repositoryId, ExecutionMode executionMode) throws IllegalAccessException {
+        return createCommand(List.of(repositoryId), executionMode);
+    }
+
+    private Command createCommand(List<Integer> repositoryIds, ExecutionMode executionMode)
+            throws IllegalAccessException {
         PromoteCommand promoteCommand = spy(new PromoteCommand());
-        FieldUtils.writeField(promoteCommand, "repositoryId", repositoryId, true);
+        FieldUtils.writeField(promoteCommand, "repositoryIds", repositoryIds, true);
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
         FieldUtils.writeField(promoteCommand, "reusableCLIOptions", reusableCLIOptions, true);
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.cli.impl.junit.LogCapture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class StepGraphTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StepGraphTest.class);
+
+    @Rule
+    public final LogCapture logCapture = new LogCapture(StepGraphTest.class);
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testStepsRunAfterTheirDependencies() throws Exception {
+        StepGraph graph = new StepGraph();
+        StepGraph.Step a = graph.add("a", record("a"));
+        StepGraph.Step b = graph.add("b", record("b"), a);
+        StepGraph.Step c = graph.add("c", record("c"), a);
+        graph.add("d", record("d"), b, c);
+
+        Map<StepGraph.Step, StepGraph.Timing> timings = graph.run(4, LOGGER);
+
+        assertEquals(4, ran.size());
+        assertEquals("a", ran.get(0));
+        assertEquals("d", ran.get(3));
+        assertEquals(4, timings.size());
+        assertTrue(logCapture.containsMessage("Critical path: a ("));
+    }
+
+    @Test
+    public void testIndependentStepsRunConcurrently() throws Exception {
+        // each step waits for the other one to start, which only succeeds if they run at the same time
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StepGraph graph = new StepGraph();
+        graph.add("a", () -> barrier.await(10, TimeUnit.SECONDS));
+        graph.add("b", () -> barrier.await(10, TimeUnit.SECONDS));
+
+        assertEquals(2, graph.run(2, LOGGER).size());
+    }
+
+    @Test
+    public void testParallelismOneRunsInOrderOnTheCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        StepGraph graph = new StepGraph();
+        for (String name : List.of("a", "b", "c")) {
+            graph.add(name, () -> {
+                threads.add(Thread.currentThread());
+                ran.add(name);
+            });
+        }
+
+        graph.run(1, LOGGER);
+
+        assertEquals(List.of("a", "b", "c"), ran);
+        assertTrue(threads.stream().allMatch(thread -> thread == caller));
+    }
+
+    @Test
+    public void testFailureSkipsDependentsOnly() {
+        IOException failure = new IOException("boom");
+        StepGraph graph = new StepGraph();
+        StepGraph.Step a = graph.add("a", () -> {
+            throw failure;
+        });
+        StepGraph.Step b = graph.add("b", record("b"), a);
+        graph.add("c", record("c"), b);
+        graph.add("d", record("d"));
+
+        Exception thrown = assertThrows(Exception.class, () -> graph.run(2, LOGGER));
+
+        assertSame(failure, thrown);
+        assertEquals(List.of("d"), ran);
+        assertTrue(logCapture.containsMessage("Step 'b' was skipped"));
+        assertTrue(logCapture.containsMessage("Step 'c' was skipped"));
+    }
+
+    @Test
+    public void testDependencyMustBeAddedFirst() {
+        StepGraph other = new StepGraph();
+        StepGraph.Step foreign = other.add("foreign", record("foreign"));
+        StepGraph graph = new StepGraph();
+        assertThrows(IllegalArgumentException.class, () -> graph.add("a", record("a"), foreign));
+        assertFalse(ran.contains("foreign"));
+    }
+
+    private StepGraph.Action record(String name) {
+        return () -> ran.add(name);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.cli.impl.release;
+
+import java.io.File;
+
+import org.apache.sling.cli.impl.Credentials;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SvnSessionPoolTest {
+
+    private static final Credentials JOHNDOE = new Credentials("johndoe", "secret");
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private String url;
+
+    @Before
+    public void before() throws Exception {
+        FSRepositoryFactory.setup();
+        File dir = tempFolder.newFolder("svnrepo");
+        SVNURL root = SVNRepositoryFactory.createLocalRepository(dir, true, false);
+        url = root.toString();
+    }
+
+    @Test
+    public void testSameUrlAndCredentialsShareSession() throws Exception {
+        try (SvnSessionPool pool = new SvnSessionPool()) {
+            SVNRepository session = pool.get(url, JOHNDOE);
+            assertSame(session, pool.get(url + "/", new Credentials("johndoe", "secret")));
+        }
+    }
+
+    @Test
+    public void testDifferentCredentialsOpenSeparateSessions() throws Exception {
+        try (SvnSessionPool pool = new SvnSessionPool()) {
+            SVNRepository session = pool.get(url, JOHNDOE);
+            assertNotSame(session, pool.get(url, new Credentials("janedoe", "secret")));
+            assertNotSame(session, pool.get(url, null));
+        }
+    }
+
+    @Test
+    public void testCloseDiscardsSessions() throws Exception {
+        SvnSessionPool pool = new SvnSessionPool();
+        SVNRepository session = pool.get(url, JOHNDOE);
+        pool.close();
+        assertNotSame(session, pool.get(url, JOHNDOE));
+        pool.close();
+    }
+}
@@ -228,16 +228,69 @@ public class TallyVotesCommandTest {
     }
 
     private Command createCommand(int repositoryId, ExecutionMode executionMode) throws IllegalAccessException {
+        return createCommand(List.of(repositoryId), false, executionMode);
+    }
+
+    private Command createCommand(List<Integer> repositoryIds, boolean allClosed, ExecutionMode executionMode)
+            throws IllegalAccessException {
         TallyVotesCommand tallyVotesCommand = spy(new TallyVotesCommand());
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
-        FieldUtils.writeField(tallyVotesCommand, "repositoryId", repositoryId, true);
+        FieldUtils.writeField(tallyVotesCommand, "repositoryIds", repositoryIds, true);
+        FieldUtils.writeField(tallyVotesCommand, "allClosed", allClosed, true);
         FieldUtils.writeField(tallyVotesCommand, "reusableCLIOptions", reusableCLIOptions, true);
         osgiContext.registerInjectActivateService(tallyVotesCommand);
         ServiceReference<?> reference = osgiContext.bundleContext().getServiceReference(Command.class.getName());
         return (Command) osgiContext.bundleContext().getService(reference);
     }
 
+    @Test
+    public void testDryRunMultipleRepositories() throws Exception {
+        Mailer mailer = mock(Mailer.class);
+        List<Email> passingThread = List.of(
+                mockEmail("johndoe@apache.org", "John Doe"),
+                mockEmail("alice@apache.org", "Alice"),
+                mockEmail("bob@apache.org", "Bob"),
+                mockEmail("charlie@apache.org", "Charlie"));
+        List<Email> failingThread =
+                List.of(mockEmail("johndoe@apache.org", "John Doe"), mockEmail("alice@apache.org", "Alice"));
+        RepositoryService repositoryService = prepareExecution(mailer, passingThread);
+        StagingRepository second = mockStagingRepository(repositoryService, 124, "Apache Sling CLI Other 2.0.0");
+        StagingRepository first = repositoryService.find(123);
+        when(repositoryService.listClosed()).thenReturn(List.of(first, second));
+        VoteThreadFinder voteThreadFinder = osgiContext.getService(VoteThreadFinder.class);
+        when(voteThreadFinder.findVoteThread("CLI Other 2.0.0")).thenReturn(failingThread);
+
+        Command command = createCommand(null, true, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
+        verifyNoInteractions(mailer);
+        assertTrue(logCapture.containsMessage("Vote summary:"));
+        assertTrue(logCapture.containsMessage("Subject: [RESULT] [VOTE] Release Apache Sling CLI Test 1.0.0"));
+        assertTrue(logCapture.containsMessage(
+                "Release Apache Sling CLI Other 2.0.0 does not have at least 3 binding votes."));
+        assertTrue(logCapture.containsMessage("Binding votes: Alice."));
+    }
+
+    @Test
+    public void testRepositoriesAndAllClosedAreExclusive() throws Exception {
+        Mailer mailer = mock(Mailer.class);
+        RepositoryService repositoryService = prepareExecution(mailer, List.of());
+        Command command = createCommand(List.of(123), true, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
+        verifyNoInteractions(mailer, repositoryService);
+    }
+
+    private StagingRepository mockStagingRepository(
+            RepositoryService repositoryService, int repositoryId, String description) throws IOException {
+        StagingRepository stagingRepository = mock(StagingRepository.class);
+        when(stagingRepository.getRepositoryId()).thenReturn("orgapachesling-" + repositoryId);
+        when(stagingRepository.getDescription()).thenReturn(description);
+        when(repositoryService.find(repositoryId)).thenReturn(stagingRepository);
+        Release release = Release.fromString(description).get(0);
+        when(repositoryService.getReleases(stagingRepository)).thenReturn(Set.of(release));
+        return stagingRepository;
+    }
+
     private Email mockEmail(String address, String name) throws Exception {
         Email email = mock(Email.class);
         when(email.getBody()).thenReturn("+1");
@@ -245,11 +298,12 @@ public class TallyVotesCommandTest {
         return email;
     }
 
-    private void prepareExecution(Mailer mailer, List<Email> thread) throws IOException, IllegalAccessException {
-        prepareExecution(mailer, thread, "johndoe");
+    private RepositoryService prepareExecution(Mailer mailer, List<Email> thread)
+            throws IOException, IllegalAccessException {
+        return prepareExecution(mailer, thread, "johndoe");
     }
 
-    private void prepareExecution(Mailer mailer, List<Email> thread, String currentUsername)
+    private RepositoryService prepareExecution(Mailer mailer, List<Email> thread, String currentUsername)
             throws IOException, IllegalAccessException {
         CredentialsService credentialsService = mock(CredentialsService.class);
         when(credentialsService.getAsfCredentials()).thenReturn(new Credentials(currentUsername, "secret"));
@@ -268,12 +322,8 @@ public class TallyVotesCommandTest {
         FieldUtils.writeField(membersFinder, "members", members, true);
         FieldUtils.writeField(membersFinder, "lastCheck", System.currentTimeMillis(), true);
 
-        StagingRepository stagingRepository = mock(StagingRepository.class);
-        when(stagingRepository.getDescription()).thenReturn("Apache Sling CLI Test 1.0.0");
         RepositoryService repositoryService = mock(RepositoryService.class);
-        when(repositoryService.find(123)).thenReturn(stagingRepository);
-        Release release = Release.fromString("Apache Sling CLI Test 1.0.0").get(0);
-        when(repositoryService.getReleases(stagingRepository)).thenReturn(Set.of(release));
+        mockStagingRepository(repositoryService, 123, "Apache Sling CLI Test 1.0.0");
 
         VoteThreadFinder voteThreadFinder = mock(VoteThreadFinder.class);
         when(voteThreadFinder.findVoteThread("CLI Test 1.0.0")).thenReturn(thread);
@@ -283,5 +333,6 @@ public class TallyVotesCommandTest {
         osgiContext.registerService(RepositoryService.class, repositoryService);
         osgiContext.registerService(VoteThreadFinder.class, voteThreadFinder);
         osgiContext.registerService(Mailer.class, mailer);
+        return repositoryService;
     }
 }
@@ -19,14 +19,18 @@
 package org.apache.sling.cli.impl.release;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
@@ -42,6 +46,7 @@ import org.apache.sling.cli.impl.nexus.LocalRepository;
 import org.apache.sling.cli.impl.nexus.RepositoryService;
 import org.apache.sling.cli.impl.nexus.StagingRepository;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -55,22 +60,28 @@ import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
 import picocli.CommandLine;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class UpdateDistCommandTest {
 
     private static final String ARTIFACT = "org.apache.sling.feature.launcher";
+    private static final String API = "org.apache.sling.api";
 
     @Rule
     public final OsgiContext osgiContext = new OsgiContext();
@@ -84,7 +95,7 @@ public class UpdateDistCommandTest {
     // ---- auto-deduce of the previous release files (listPreviousReleaseFiles) ----
 
     @Test
-    public void testAutoDeducePreviousFilesExcludesNewVersionAndSiblings() throws Exception {
+    public void testAutoDeducePreviousFilesExcludesNewVersionAndSiblings() {
         List<String> releaseDir = List.of(
                 ARTIFACT + "-1.3.4.pom",
                 ARTIFACT + "-1.3.4.pom.asc",
@@ -94,40 +105,32 @@ public class UpdateDistCommandTest {
                 ARTIFACT + "-1.3.6.pom.asc",
                 ARTIFACT + "-extra-1.0.0.pom" // a sibling artifact - must be ignored
                 );
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
-
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "1.3.6", null);
-
-            assertEquals(4, old.size());
-            assertTrue(old.contains(ARTIFACT + "-1.3.4.pom"));
-            assertTrue(old.contains(ARTIFACT + "-1.3.4-source-release.zip"));
-            // the version being published is never removed
-            assertFalse(old.contains(ARTIFACT + "-1.3.6.pom"));
-            assertFalse(old.contains(ARTIFACT + "-1.3.6.pom.asc"));
-            // sibling artifact with a non-numeric component is ignored
-            assertFalse(old.contains(ARTIFACT + "-extra-1.0.0.pom"));
-        }
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "1.3.6", null);
+
+        assertEquals(4, old.size());
+        assertTrue(old.contains(ARTIFACT + "-1.3.4.pom"));
+        assertTrue(old.contains(ARTIFACT + "-1.3.4-source-release.zip"));
+        // the version being published is never removed
+        assertFalse(old.contains(ARTIFACT + "-1.3.6.pom"));
+        assertFalse(old.contains(ARTIFACT + "-1.3.6.pom.asc"));
+        // sibling artifact with a non-numeric component is ignored
+        assertFalse(old.contains(ARTIFACT + "-extra-1.0.0.pom"));
     }
 
     @Test
-    public void testAutoDeduceDoesNotConfuseVersionPrefixesAndKeepsNewerVersions() throws Exception {
+    public void testAutoDeduceDoesNotConfuseVersionPrefixesAndKeepsNewerVersions() {
         // publishing 1.0.14 must not treat 1.0.140 as the same version, and must not remove it either:
         // 1.0.140 > 1.0.14, so it is a newer version and is left untouched (nothing older is present)
         List<String> releaseDir = List.of(ARTIFACT + "-1.0.140.pom", ARTIFACT + "-1.0.14.pom");
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "1.0.14", null);
 
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "1.0.14", null);
-
-            assertTrue("a newer version must never be removed", old.isEmpty());
-        }
+        assertTrue("a newer version must never be removed", old.isEmpty());
     }
 
     @Test
-    public void testAutoDeduceRemovesOnlyClosestOlderVersionAcrossStreams() throws Exception {
+    public void testAutoDeduceRemovesOnlyClosestOlderVersionAcrossStreams() {
         // parallel maintenance streams: publishing 2.0.4 must remove 2.0.2 (the closest older version)
         // but keep 1.2.4 (a different, still-maintained stream)
         List<String> releaseDir = List.of(
@@ -135,95 +138,72 @@ public class UpdateDistCommandTest {
                 ARTIFACT + "-1.2.4-source-release.zip",
                 ARTIFACT + "-2.0.2.pom",
                 ARTIFACT + "-2.0.2-source-release.zip");
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
-
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "2.0.4", null);
-
-            assertEquals(2, old.size());
-            assertTrue(old.contains(ARTIFACT + "-2.0.2.pom"));
-            assertTrue(old.contains(ARTIFACT + "-2.0.2-source-release.zip"));
-            // the other maintenance stream is left intact
-            assertFalse(old.contains(ARTIFACT + "-1.2.4.pom"));
-            assertFalse(old.contains(ARTIFACT + "-1.2.4-source-release.zip"));
-        }
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "2.0.4", null);
+
+        assertEquals(2, old.size());
+        assertTrue(old.contains(ARTIFACT + "-2.0.2.pom"));
+        assertTrue(old.contains(ARTIFACT + "-2.0.2-source-release.zip"));
+        // the other maintenance stream is left intact
+        assertFalse(old.contains(ARTIFACT + "-1.2.4.pom"));
+        assertFalse(old.contains(ARTIFACT + "-1.2.4-source-release.zip"));
     }
 
     @Test
-    public void testAutoDeduceRemovesOnlySameMajorVersion() throws Exception {
+    public void testAutoDeduceRemovesOnlySameMajorVersion() {
         // publishing 1.2.16 must remove 1.2.14 and leave the 2.x stream untouched
         List<String> releaseDir = List.of(
                 ARTIFACT + "-1.2.14.pom",
                 ARTIFACT + "-1.2.14-source-release.zip",
                 ARTIFACT + "-2.1.0.pom",
                 ARTIFACT + "-2.1.0-source-release.zip");
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
-
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "1.2.16", null);
-
-            assertEquals(2, old.size());
-            assertTrue(old.contains(ARTIFACT + "-1.2.14.pom"));
-            assertTrue(old.contains(ARTIFACT + "-1.2.14-source-release.zip"));
-            assertFalse(old.contains(ARTIFACT + "-2.1.0.pom"));
-            assertFalse(old.contains(ARTIFACT + "-2.1.0-source-release.zip"));
-        }
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "1.2.16", null);
+
+        assertEquals(2, old.size());
+        assertTrue(old.contains(ARTIFACT + "-1.2.14.pom"));
+        assertTrue(old.contains(ARTIFACT + "-1.2.14-source-release.zip"));
+        assertFalse(old.contains(ARTIFACT + "-2.1.0.pom"));
+        assertFalse(old.contains(ARTIFACT + "-2.1.0-source-release.zip"));
     }
 
     @Test
-    public void testAutoDeduceIgnoresOlderMajorVersions() throws Exception {
+    public void testAutoDeduceIgnoresOlderMajorVersions() {
         // publishing 2.1.2 must remove 2.1.0 and never touch the older 1.x stream
         List<String> releaseDir =
                 List.of(ARTIFACT + "-1.2.14.pom", ARTIFACT + "-2.1.0.pom", ARTIFACT + "-2.1.0-source-release.zip");
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
-
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "2.1.2", null);
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "2.1.2", null);
 
-            assertEquals(2, old.size());
-            assertTrue(old.contains(ARTIFACT + "-2.1.0.pom"));
-            assertTrue(old.contains(ARTIFACT + "-2.1.0-source-release.zip"));
-            assertFalse(old.contains(ARTIFACT + "-1.2.14.pom"));
-        }
+        assertEquals(2, old.size());
+        assertTrue(old.contains(ARTIFACT + "-2.1.0.pom"));
+        assertTrue(old.contains(ARTIFACT + "-2.1.0-source-release.zip"));
+        assertFalse(old.contains(ARTIFACT + "-1.2.14.pom"));
     }
 
     @Test
-    public void testAutoDeduceKeepsOlderMajorWhenNoSameMajorPredecessorExists() throws Exception {
+    public void testAutoDeduceKeepsOlderMajorWhenNoSameMajorPredecessorExists() {
         // the first release of a new major stream: nothing in dist/release shares its major, so the
         // previous major line stays published (it is still maintained separately)
         List<String> releaseDir = List.of(ARTIFACT + "-1.2.14.pom", ARTIFACT + "-1.2.14-source-release.zip");
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "2.0.0", null);
 
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "2.0.0", null);
-
-            assertTrue("a different major version must never be removed", old.isEmpty());
-        }
+        assertTrue("a different major version must never be removed", old.isEmpty());
     }
 
     @Test
-    public void testExplicitPreviousVersionWins() throws Exception {
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(
-                            eq(UpdateDistCommand.DIST_RELEASE_URL), eq(ARTIFACT + "-1.3.4")))
-                    .thenReturn(List.of(ARTIFACT + "-1.3.4.pom"));
+    public void testExplicitPreviousVersionWins() {
+        // the explicit version is removed even though it is not the closest older one in the same major stream
+        DistIndex distIndex = DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom", ARTIFACT + "-1.3.5.pom"));
 
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "1.3.6", "1.3.4");
+        List<String> old = UpdateDistCommand.listPreviousReleaseFiles(distIndex, ARTIFACT, "1.3.6", "1.3.4");
 
-            assertEquals(List.of(ARTIFACT + "-1.3.4.pom"), old);
-            // when an explicit version is given, the directory is not enumerated with the bare prefix
-            dist.verify(
-                    () -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), eq(ARTIFACT + "-")),
-                    never());
-        }
+        assertEquals(List.of(ARTIFACT + "-1.3.4.pom"), old);
     }
 
     @Test
-    public void testAutoDeduceKeepsNewVersionWithClassifierAndExtension() throws Exception {
+    public void testAutoDeduceKeepsNewVersionWithClassifierAndExtension() {
         // files for the version being published (with both an extension '.' and a classifier '-' right
         // after the version) must be kept, exercising belongsToVersion's trailing-character check
         List<String> releaseDir = List.of(
@@ -231,17 +211,13 @@ public class UpdateDistCommandTest {
                 ARTIFACT + "-1.3.6.pom",
                 ARTIFACT + "-1.3.6-source-release.zip",
                 ARTIFACT + "-1.3.4.pom");
-        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(releaseDir);
-
-            List<String> old = UpdateDistCommand.listPreviousReleaseFiles(ARTIFACT, "1.3.6", null);
+        List<String> old =
+                UpdateDistCommand.listPreviousReleaseFiles(DistIndex.of(1, releaseDir), ARTIFACT, "1.3.6", null);
 
-            assertEquals(List.of(ARTIFACT + "-1.3.4.pom"), old);
-            assertFalse(old.contains(ARTIFACT + "-1.3.6"));
-            assertFalse(old.contains(ARTIFACT + "-1.3.6.pom"));
-            assertFalse(old.contains(ARTIFACT + "-1.3.6-source-release.zip"));
-        }
+        assertEquals(List.of(ARTIFACT + "-1.3.4.pom"), old);
+        assertFalse(old.contains(ARTIFACT + "-1.3.6"));
+        assertFalse(old.contains(ARTIFACT + "-1.3.6.pom"));
+        assertFalse(old.contains(ARTIFACT + "-1.3.6-source-release.zip"));
     }
 
     // ---- full command flow ----
@@ -251,15 +227,15 @@ public class UpdateDistCommandTest {
         Path downloaded = downloadFolderWith(ARTIFACT + "-1.3.6-source-release.zip", ARTIFACT + "-1.3.6.pom");
         prepareRepositoryService(downloaded);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(List.of(ARTIFACT + "-1.3.4.pom"));
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom")));
 
             Command command = createCommand(ExecutionMode.DRY_RUN, null);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
 
             assertTrue(logCapture.containsMessage("Would publish 2 file(s) to dist/release"));
             assertTrue(logCapture.containsMessage("Would remove 1 old file(s) from dist/release:"));
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()), never());
+            dist.verify(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()), never());
         }
     }
 
@@ -268,15 +244,16 @@ public class UpdateDistCommandTest {
         Path downloaded = downloadFolderWith(ARTIFACT + "-1.3.6-source-release.zip");
         prepareRepositoryService(downloaded);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(List.of(ARTIFACT + "-1.3.4.pom"));
-            dist.when(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()))
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom")));
+            dist.when(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()))
                     .thenAnswer(invocation -> null);
 
             Command command = createCommand(ExecutionMode.AUTO, null);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
 
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(eq(ARTIFACT), eq("1.3.6"), any(), any(), any()));
+            dist.verify(() ->
+                    UpdateDistCommand.publishToDistRelease(plansFor(ARTIFACT + " 1.3.6"), any(), anyString(), any()));
         }
     }
 
@@ -284,12 +261,12 @@ public class UpdateDistCommandTest {
     public void testNoDownloadedFilesReturnsUsage() throws Exception {
         prepareRepositoryService(downloadFolderWith()); // empty download
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(List.of());
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of()));
 
             Command command = createCommand(ExecutionMode.AUTO, null);
             assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()), never());
+            dist.verify(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()), never());
         }
     }
 
@@ -299,9 +276,9 @@ public class UpdateDistCommandTest {
         prepareRepositoryService(downloaded);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS);
                 MockedStatic<UserInput> userInput = mockStatic(UserInput.class)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(List.of(ARTIFACT + "-1.3.4.pom"));
-            dist.when(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()))
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom")));
+            dist.when(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()))
                     .thenAnswer(invocation -> null);
             userInput
                     .when(() -> UserInput.yesNo(anyString(), eq(InputOption.YES)))
@@ -310,7 +287,8 @@ public class UpdateDistCommandTest {
             Command command = createCommand(ExecutionMode.INTERACTIVE, null);
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
 
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(eq(ARTIFACT), eq("1.3.6"), any(), any(), any()));
+            dist.verify(() ->
+                    UpdateDistCommand.publishToDistRelease(plansFor(ARTIFACT + " 1.3.6"), any(), anyString(), any()));
         }
     }
 
@@ -320,8 +298,8 @@ public class UpdateDistCommandTest {
         prepareRepositoryService(downloaded);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS);
                 MockedStatic<UserInput> userInput = mockStatic(UserInput.class)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(eq(UpdateDistCommand.DIST_RELEASE_URL), anyString()))
-                    .thenReturn(List.of(ARTIFACT + "-1.3.4.pom"));
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom")));
             userInput
                     .when(() -> UserInput.yesNo(anyString(), eq(InputOption.YES)))
                     .thenReturn(InputOption.NO);
@@ -330,7 +308,7 @@ public class UpdateDistCommandTest {
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
 
             assertTrue(logCapture.containsMessage("Aborted."));
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()), never());
+            dist.verify(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()), never());
         }
     }
 
@@ -339,20 +317,106 @@ public class UpdateDistCommandTest {
         Path downloaded = downloadFolderWith(ARTIFACT + "-1.3.6-source-release.zip");
         prepareRepositoryService(downloaded);
         try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
-            dist.when(() -> UpdateDistCommand.listDistFiles(
-                            eq(UpdateDistCommand.DIST_RELEASE_URL), eq(ARTIFACT + "-1.3.4")))
-                    .thenReturn(List.of(ARTIFACT + "-1.3.4.pom"));
-            // the already-published probe queries the new version's prefix; it is not yet in dist/release
-            dist.when(() -> UpdateDistCommand.listDistFiles(
-                            eq(UpdateDistCommand.DIST_RELEASE_URL), eq(ARTIFACT + "-1.3.6")))
-                    .thenReturn(List.of());
-            dist.when(() -> UpdateDistCommand.publishToDistRelease(any(), any(), any(), any(), any()))
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom", ARTIFACT + "-1.3.5.pom")));
+            dist.when(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()))
                     .thenAnswer(invocation -> null);
 
             Command command = createCommand(ExecutionMode.AUTO, "1.3.4");
             assertEquals(CommandLine.ExitCode.OK, (int) command.call());
 
-            dist.verify(() -> UpdateDistCommand.publishToDistRelease(eq(ARTIFACT), eq("1.3.6"), any(), any(), any()));
+            dist.verify(() -> UpdateDistCommand.publishToDistRelease(
+                    argThat(plans -> plans.get(0).oldFiles().equals(List.of(ARTIFACT + "-1.3.4.pom"))),
+                    any(),
+                    anyString(),
+                    any()));
+        }
+    }
+
+    @Test
+    public void testPlanningListsDistReleaseOnce() throws Exception {
+        Path downloaded = downloadFolderWith(ARTIFACT + "-1.3.6-source-release.zip");
+        prepareRepositoryService(downloaded);
+        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom")));
+
+            Command command = createCommand(ExecutionMode.DRY_RUN, null);
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+            // both the already-published probe and the previous release lookup use the same listing
+            dist.verify(() -> UpdateDistCommand.loadDistIndex(anyString(), any(), any()));
+        }
+    }
+
+    @Test
+    public void testMultipleRepositoriesArePublishedInOneRevision() throws Exception {
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        stage(repositoryService, 123, ARTIFACT, "1.3.6", downloadFolderWith(ARTIFACT + "-1.3.6.pom"));
+        stage(repositoryService, 124, API, "2.0.0", downloadFolderWith(API + "-2.0.0.pom"));
+        registerServices(repositoryService);
+        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom", API + "-1.0.0.pom")));
+            dist.when(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()))
+                    .thenAnswer(invocation -> null);
+
+            Command command = createCommand(ExecutionMode.AUTO, null, List.of(123, 124));
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+            dist.verify(() -> UpdateDistCommand.loadDistIndex(anyString(), any(), any()));
+            dist.verify(() -> UpdateDistCommand.publishToDistRelease(
+                    plansFor(ARTIFACT + " 1.3.6", API + " 2.0.0"), any(), anyString(), any()));
+        }
+    }
+
+    @Test
+    public void testAlreadyPublishedRepositoryIsLeftOutOfTheBatch() throws Exception {
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        stage(repositoryService, 123, ARTIFACT, "1.3.6", downloadFolderWith(ARTIFACT + "-1.3.6.pom"));
+        stage(repositoryService, 124, API, "2.0.0", downloadFolderWith(API + "-2.0.0.pom"));
+        registerServices(repositoryService);
+        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.6.pom")));
+            dist.when(() -> UpdateDistCommand.publishToDistRelease(anyList(), any(), anyString(), any()))
+                    .thenAnswer(invocation -> null);
+
+            Command command = createCommand(ExecutionMode.AUTO, null, List.of(123, 124));
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+            assertTrue(logCapture.containsMessage("dist/release already contains " + ARTIFACT + " 1.3.6"));
+            dist.verify(
+                    () -> UpdateDistCommand.publishToDistRelease(plansFor(API + " 2.0.0"), any(), anyString(), any()));
+        }
+    }
+
+    @Test
+    public void testPreviousVersionWithMultipleRepositoriesReturnsUsage() throws Exception {
+        registerServices(mock(RepositoryService.class));
+        Command command = createCommand(ExecutionMode.AUTO, "1.3.4", List.of(123, 124));
+        assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
+    }
+
+    @Test
+    public void testStreamDryRunDoesNotDownload() throws Exception {
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        StagingRepository repository = mock(StagingRepository.class);
+        Artifact pom = new Artifact(repository, "org.apache.sling", ARTIFACT, "1.3.6", null, "pom");
+        when(repositoryService.find(123)).thenReturn(repository);
+        when(repositoryService.getArtifacts(repository)).thenReturn(Set.of(pom));
+        registerServices(repositoryService);
+        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of(ARTIFACT + "-1.3.4.pom")));
+
+            Command command = createCommand(ExecutionMode.DRY_RUN, null);
+            FieldUtils.writeField(command, "stream", true, true);
+            assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+
+            assertTrue(logCapture.containsMessage("Would stream 1 staged artifact(s)"));
+            assertTrue(logCapture.containsMessage("Would remove 1 old file(s) from dist/release:"));
+            verify(repositoryService, never()).download(any());
         }
     }
 
@@ -365,9 +429,13 @@ public class UpdateDistCommandTest {
         osgiContext.registerService(RepositoryService.class, repositoryService);
         osgiContext.registerService(CredentialsService.class, mock(CredentialsService.class));
 
-        Command command = createCommand(ExecutionMode.AUTO, null);
-        assertEquals(CommandLine.ExitCode.SOFTWARE, (int) command.call());
-        assertTrue(logCapture.containsMessage("Failed executing command"));
+        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of()));
+            Command command = createCommand(ExecutionMode.AUTO, null);
+            assertEquals(CommandLine.ExitCode.SOFTWARE, (int) command.call());
+            assertTrue(logCapture.containsMessage("Failed executing command"));
+        }
     }
 
     @Test
@@ -383,8 +451,10 @@ public class UpdateDistCommandTest {
         osgiContext.registerService(RepositoryService.class, repositoryService);
         osgiContext.registerService(CredentialsService.class, mock(CredentialsService.class));
 
-        Command command = createCommand(ExecutionMode.AUTO, null);
-        try {
+        try (MockedStatic<UpdateDistCommand> dist = mockStatic(UpdateDistCommand.class, CALLS_REAL_METHODS)) {
+            dist.when(() -> UpdateDistCommand.loadDistIndex(eq(UpdateDistCommand.DIST_RELEASE_URL), any(), any()))
+                    .thenReturn(DistIndex.of(1, List.of()));
+            Command command = createCommand(ExecutionMode.AUTO, null);
             command.call();
             org.junit.Assert.fail("Expected an IllegalStateException when no POM artifact is present.");
         } catch (IllegalStateException e) {
@@ -403,22 +473,23 @@ public class UpdateDistCommandTest {
     }
 
     @Test
-    public void testListDistFilesAgainstLocalRepository() throws Exception {
+    public void testDistIndexAgainstLocalRepository() throws Exception {
         SVNURL repo = createLocalRepoWithReleaseFiles(
                 ARTIFACT + "-1.3.6.pom", ARTIFACT + "-1.3.6-source-release.zip", "other-file.txt");
-        List<String> files = UpdateDistCommand.listDistFiles(repo + "/release/", ARTIFACT + "-1.3.6");
-        assertEquals(2, files.size());
-        assertTrue(files.contains(ARTIFACT + "-1.3.6.pom"));
-        assertTrue(files.contains(ARTIFACT + "-1.3.6-source-release.zip"));
-        assertFalse(files.contains("other-file.txt"));
+        DistIndex distIndex = loadDistIndex(repo + "/release/");
+        assertEquals(1, distIndex.getRevision());
+        assertEquals(
+                List.of(ARTIFACT + "-1.3.6-source-release.zip", ARTIFACT + "-1.3.6.pom"),
+                distIndex.list(ARTIFACT + "-1.3.6"));
+        assertTrue(distIndex.list("missing-").isEmpty());
     }
 
     @Test
-    public void testListDistFilesWrapsSvnFailure() {
+    public void testDistIndexWrapsSvnFailure() {
         // a syntactically valid but non-existent local repository url triggers an SVNException,
-        // which listDistFiles must surface as an IOException
+        // which must surface as an IOException
         try {
-            UpdateDistCommand.listDistFiles("file:///nonexistent-" + System.nanoTime() + "/release/", "x");
+            loadDistIndex("file:///nonexistent-" + System.nanoTime() + "/release/");
             org.junit.Assert.fail("Expected an IOException for a missing repository.");
         } catch (IOException expected) {
             assertTrue(expected.getMessage().contains("Failed to list"));
@@ -430,12 +501,13 @@ public class UpdateDistCommandTest {
         SVNURL repo = createLocalRepoWithReleaseFiles(ARTIFACT + "-1.3.4.pom", ARTIFACT + "-1.3.4-source-release.zip");
         List<Path> newFiles = localFiles(ARTIFACT + "-1.3.6.pom", ARTIFACT + "-1.3.6-source-release.zip");
 
-        UpdateDistCommand.publishToDistRelease(
-                ARTIFACT,
-                "1.3.6",
-                newFiles,
-                List.of(ARTIFACT + "-1.3.4.pom", ARTIFACT + "-1.3.4-source-release.zip"),
-                new Credentials("johndoe", "secret"),
+        publish(
+                List.of(new UpdateDistCommand.DistReleasePlan(
+                        ARTIFACT,
+                        "1.3.6",
+                        newFiles,
+                        List.of(ARTIFACT + "-1.3.4.pom", ARTIFACT + "-1.3.4-source-release.zip"),
+                        false)),
                 repo + "/release/");
 
         List<String> release = listNames(repo, "release");
@@ -445,17 +517,208 @@ public class UpdateDistCommandTest {
         assertFalse(release.contains(ARTIFACT + "-1.3.4-source-release.zip"));
     }
 
+    @Test
+    public void testPublishSeveralReleasesInOneRevision() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles(ARTIFACT + "-1.3.4.pom", API + "-1.0.0.pom");
+        List<UpdateDistCommand.DistReleasePlan> plans = List.of(
+                new UpdateDistCommand.DistReleasePlan(
+                        ARTIFACT,
+                        "1.3.6",
+                        localFiles(ARTIFACT + "-1.3.6.pom"),
+                        List.of(ARTIFACT + "-1.3.4.pom"),
+                        false),
+                new UpdateDistCommand.DistReleasePlan(
+                        API, "2.0.0", localFiles(API + "-2.0.0.pom"), List.of(API + "-1.0.0.pom"), false));
+
+        publish(plans, repo + "/release/");
+
+        assertEquals(Set.of(ARTIFACT + "-1.3.6.pom", API + "-2.0.0.pom"), Set.copyOf(listNames(repo, "release")));
+        // revision 1 set up the repository, the whole batch is revision 2
+        assertEquals(2, SVNRepositoryFactory.create(repo).getLatestRevision());
+    }
+
+    @Test
+    public void testListingAndPublishShareOneSession() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles(ARTIFACT + "-1.3.4.pom");
+        Credentials credentials = new Credentials("johndoe", "secret");
+        String releaseUrl = repo + "/release/";
+        try (SvnSessionPool sessions = new SvnSessionPool()) {
+            DistIndex distIndex = UpdateDistCommand.loadDistIndex(releaseUrl, credentials, sessions);
+            SVNRepository listing = sessions.get(releaseUrl, credentials);
+            List<String> oldFiles = distIndex.list(ARTIFACT + "-1.3.4");
+            List<UpdateDistCommand.DistReleasePlan> plans = List.of(new UpdateDistCommand.DistReleasePlan(
+                    ARTIFACT, "1.3.6", localFiles(ARTIFACT + "-1.3.6.pom"), oldFiles, false));
+
+            UpdateDistCommand.publishToDistRelease(plans, credentials, releaseUrl, sessions);
+
+            assertSame(listing, sessions.get(releaseUrl, credentials));
+            assertEquals(2, listing.getLatestRevision());
+        }
+        assertEquals(List.of(ARTIFACT + "-1.3.6.pom"), listNames(repo, "release"));
+    }
+
+    @Test
+    public void testPublishStreamsPreparedDeltasOfLargeFiles() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles();
+        // spans several delta windows
+        byte[] content = new byte[350 * 1024];
+        new Random(7).nextBytes(content);
+        Path archive =
+                tempFolder.newFolder("large-" + System.nanoTime()).toPath().resolve(ARTIFACT + "-1.3.6.zip");
+        Files.write(archive, content);
+
+        publish(
+                List.of(new UpdateDistCommand.DistReleasePlan(ARTIFACT, "1.3.6", List.of(archive), List.of(), false)),
+                repo + "/release/");
+
+        ByteArrayOutputStream committed = new ByteArrayOutputStream();
+        SVNRepositoryFactory.create(repo).getFile("release/" + ARTIFACT + "-1.3.6.zip", -1, null, committed);
+        assertArrayEquals(content, committed.toByteArray());
+    }
+
+    @Test
+    public void testStreamToDistReleaseVerifiesAndCommits() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles(ARTIFACT + "-1.3.4.pom");
+        StagingRepository staging = mock(StagingRepository.class);
+        Artifact pom = new Artifact(staging, "org.apache.sling", ARTIFACT, "1.3.6", null, "pom");
+        byte[] content = "<project/>".getBytes(StandardCharsets.UTF_8);
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        stubRepositoryFiles(
+                repositoryService,
+                Map.of(
+                        pom.getRepositoryRelativePath(), content,
+                        pom.getRepositoryRelativeSignaturePath(), "signature".getBytes(StandardCharsets.UTF_8),
+                        pom.getRepositoryRelativeSha1SumPath(), hex("SHA-1", content),
+                        pom.getRepositoryRelativeMd5SumPath(), hex("MD5", content)));
+
+        stream(
+                List.of(new UpdateDistCommand.DistReleasePlan(
+                        ARTIFACT, "1.3.6", List.of(), List.of(pom), List.of(ARTIFACT + "-1.3.4.pom"), false)),
+                repositoryService,
+                repo + "/release/");
+
+        // the missing .sha512 sidecar is simply not published
+        assertEquals(
+                Set.of(
+                        ARTIFACT + "-1.3.6.pom",
+                        ARTIFACT + "-1.3.6.pom.asc",
+                        ARTIFACT + "-1.3.6.pom.sha1",
+                        ARTIFACT + "-1.3.6.pom.md5"),
+                Set.copyOf(listNames(repo, "release")));
+        ByteArrayOutputStream committed = new ByteArrayOutputStream();
+        SVNRepositoryFactory.create(repo).getFile("release/" + ARTIFACT + "-1.3.6.pom", -1, null, committed);
+        assertArrayEquals(content, committed.toByteArray());
+    }
+
+    @Test
+    public void testStreamToDistReleaseAbortsOnChecksumMismatch() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles(ARTIFACT + "-1.3.4.pom");
+        StagingRepository staging = mock(StagingRepository.class);
+        Artifact pom = new Artifact(staging, "org.apache.sling", ARTIFACT, "1.3.6", null, "pom");
+        byte[] tampered = "tampered".getBytes(StandardCharsets.UTF_8);
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        stubRepositoryFiles(
+                repositoryService,
+                Map.of(
+                        pom.getRepositoryRelativePath(), "<project/>".getBytes(StandardCharsets.UTF_8),
+                        pom.getRepositoryRelativeSignaturePath(), "signature".getBytes(StandardCharsets.UTF_8),
+                        pom.getRepositoryRelativeSha1SumPath(), hex("SHA-1", tampered)));
+        List<UpdateDistCommand.DistReleasePlan> plans = List.of(new UpdateDistCommand.DistReleasePlan(
+                ARTIFACT, "1.3.6", List.of(), List.of(pom), List.of(ARTIFACT + "-1.3.4.pom"), false));
+
+        try {
+            stream(plans, repositoryService, repo + "/release/");
+            org.junit.Assert.fail("Expected an IOException for a checksum mismatch.");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("SHA-1 checksum mismatch for " + ARTIFACT + "-1.3.6.pom"));
+        }
+        // nothing was committed, the previous release is still there
+        assertEquals(1, SVNRepositoryFactory.create(repo).getLatestRevision());
+        assertEquals(List.of(ARTIFACT + "-1.3.4.pom"), listNames(repo, "release"));
+    }
+
+    @Test
+    public void testStreamToDistReleaseAbortsWithoutSignature() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles(ARTIFACT + "-1.3.4.pom");
+        StagingRepository staging = mock(StagingRepository.class);
+        Artifact pom = new Artifact(staging, "org.apache.sling", ARTIFACT, "1.3.6", null, "pom");
+        byte[] content = "<project/>".getBytes(StandardCharsets.UTF_8);
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        stubRepositoryFiles(
+                repositoryService,
+                Map.of(
+                        pom.getRepositoryRelativePath(),
+                        content,
+                        pom.getRepositoryRelativeSha1SumPath(),
+                        hex("SHA-1", content)));
+        List<UpdateDistCommand.DistReleasePlan> plans = List.of(new UpdateDistCommand.DistReleasePlan(
+                ARTIFACT, "1.3.6", List.of(), List.of(pom), List.of(ARTIFACT + "-1.3.4.pom"), false));
+
+        try {
+            stream(plans, repositoryService, repo + "/release/");
+            org.junit.Assert.fail("Expected an IOException for a missing signature.");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("No .asc signature is staged"));
+        }
+        assertEquals(1, SVNRepositoryFactory.create(repo).getLatestRevision());
+        assertEquals(List.of(ARTIFACT + "-1.3.4.pom"), listNames(repo, "release"));
+    }
+
+    @Test
+    public void testPublishRejectsTheSameFileNameFromTwoReleases() throws Exception {
+        SVNURL repo = createLocalRepoWithReleaseFiles();
+        List<UpdateDistCommand.DistReleasePlan> plans = List.of(
+                new UpdateDistCommand.DistReleasePlan(
+                        ARTIFACT, "1.3.6", localFiles(ARTIFACT + "-1.3.6.pom"), List.of(), false),
+                new UpdateDistCommand.DistReleasePlan(
+                        ARTIFACT, "1.3.6", localFiles(ARTIFACT + "-1.3.6.pom"), List.of(), false));
+        try {
+            publish(plans, repo + "/release/");
+            org.junit.Assert.fail("Expected an IOException for a file staged by two releases.");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("would be published as " + ARTIFACT + "-1.3.6.pom"));
+        }
+        assertEquals(1, SVNRepositoryFactory.create(repo).getLatestRevision());
+    }
+
     @Test
     public void testPublishToDistReleaseWithoutOldFilesJustAdds() throws Exception {
         SVNURL repo = createLocalRepoWithReleaseFiles();
         List<Path> newFiles = localFiles(ARTIFACT + "-1.3.6.pom");
 
-        UpdateDistCommand.publishToDistRelease(
-                ARTIFACT, "1.3.6", newFiles, List.of(), new Credentials("johndoe", "secret"), repo + "/release/");
+        publish(
+                List.of(new UpdateDistCommand.DistReleasePlan(ARTIFACT, "1.3.6", newFiles, List.of(), false)),
+                repo + "/release/");
 
         assertTrue(listNames(repo, "release").contains(ARTIFACT + "-1.3.6.pom"));
     }
 
+    /** Lists {@code baseUrl} over a session pool of its own. */
+    private static DistIndex loadDistIndex(String baseUrl) throws IOException {
+        try (SvnSessionPool sessions = new SvnSessionPool()) {
+            return UpdateDistCommand.loadDistIndex(baseUrl, null, sessions);
+        }
+    }
+
+    /** Publishes {@code plans} over a session pool of their own. */
+    private static void publish(List<UpdateDistCommand.DistReleasePlan> plans, String releaseBaseUrl)
+            throws IOException {
+        try (SvnSessionPool sessions = new SvnSessionPool()) {
+            UpdateDistCommand.publishToDistRelease(
+                    plans, new Credentials("johndoe", "secret"), releaseBaseUrl, sessions);
+        }
+    }
+
+    /** Streams {@code plans} over a session pool of their own. */
+    private static void stream(
+            List<UpdateDistCommand.DistReleasePlan> plans, RepositoryService repositoryService, String releaseBaseUrl)
+            throws IOException {
+        try (SvnSessionPool sessions = new SvnSessionPool()) {
+            UpdateDistCommand.streamToDistRelease(
+                    plans, repositoryService, new Credentials("johndoe", "secret"), releaseBaseUrl, sessions);
+        }
+    }
+
     private Path downloadFolderWith(String... names) throws IOException {
         Path root = tempFolder.newFolder("dl-" + System.nanoTime()).toPath();
         // mirror the Maven-layout sub-directories the real download produces
@@ -512,15 +775,24 @@ public class UpdateDistCommandTest {
     }
 
     private void prepareRepositoryService(Path downloadedRootFolder) throws Exception {
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        stage(repositoryService, 123, ARTIFACT, "1.3.6", downloadedRootFolder);
+        registerServices(repositoryService);
+    }
+
+    private static void stage(
+            RepositoryService repositoryService, int repositoryId, String artifactId, String version, Path rootFolder)
+            throws Exception {
         StagingRepository repository = mock(StagingRepository.class);
         LocalRepository local = mock(LocalRepository.class);
-        RepositoryService repositoryService = mock(RepositoryService.class);
-        when(repositoryService.find(123)).thenReturn(repository);
+        when(repositoryService.find(repositoryId)).thenReturn(repository);
         when(repositoryService.download(repository)).thenReturn(local);
-        Artifact pom = new Artifact(repository, "org.apache.sling", ARTIFACT, "1.3.6", null, "pom");
+        Artifact pom = new Artifact(repository, "org.apache.sling", artifactId, version, null, "pom");
         when(local.getArtifacts()).thenReturn(Set.of(pom));
-        when(local.getRootFolder()).thenReturn(downloadedRootFolder);
+        when(local.getRootFolder()).thenReturn(rootFolder);
+    }
 
+    private void registerServices(RepositoryService repositoryService) {
         CredentialsService credentialsService = mock(CredentialsService.class);
         when(credentialsService.getAsfCredentials()).thenReturn(new Credentials("johndoe", "secret"));
 
@@ -528,9 +800,41 @@ public class UpdateDistCommandTest {
         osgiContext.registerService(CredentialsService.class, credentialsService);
     }
 
+    private static void stubRepositoryFiles(RepositoryService repositoryService, Map<String, byte[]> files)
+            throws IOException {
+        when(repositoryService.processRepositoryFile(any(), anyString(), any())).thenAnswer(invocation -> {
+            byte[] content = files.get(invocation.getArgument(1, String.class));
+            if (content == null) {
+                return false;
+            }
+            invocation
+                    .getArgument(2, RepositoryService.ContentProcessor.class)
+                    .process(new ByteArrayInputStream(content));
+            return true;
+        });
+    }
+
+    private static byte[] hex(String algorithm, byte[] content) throws Exception {
+        return Hex.toHexString(MessageDigest.getInstance(algorithm).digest(content))
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Matches the plans of exactly the given {@code artifactId version} releases, in order. */
+    private static List<UpdateDistCommand.DistReleasePlan> plansFor(String... releases) {
+        return argThat(plans -> plans.stream()
+                .map(plan -> plan.artifactId() + " " + plan.newVersion())
+                .toList()
+                .equals(List.of(releases)));
+    }
+
     private Command createCommand(ExecutionMode executionMode, String previousVersion) throws IllegalAccessException {
+        return createCommand(executionMode, previousVersion, List.of(123));
+    }
+
+    private Command createCommand(ExecutionMode executionMode, String previousVersion, List<Integer> repositoryIds)
+            throws IllegalAccessException {
         UpdateDistCommand updateDistCommand = spy(new UpdateDistCommand());
-        FieldUtils.writeField(updateDistCommand, "repositoryId", 123, true);
+        FieldUtils.writeField(updateDistCommand, "repositoryIds", repositoryIds, true);
         FieldUtils.writeField(updateDistCommand, "previousVersion", previousVersion, true);
         ReusableCLIOptions reusableCLIOptions = mock(ReusableCLIOptions.class);
         FieldUtils.writeField(reusableCLIOptions, "executionMode", executionMode, true);
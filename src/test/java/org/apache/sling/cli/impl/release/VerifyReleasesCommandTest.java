@@ -20,7 +20,12 @@ package org.apache.sling.cli.impl.release;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.sling.cli.impl.Command;
@@ -34,6 +39,7 @@ import org.apache.sling.cli.impl.nexus.StagingRepository;
 import org.apache.sling.cli.impl.pgp.HashValidator;
 import org.apache.sling.cli.impl.pgp.PGPSignatureValidator;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
+import org.bouncycastle.openpgp.PGPPublicKey;
 import org.junit.Rule;
 import org.junit.Test;
 import picocli.CommandLine;
@@ -41,8 +47,12 @@ import picocli.CommandLine;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class VerifyReleasesCommandTest {
@@ -53,6 +63,8 @@ public class VerifyReleasesCommandTest {
     @Rule
     public final LogCapture logCapture = new LogCapture(VerifyReleasesCommand.class);
 
+    private final StagingRepository stagingRepository = mock(StagingRepository.class);
+
     @Test
     public void testEmptyRepositoryIsValid() throws Exception {
         // A downloaded repository with no artifacts runs no checks and is reported valid.
@@ -63,7 +75,7 @@ public class VerifyReleasesCommandTest {
         RepositoryService repositoryService = mock(RepositoryService.class);
         StagingRepository stagingRepository = mock(StagingRepository.class);
         when(repositoryService.find(123)).thenReturn(stagingRepository);
-        when(repositoryService.download(stagingRepository)).thenReturn(localRepository);
+        stubDownload(repositoryService, stagingRepository, localRepository);
 
         osgiContext.registerService(RepositoryService.class, repositoryService);
         osgiContext.registerService(PGPSignatureValidator.class, mock(PGPSignatureValidator.class));
@@ -73,6 +85,7 @@ public class VerifyReleasesCommandTest {
         Command command = createCommand(123, ExecutionMode.DRY_RUN);
         assertEquals(CommandLine.ExitCode.OK, (int) command.call());
         assertTrue(logCapture.containsMessage("VALID (0 checks executed)"));
+        verify(repositoryService).discardDownload(stagingRepository);
     }
 
     @Test
@@ -87,7 +100,7 @@ public class VerifyReleasesCommandTest {
 
         RepositoryService repositoryService = mock(RepositoryService.class);
         when(repositoryService.find(123)).thenReturn(stagingRepository);
-        when(repositoryService.download(stagingRepository)).thenReturn(localRepository);
+        stubDownload(repositoryService, stagingRepository, localRepository);
 
         PGPSignatureValidator pgp = mock(PGPSignatureValidator.class);
         PGPSignatureValidator.ValidationResult pgpResult = mock(PGPSignatureValidator.ValidationResult.class);
@@ -109,6 +122,225 @@ public class VerifyReleasesCommandTest {
         Command command = createCommand(123, ExecutionMode.DRY_RUN);
         assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
         assertTrue(logCapture.containsMessage("INVALID"));
+        verify(repositoryService, never()).discardDownload(any());
+    }
+
+    @Test
+    public void testCIStatusCheckOverlapsArtifactChecks() throws Exception {
+        // The CI status check of the downloaded POM must already be running while the signatures are verified;
+        // the signature check below only completes once the CI status has been queried.
+        Artifact pom = pom("org.apache.sling.cli.test");
+        CountDownLatch ciStatusQueried = new CountDownLatch(1);
+        registerRepository(pom);
+        PGPSignatureValidator pgp = mock(PGPSignatureValidator.class);
+        PGPSignatureValidator.ValidationResult signature = validSignature();
+        when(pgp.verify(any(Path.class), any(Path.class))).thenAnswer(invocation -> {
+            assertTrue("CI status check did not start", ciStatusQueried.await(10, TimeUnit.SECONDS));
+            return signature;
+        });
+        CIStatusValidator ciStatusValidator = mock(CIStatusValidator.class);
+        CIStatusValidator.ValidationResult ciResult = ciResult(true, false);
+        when(ciStatusValidator.getCIStatusEndpoint(pathOf(pom))).thenReturn(endpointOf(pom));
+        when(ciStatusValidator.isValid(any(Path.class))).thenAnswer(invocation -> {
+            ciStatusQueried.countDown();
+            return ciResult;
+        });
+        registerValidators(pgp, ciStatusValidator);
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        assertTrue(logCapture.containsMessage("VALID (4 checks executed)"));
+    }
+
+    @Test
+    public void testCIStatusCheckStartsWhileBinariesAreDownloading() throws Exception {
+        // The repository service below only finishes downloading the binaries once the CI status of the POM it
+        // reported as downloaded has been queried.
+        Artifact pom = pom("org.apache.sling.cli.test");
+        CountDownLatch ciStatusQueried = new CountDownLatch(1);
+        LocalRepository localRepository = mock(LocalRepository.class);
+        when(localRepository.getArtifacts()).thenReturn(Set.of(pom));
+        when(localRepository.getRootFolder()).thenReturn(Paths.get("/tmp"));
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        when(repositoryService.find(123)).thenReturn(stagingRepository);
+        when(repositoryService.download(eq(stagingRepository), any(RepositoryService.DownloadListener.class)))
+                .thenAnswer(invocation -> {
+                    invocation
+                            .getArgument(1, RepositoryService.DownloadListener.class)
+                            .downloaded(pom, pathOf(pom));
+                    assertTrue("CI status check waited for the binaries", ciStatusQueried.await(10, TimeUnit.SECONDS));
+                    return localRepository;
+                });
+        osgiContext.registerService(RepositoryService.class, repositoryService);
+        CIStatusValidator ciStatusValidator = mock(CIStatusValidator.class);
+        CIStatusValidator.ValidationResult ciResult = ciResult(true, false);
+        when(ciStatusValidator.getCIStatusEndpoint(pathOf(pom))).thenReturn(endpointOf(pom));
+        when(ciStatusValidator.isValid(pathOf(pom))).thenAnswer(invocation -> {
+            ciStatusQueried.countDown();
+            return ciResult;
+        });
+        registerValidators(validSignatures(), ciStatusValidator);
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        assertTrue(logCapture.containsMessage("VALID (4 checks executed)"));
+    }
+
+    @Test
+    public void testEveryPomOfTheRepositoryIsChecked() throws Exception {
+        Artifact api = pom("org.apache.sling.cli.api");
+        Artifact impl = pom("org.apache.sling.cli.impl");
+        registerRepository(api, impl);
+        CIStatusValidator ciStatusValidator = mock(CIStatusValidator.class);
+        CIStatusValidator.ValidationResult valid = ciResult(true, false);
+        CIStatusValidator.ValidationResult invalid = ciResult(false, false);
+        when(ciStatusValidator.getCIStatusEndpoint(pathOf(api))).thenReturn(endpointOf(api));
+        when(ciStatusValidator.getCIStatusEndpoint(pathOf(impl))).thenReturn(endpointOf(impl));
+        when(ciStatusValidator.isValid(pathOf(api))).thenReturn(valid);
+        when(ciStatusValidator.isValid(pathOf(impl))).thenReturn(invalid);
+        registerValidators(validSignatures(), ciStatusValidator);
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
+        assertTrue(logCapture.containsMessage("INVALID (1 of 8 checks failed)"));
+    }
+
+    @Test
+    public void testModulesOfOneReactorShareTheirCIStatusCheck() throws Exception {
+        Artifact api = pom("org.apache.sling.cli.api");
+        Artifact impl = pom("org.apache.sling.cli.impl");
+        registerRepository(api, impl);
+        CIStatusValidator ciStatusValidator = mock(CIStatusValidator.class);
+        CIStatusValidator.ValidationResult valid = ciResult(true, false);
+        when(ciStatusValidator.getCIStatusEndpoint(any(Path.class))).thenReturn(endpointOf(api));
+        when(ciStatusValidator.isValid(any(Path.class))).thenReturn(valid);
+        registerValidators(validSignatures(), ciStatusValidator);
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        assertTrue(logCapture.containsMessage("VALID (8 checks executed)"));
+        verify(ciStatusValidator, times(1)).isValid(any(Path.class));
+    }
+
+    @Test
+    public void testFailedCIStatusLookupInvalidatesTheRelease() throws Exception {
+        Artifact pom = pom("org.apache.sling.cli.test");
+        registerRepository(pom);
+        CIStatusValidator ciStatusValidator = mock(CIStatusValidator.class);
+        when(ciStatusValidator.getCIStatusEndpoint(pathOf(pom))).thenReturn(endpointOf(pom));
+        when(ciStatusValidator.isValid(any(Path.class))).thenThrow(new IllegalStateException("unexpected status"));
+        registerValidators(validSignatures(), ciStatusValidator);
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
+        assertTrue(logCapture.containsMessage("INVALID (1 of 4 checks failed)"));
+    }
+
+    @Test
+    public void testDeferredCIStatusIsNotReportedAsValid() throws Exception {
+        registerDeferredCIStatus();
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        assertEquals(CommandLine.ExitCode.USAGE, (int) command.call());
+        assertTrue(logCapture.containsMessage(
+                "DEFERRED (3 checks executed, 1 deferred; run verify again later to complete them)"));
+    }
+
+    @Test
+    public void testDeferredCIStatusPassesWhenAllowed() throws Exception {
+        registerDeferredCIStatus();
+
+        Command command = createCommand(123, ExecutionMode.DRY_RUN);
+        FieldUtils.writeField(command, "allowDeferred", true, true);
+        assertEquals(CommandLine.ExitCode.OK, (int) command.call());
+        assertTrue(logCapture.containsMessage(
+                "DEFERRED (3 checks executed, 1 deferred; run verify again later to complete them)"));
+    }
+
+    private void registerDeferredCIStatus() throws Exception {
+        Artifact pom = pom("org.apache.sling.cli.test");
+        registerRepository(pom);
+        CIStatusValidator ciStatusValidator = mock(CIStatusValidator.class);
+        CIStatusValidator.ValidationResult ciResult = ciResult(false, true);
+        when(ciStatusValidator.getCIStatusEndpoint(pathOf(pom))).thenReturn(endpointOf(pom));
+        when(ciStatusValidator.isValid(any(Path.class))).thenReturn(ciResult);
+        registerValidators(validSignatures(), ciStatusValidator);
+    }
+
+    private Artifact pom(String artifactId) {
+        return new Artifact(stagingRepository, "org.apache.sling", artifactId, "1.0.0", null, "pom");
+    }
+
+    private static String endpointOf(Artifact artifact) {
+        return "https://api.github.com/repos/apache/sling-" + artifact.getArtifactId() + "/commits/"
+                + artifact.getArtifactId() + "-1.0.0/status";
+    }
+
+    private static Path pathOf(Artifact artifact) {
+        return Paths.get("/tmp").resolve(artifact.getRepositoryRelativePath());
+    }
+
+    private void registerRepository(Artifact... artifacts) throws Exception {
+        LocalRepository localRepository = mock(LocalRepository.class);
+        when(localRepository.getArtifacts()).thenReturn(new LinkedHashSet<>(Arrays.asList(artifacts)));
+        when(localRepository.getRootFolder()).thenReturn(Paths.get("/tmp"));
+        RepositoryService repositoryService = mock(RepositoryService.class);
+        when(repositoryService.find(123)).thenReturn(stagingRepository);
+        stubDownload(repositoryService, stagingRepository, localRepository);
+        osgiContext.registerService(RepositoryService.class, repositoryService);
+    }
+
+    /** Lets the mocked service report every artifact of {@code localRepository} as downloaded, in order. */
+    private static void stubDownload(
+            RepositoryService repositoryService, StagingRepository stagingRepository, LocalRepository localRepository)
+            throws Exception {
+        when(repositoryService.download(eq(stagingRepository), any(RepositoryService.DownloadListener.class)))
+                .thenAnswer(invocation -> {
+                    RepositoryService.DownloadListener listener =
+                            invocation.getArgument(1, RepositoryService.DownloadListener.class);
+                    for (Artifact artifact : localRepository.getArtifacts()) {
+                        listener.downloaded(
+                                artifact,
+                                localRepository.getRootFolder().resolve(artifact.getRepositoryRelativePath()));
+                    }
+                    return localRepository;
+                });
+    }
+
+    private void registerValidators(PGPSignatureValidator pgp, CIStatusValidator ciStatusValidator) {
+        HashValidator hashValidator = mock(HashValidator.class);
+        HashValidator.ValidationResult hashResult = mock(HashValidator.ValidationResult.class);
+        when(hashResult.isValid()).thenReturn(true);
+        when(hashValidator.validate(any(Path.class), any(Path.class), any())).thenReturn(hashResult);
+        osgiContext.registerService(PGPSignatureValidator.class, pgp);
+        osgiContext.registerService(CIStatusValidator.class, ciStatusValidator);
+        osgiContext.registerService(HashValidator.class, hashValidator);
+    }
+
+    private static PGPSignatureValidator validSignatures() {
+        PGPSignatureValidator pgp = mock(PGPSignatureValidator.class);
+        PGPSignatureValidator.ValidationResult signature = validSignature();
+        when(pgp.verify(any(Path.class), any(Path.class))).thenReturn(signature);
+        return pgp;
+    }
+
+    private static PGPSignatureValidator.ValidationResult validSignature() {
+        PGPPublicKey key = mock(PGPPublicKey.class);
+        when(key.getUserIDs())
+                .thenAnswer(invocation -> List.of("Release Manager").iterator());
+        when(key.getFingerprint()).thenReturn(new byte[] {1, 2, 3});
+        PGPSignatureValidator.ValidationResult signature = mock(PGPSignatureValidator.ValidationResult.class);
+        when(signature.isValid()).thenReturn(true);
+        when(signature.getKey()).thenReturn(key);
+        return signature;
+    }
+
+    private static CIStatusValidator.ValidationResult ciResult(boolean valid, boolean deferred) {
+        CIStatusValidator.ValidationResult ciResult = mock(CIStatusValidator.ValidationResult.class);
+        when(ciResult.isValid()).thenReturn(valid);
+        when(ciResult.isDeferred()).thenReturn(deferred);
+        when(ciResult.getMessage()).thenReturn(deferred ? "CI status check deferred: rate limit exhausted" : "\tci");
+        return ciResult;
     }
 
     private Command createCommand(int repositoryId, ExecutionMode executionMode) throws IllegalAccessException {